@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.analysis.autocomplete;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import org.joda.time.Duration;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AutocompleteService which caches suggestions in a prefix trie, for type-ahead user interfaces which request
+ * suggestions on every key stroke.
+ * <p/>
+ * If the suggestions for a shorter prefix of the text were complete (HP Haven OnDemand returned fewer than
+ * maxSuggestions suggestions), the suggestions for the text are found by filtering them instead of making a request.
+ * Suggestions are shared between all users of the service.
+ * <p/>
+ * For user interfaces, {@link #newSession(ScheduledExecutorService, Duration)} creates a {@link Session} which waits for
+ * typing to pause before making a request, and cancels the previous lookup when new text arrives.
+ */
+public class CachingAutocompleteService implements AutocompleteService {
+
+    private final AutocompleteService autocompleteService;
+    private final SuggestionTrie suggestionTrie;
+
+    /**
+     * Creates a new CachingAutocompleteService
+     * @param autocompleteService The service used to fetch suggestions which are not cached
+     * @param maxSuggestions The maximum number of suggestions returned by HP Haven OnDemand for a single request
+     * @param maxEntries The maximum number of suggestion lists to cache before the cache is cleared
+     * @throws IllegalArgumentException If maxSuggestions or maxEntries are not positive
+     */
+    public CachingAutocompleteService(final AutocompleteService autocompleteService, final int maxSuggestions, final int maxEntries) {
+        if (maxSuggestions <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("maxSuggestions and maxEntries must be positive");
+        }
+
+        this.autocompleteService = autocompleteService;
+        suggestionTrie = new SuggestionTrie(maxSuggestions, maxEntries);
+    }
+
+    @Override
+    public List<String> getSuggestions(final String text) throws HodErrorException {
+        return getSuggestions(text, null);
+    }
+
+    @Override
+    public List<String> getSuggestions(final String text, final TokenProxy<?, TokenType.Simple> tokenProxy) throws HodErrorException {
+        final List<String> cached = suggestionTrie.get(text);
+        return cached != null ? cached : fetch(text, tokenProxy);
+    }
+
+    /**
+     * Removes all the cached suggestions
+     */
+    public void clear() {
+        suggestionTrie.clear();
+    }
+
+    /**
+     * Creates a new session using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}
+     * @param executorService The executor service used to make delayed requests
+     * @param debounce How long to wait for further text before making a request
+     * @return A new Session
+     */
+    public Session newSession(final ScheduledExecutorService executorService, final Duration debounce) {
+        return new Session(null, executorService, debounce);
+    }
+
+    /**
+     * Creates a new session using the given token proxy
+     * @param tokenProxy The token proxy to use
+     * @param executorService The executor service used to make delayed requests
+     * @param debounce How long to wait for further text before making a request
+     * @return A new Session
+     */
+    public Session newSession(final TokenProxy<?, TokenType.Simple> tokenProxy, final ScheduledExecutorService executorService, final Duration debounce) {
+        return new Session(tokenProxy, executorService, debounce);
+    }
+
+    private List<String> fetch(final String text, final TokenProxy<?, TokenType.Simple> tokenProxy) throws HodErrorException {
+        final List<String> suggestions = tokenProxy == null
+            ? autocompleteService.getSuggestions(text)
+            : autocompleteService.getSuggestions(text, tokenProxy);
+
+        suggestionTrie.put(text, suggestions);
+        return suggestions;
+    }
+
+    /**
+     * Autocomplete lookups for a single text input. Cached suggestions are returned immediately. Otherwise the request is
+     * delayed by the debounce duration, and is cancelled if newer text arrives in the meantime or while it is in flight.
+     * <p/>
+     * This class is thread safe
+     */
+    public class Session implements AutoCloseable {
+
+        private final TokenProxy<?, TokenType.Simple> tokenProxy;
+        private final ScheduledExecutorService executorService;
+        private final long debounceMillis;
+
+        private CompletableFuture<List<String>> pendingResult;
+        private Future<?> pendingTask;
+
+        private Session(final TokenProxy<?, TokenType.Simple> tokenProxy, final ScheduledExecutorService executorService, final Duration debounce) {
+            this.tokenProxy = tokenProxy;
+            this.executorService = executorService;
+            debounceMillis = debounce.getMillis();
+        }
+
+        /**
+         * Looks up the suggestions for the given text, cancelling any earlier lookup which has not completed
+         * @param text The input text
+         * @return The suggestions. This will be cancelled if a later lookup is made before it completes, and completes
+         * exceptionally with a {@link HodErrorException} if the request fails
+         */
+        public synchronized CompletableFuture<List<String>> getSuggestions(final String text) {
+            cancelPending();
+
+            final List<String> cached = suggestionTrie.get(text);
+
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            final CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+            pendingResult = result;
+            pendingTask = executorService.schedule(() -> {
+                try {
+                    result.complete(fetch(text, tokenProxy));
+                } catch (final HodErrorException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }, debounceMillis, TimeUnit.MILLISECONDS);
+
+            return result;
+        }
+
+        /**
+         * Cancels any lookup which has not completed
+         */
+        @Override
+        public synchronized void close() {
+            cancelPending();
+        }
+
+        private void cancelPending() {
+            if (pendingResult != null) {
+                pendingResult.cancel(false);
+                pendingTask.cancel(true);
+                pendingResult = null;
+                pendingTask = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.analysis.autocomplete;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent prefix trie of autocomplete suggestions, keyed by the text the suggestions were requested for.
+ * <p/>
+ * If the suggestions for a prefix are complete, the suggestions for any longer text can be found by filtering them
+ * without asking HP Haven OnDemand. The suggestions are complete if HP Haven OnDemand returned fewer than the maximum
+ * number of suggestions and every suggestion starts with the prefix.
+ * <p/>
+ * Once more than the maximum number of entries have been added the trie is cleared, which keeps the memory used bounded
+ * without tracking the use of each entry.
+ */
+class SuggestionTrie {
+
+    private final int maxSuggestions;
+    private final int maxEntries;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Node root = new Node();
+
+    /**
+     * @param maxSuggestions The maximum number of suggestions returned by HP Haven OnDemand
+     * @param maxEntries The maximum number of entries to add before the trie is cleared
+     */
+    SuggestionTrie(final int maxSuggestions, final int maxEntries) {
+        this.maxSuggestions = maxSuggestions;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param text The text to find suggestions for
+     * @return The cached suggestions for the text, the suggestions derived from the complete suggestions for the longest
+     * cached prefix of the text, or null if neither are available
+     */
+    List<String> get(final String text) {
+        Node node = root;
+        Entry longestComplete = node.entry != null && node.entry.complete ? node.entry : null;
+
+        for (int i = 0; i < text.length() && node != null; i++) {
+            node = node.children.get(text.charAt(i));
+
+            if (node != null && node.entry != null && node.entry.complete) {
+                longestComplete = node.entry;
+            }
+        }
+
+        if (node != null && node.entry != null) {
+            return node.entry.suggestions;
+        }
+
+        return longestComplete == null ? null : filter(longestComplete.suggestions, text);
+    }
+
+    /**
+     * @param text The text the suggestions were requested for
+     * @param suggestions The suggestions returned by HP Haven OnDemand
+     */
+    void put(final String text, final List<String> suggestions) {
+        if (size.incrementAndGet() > maxEntries) {
+            clear();
+            size.incrementAndGet();
+        }
+
+        Node node = root;
+
+        for (int i = 0; i < text.length(); i++) {
+            node = node.children.computeIfAbsent(text.charAt(i), key -> new Node());
+        }
+
+        node.entry = new Entry(Collections.unmodifiableList(new ArrayList<>(suggestions)), isComplete(text, suggestions));
+    }
+
+    void clear() {
+        root = new Node();
+        size.set(0);
+    }
+
+    private boolean isComplete(final String text, final List<String> suggestions) {
+        if (suggestions.size() >= maxSuggestions) {
+            return false;
+        }
+
+        for (final String suggestion : suggestions) {
+            if (!suggestion.startsWith(text)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static List<String> filter(final List<String> suggestions, final String text) {
+        final List<String> output = new ArrayList<>();
+
+        for (final String suggestion : suggestions) {
+            if (suggestion.startsWith(text)) {
+                output.add(suggestion);
+            }
+        }
+
+        return Collections.unmodifiableList(output);
+    }
+
+    private static class Node {
+
+        private final ConcurrentMap<Character, Node> children = new ConcurrentHashMap<>();
+        private volatile Entry entry;
+    }
+
+    private static class Entry {
+
+        private final List<String> suggestions;
+        private final boolean complete;
+
+        private Entry(final List<String> suggestions, final boolean complete) {
+            this.suggestions = suggestions;
+            this.complete = complete;
+        }
+    }
+}
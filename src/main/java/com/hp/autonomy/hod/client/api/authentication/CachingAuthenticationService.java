@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.authentication;
+
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.ApplicationTokenInformation;
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.CombinedTokenInformation;
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.DeveloperTokenInformation;
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.UnboundTokenInformation;
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.UserTokenInformation;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenRepository;
+import com.hp.autonomy.hod.client.token.TokenRepositoryException;
+import com.hp.autonomy.hod.client.util.RefreshingCache;
+import org.joda.time.Duration;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * AuthenticationService which caches token information, so that checking the tenant, user or groups of a token on every
+ * request does not make a request to HP Haven OnDemand each time.
+ * <p/>
+ * Token information is cached for at most the time to live, and is never returned once the token has expired. Cached
+ * information is keyed on the token id together with the token secret, so a token with a known id but the wrong secret
+ * is never given another token's information. Concurrent requests for the information of the same token share a single
+ * request.
+ * <p/>
+ * Requests which authenticate, and the creation of signed requests, are not cached.
+ */
+public class CachingAuthenticationService implements AuthenticationService {
+
+    private final AuthenticationService authenticationService;
+    private final TokenRepository tokenRepository;
+
+    // tokens with the same id and secret are the same token, so always have the same type of information
+    private final RefreshingCache<List<String>, Object> cache;
+
+    /**
+     * Creates a new CachingAuthenticationService
+     * @param authenticationService The service used to make authentication requests
+     * @param tokenRepository The token repository used to look up the tokens for token proxies
+     * @param timeToLive The maximum time to cache the information for each token
+     * @param maxTokens The maximum number of tokens to cache information for
+     */
+    public CachingAuthenticationService(
+        final AuthenticationService authenticationService,
+        final TokenRepository tokenRepository,
+        final Duration timeToLive,
+        final long maxTokens
+    ) {
+        this.authenticationService = authenticationService;
+        this.tokenRepository = tokenRepository;
+
+        // values are never stale, so the refresh executor is never used
+        cache = new RefreshingCache<>(timeToLive, timeToLive, maxTokens, information -> 1, Runnable::run);
+    }
+
+    @Override
+    public <T extends TokenType> TokenProxy<EntityType.Application, T> authenticateApplication(
+        final ApiKey apiKey,
+        final String applicationName,
+        final String domain,
+        final T tokenType
+    ) throws HodErrorException {
+        return authenticationService.authenticateApplication(apiKey, applicationName, domain, tokenType);
+    }
+
+    @Override
+    public AuthenticationToken<EntityType.Developer, TokenType.HmacSha1> authenticateDeveloper(
+        final ApiKey apiKey,
+        final UUID tenantUuid,
+        final String email
+    ) throws HodErrorException {
+        return authenticationService.authenticateDeveloper(apiKey, tenantUuid, email);
+    }
+
+    @Override
+    public <T extends TokenType> AuthenticationToken<EntityType.Unbound, T> authenticateUnbound(
+        final ApiKey apiKey,
+        final T tokenType
+    ) throws HodErrorException {
+        return authenticationService.authenticateUnbound(apiKey, tokenType);
+    }
+
+    @Override
+    public List<ApplicationAndUsers> authenticateCombinedGet(
+        final AuthenticationToken<EntityType.CombinedSso, TokenType.Simple> combinedSsoToken,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> appToken
+    ) throws HodErrorException {
+        return authenticationService.authenticateCombinedGet(combinedSsoToken, appToken);
+    }
+
+    @Override
+    public <T extends TokenType> AuthenticationToken<EntityType.Combined, T> authenticateCombined(
+        final AuthenticationToken<EntityType.CombinedSso, TokenType.Simple> combinedSsoToken,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> appToken,
+        final String applicationDomain,
+        final String applicationName,
+        final T tokenType
+    ) throws HodErrorException {
+        return authenticationService.authenticateCombined(combinedSsoToken, appToken, applicationDomain, applicationName, tokenType);
+    }
+
+    @Override
+    public <T extends TokenType> AuthenticationToken<EntityType.Combined, T> authenticateCombined(
+        final AuthenticationToken<EntityType.CombinedSso, TokenType.Simple> combinedSsoToken,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> appToken,
+        final String applicationDomain,
+        final String applicationName,
+        final String userStoreDomain,
+        final String userStoreName,
+        final T tokenType
+    ) throws HodErrorException {
+        return authenticationService.authenticateCombined(combinedSsoToken, appToken, applicationDomain, applicationName, userStoreDomain, userStoreName, tokenType);
+    }
+
+    @Override
+    public CombinedTokenInformation getCombinedTokenInformation(final AuthenticationToken<EntityType.Combined, TokenType.Simple> token) throws HodErrorException {
+        return getTokenInformation(token, () -> authenticationService.getCombinedTokenInformation(token));
+    }
+
+    @Override
+    public CombinedTokenInformation getHmacCombinedTokenInformation(final AuthenticationToken<EntityType.Combined, TokenType.HmacSha1> token) throws HodErrorException {
+        return getTokenInformation(token, () -> authenticationService.getHmacCombinedTokenInformation(token));
+    }
+
+    @Override
+    public DeveloperTokenInformation getDeveloperTokenInformation(final AuthenticationToken<EntityType.Developer, TokenType.HmacSha1> token) throws HodErrorException {
+        return getTokenInformation(token, () -> authenticationService.getDeveloperTokenInformation(token));
+    }
+
+    @Override
+    public ApplicationTokenInformation getApplicationTokenInformation(final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy) throws HodErrorException {
+        return getTokenInformation(getToken(tokenProxy), () -> authenticationService.getApplicationTokenInformation(tokenProxy));
+    }
+
+    @Override
+    public ApplicationTokenInformation getHmacApplicationTokenInformation(final TokenProxy<EntityType.Application, TokenType.HmacSha1> tokenProxy) throws HodErrorException {
+        return getTokenInformation(getToken(tokenProxy), () -> authenticationService.getHmacApplicationTokenInformation(tokenProxy));
+    }
+
+    @Override
+    public UserTokenInformation getUserTokenInformation(final TokenProxy<EntityType.User, TokenType.Simple> tokenProxy) throws HodErrorException {
+        return getTokenInformation(getToken(tokenProxy), () -> authenticationService.getUserTokenInformation(tokenProxy));
+    }
+
+    @Override
+    public UserTokenInformation getHmacUserTokenInformation(final TokenProxy<EntityType.User, TokenType.HmacSha1> tokenProxy) throws HodErrorException {
+        return getTokenInformation(getToken(tokenProxy), () -> authenticationService.getHmacUserTokenInformation(tokenProxy));
+    }
+
+    @Override
+    public UnboundTokenInformation getUnboundTokenInformation(final AuthenticationToken<EntityType.Unbound, TokenType.Simple> token) throws HodErrorException {
+        return getTokenInformation(token, () -> authenticationService.getUnboundTokenInformation(token));
+    }
+
+    @Override
+    public UnboundTokenInformation getHmacUnboundTokenInformation(final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token) throws HodErrorException {
+        return getTokenInformation(token, () -> authenticationService.getHmacUnboundTokenInformation(token));
+    }
+
+    @Override
+    public SignedRequest combinedGetRequest(
+        final Collection<String> allowedOrigins,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token
+    ) {
+        return authenticationService.combinedGetRequest(allowedOrigins, token);
+    }
+
+    @Override
+    public SignedRequest combinedPatchRequest(
+        final Collection<String> allowedOrigins,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token
+    ) {
+        return authenticationService.combinedPatchRequest(allowedOrigins, token);
+    }
+
+    @Override
+    public SignedRequest combinedPatchRequest(
+        final Collection<String> allowedOrigins,
+        final String redirectUrl,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token
+    ) {
+        return authenticationService.combinedPatchRequest(allowedOrigins, redirectUrl, token);
+    }
+
+    @Override
+    public SignedRequest combinedRequest(
+        final Collection<String> allowedOrigins,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token,
+        final String applicationDomain,
+        final String applicationName,
+        final TokenType tokenType
+    ) {
+        return authenticationService.combinedRequest(allowedOrigins, token, applicationDomain, applicationName, tokenType);
+    }
+
+    @Override
+    public SignedRequest combinedRequest(
+        final Collection<String> allowedOrigins,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token,
+        final String applicationDomain,
+        final String applicationName,
+        final String userStoreDomain,
+        final String userStoreName,
+        final TokenType tokenType
+    ) {
+        return authenticationService.combinedRequest(allowedOrigins, token, applicationDomain, applicationName, userStoreDomain, userStoreName, tokenType);
+    }
+
+    @Override
+    public SignedRequest combinedRequest(
+        final Collection<String> allowedOrigins,
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token,
+        final String applicationDomain,
+        final String applicationName,
+        final String userStoreDomain,
+        final String userStoreName,
+        final TokenType tokenType,
+        final boolean useNonce
+    ) {
+        return authenticationService.combinedRequest(allowedOrigins, token, applicationDomain, applicationName, userStoreDomain, userStoreName, tokenType, useNonce);
+    }
+
+    /**
+     * Removes the cached information for a token, so the next request for it will retrieve it again
+     * @param token The token
+     */
+    public void invalidate(final AuthenticationToken<?, ?> token) {
+        cache.invalidate(key(token));
+    }
+
+    /**
+     * Removes all the cached token information
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private <T> T getTokenInformation(final AuthenticationToken<?, ?> token, final RefreshingCache.Loader<T> loader) throws HodErrorException {
+        // expired tokens are not cached, so HOD reports the error; this also stops information outliving its token
+        if (token == null || token.hasExpired()) {
+            return loader.load();
+        }
+
+        // the loader for a token always returns the same type of information
+        //noinspection unchecked
+        return (T) cache.get(key(token), loader);
+    }
+
+    private List<String> key(final AuthenticationToken<?, ?> token) {
+        return Arrays.asList(token.getId(), token.getSecret());
+    }
+
+    private <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> getToken(final TokenProxy<E, T> tokenProxy) {
+        try {
+            return tokenRepository.get(tokenProxy);
+        } catch (final IOException e) {
+            throw new TokenRepositoryException(e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.queryprofile;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import com.hp.autonomy.hod.client.util.RefreshingCache;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Duration;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * QueryProfileService which caches retrieved query profiles, so that queries which use a query profile do not wait for
+ * it to be retrieved.
+ * <p/>
+ * Profiles are refreshed in the background once they are older than refreshAfter, and are returned stale until they are
+ * older than expireAfter, which limits how long changes made outside this service go unnoticed. Concurrent retrievals
+ * of the same profile share a single request.
+ * <p/>
+ * Changes made through this service are written through to the cache. Updating a profile replaces the cached profile by
+ * retrieving it again in the background, and deleting a profile removes it from the cache. Creating a profile removes
+ * any cached profile with the same name, since the create API does not return the domain of the profile.
+ * <p/>
+ * Profiles are cached separately for each token proxy, since users may not be able to see the same profiles. Only
+ * profiles identified by a {@link ResourceName} are cached; retrievals using any other {@link ResourceIdentifier} are
+ * passed to the underlying service, and changes made using them remove all the cached profiles, since the name of the
+ * changed profile is not known.
+ */
+@Slf4j
+public class CachingQueryProfileService implements QueryProfileService {
+
+    private final QueryProfileService queryProfileService;
+    private final TokenProxyService<?, TokenType.Simple> tokenProxyService;
+    private final Executor refreshExecutor;
+    private final RefreshingCache<ProfileKey, QueryProfile> cache;
+
+    /**
+     * Creates a new CachingQueryProfileService
+     * @param queryProfileService The service used to retrieve and change query profiles
+     * @param tokenProxyService Provides the token proxy for the methods which do not take one. This may be null if only
+     * the methods which take a token proxy are used
+     * @param refreshAfter How long after retrieving profiles are refreshed in the background
+     * @param expireAfter How long after retrieving profiles are no longer returned
+     * @param maxProfiles The maximum number of profiles to cache
+     * @param refreshExecutor The executor used for background refreshes
+     */
+    public CachingQueryProfileService(
+        final QueryProfileService queryProfileService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxProfiles,
+        final Executor refreshExecutor
+    ) {
+        this.queryProfileService = queryProfileService;
+        this.tokenProxyService = tokenProxyService;
+        this.refreshExecutor = refreshExecutor;
+        cache = new RefreshingCache<>(refreshAfter, expireAfter, maxProfiles, profile -> 1, refreshExecutor);
+    }
+
+    @Override
+    public QueryProfileStatusResponse createQueryProfile(
+        final String name,
+        final String queryManipulationIndex,
+        final QueryProfileRequestBuilder params
+    ) throws HodErrorException {
+        try {
+            return queryProfileService.createQueryProfile(name, queryManipulationIndex, params);
+        } finally {
+            invalidateName(name);
+        }
+    }
+
+    @Override
+    public QueryProfileStatusResponse createQueryProfile(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final String name,
+        final String queryManipulationIndex,
+        final QueryProfileRequestBuilder params
+    ) throws HodErrorException {
+        try {
+            return queryProfileService.createQueryProfile(tokenProxy, name, queryManipulationIndex, params);
+        } finally {
+            invalidateName(name);
+        }
+    }
+
+    @Override
+    public QueryProfile retrieveQueryProfile(final ResourceIdentifier queryProfile) throws HodErrorException {
+        if (queryProfile instanceof ResourceName) {
+            return retrieveQueryProfile(getTokenProxy(), queryProfile);
+        }
+
+        return queryProfileService.retrieveQueryProfile(queryProfile);
+    }
+
+    @Override
+    public QueryProfile retrieveQueryProfile(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final ResourceIdentifier queryProfile
+    ) throws HodErrorException {
+        if (queryProfile instanceof ResourceName) {
+            return cache.get(new ProfileKey(tokenProxy, (ResourceName) queryProfile), () -> queryProfileService.retrieveQueryProfile(tokenProxy, queryProfile));
+        }
+
+        return queryProfileService.retrieveQueryProfile(tokenProxy, queryProfile);
+    }
+
+    @Override
+    public QueryProfileStatusResponse updateQueryProfile(
+        final ResourceIdentifier queryProfile,
+        final String queryManipulationIndex,
+        final QueryProfileRequestBuilder params
+    ) throws HodErrorException {
+        if (queryProfile instanceof ResourceName) {
+            return updateQueryProfile(getTokenProxy(), queryProfile, queryManipulationIndex, params);
+        }
+
+        try {
+            return queryProfileService.updateQueryProfile(queryProfile, queryManipulationIndex, params);
+        } finally {
+            invalidate(queryProfile);
+        }
+    }
+
+    @Override
+    public QueryProfileStatusResponse updateQueryProfile(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final ResourceIdentifier queryProfile,
+        final String queryManipulationIndex,
+        final QueryProfileRequestBuilder params
+    ) throws HodErrorException {
+        try {
+            return queryProfileService.updateQueryProfile(tokenProxy, queryProfile, queryManipulationIndex, params);
+        } finally {
+            invalidate(queryProfile);
+
+            if (queryProfile instanceof ResourceName) {
+                retrieveInBackground(new ProfileKey(tokenProxy, (ResourceName) queryProfile), () -> queryProfileService.retrieveQueryProfile(tokenProxy, queryProfile));
+            }
+        }
+    }
+
+    @Override
+    public QueryProfileStatusResponse deleteQueryProfile(final ResourceIdentifier queryProfile) throws HodErrorException {
+        try {
+            return queryProfileService.deleteQueryProfile(queryProfile);
+        } finally {
+            invalidate(queryProfile);
+        }
+    }
+
+    @Override
+    public QueryProfileStatusResponse deleteQueryProfile(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final ResourceIdentifier queryProfile
+    ) throws HodErrorException {
+        try {
+            return queryProfileService.deleteQueryProfile(tokenProxy, queryProfile);
+        } finally {
+            invalidate(queryProfile);
+        }
+    }
+
+    /**
+     * Removes all the cached profiles
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // profiles are invalidated even if the change failed, since the failure may have happened after the change was made
+    private void invalidate(final ResourceIdentifier queryProfile) {
+        if (queryProfile instanceof ResourceName) {
+            cache.invalidateIf(key -> key.queryProfile.equals(queryProfile));
+        } else {
+            cache.invalidateAll();
+        }
+    }
+
+    private void invalidateName(final String name) {
+        cache.invalidateIf(key -> key.queryProfile.getName().equals(name));
+    }
+
+    private void retrieveInBackground(final ProfileKey key, final RefreshingCache.Loader<QueryProfile> loader) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    cache.get(key, loader);
+                } catch (final HodErrorException | RuntimeException e) {
+                    log.warn("Error retrieving updated query profile", e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            log.warn("Could not start retrieval of updated query profile", e);
+        }
+    }
+
+    // the token proxy is found on the calling thread, since the TokenProxyService may not work on the refresh executor
+    private TokenProxy<?, TokenType.Simple> getTokenProxy() {
+        if (tokenProxyService == null) {
+            throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
+        }
+
+        return tokenProxyService.getTokenProxy();
+    }
+
+    @Data
+    private static class ProfileKey {
+        private final TokenProxy<?, TokenType.Simple> tokenProxy;
+        private final ResourceName queryProfile;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.resource;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import com.hp.autonomy.hod.client.util.RefreshingCache;
+import org.joda.time.Duration;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Catalogue of the resources which can be seen with a token, for resolving which indexes a user can see without listing
+ * the resources for every request.
+ * <p/>
+ * The resources are held in an immutable {@link Snapshot} for each token proxy, indexed by type and domain. Snapshots
+ * are refreshed in the background once they are older than refreshAfter, and are returned stale until they are older
+ * than expireAfter.
+ * <p/>
+ * The resource names in snapshots are interned, so the same resource is always represented by the same ResourceName
+ * instance, even across refreshes. Names can be compared by identity and the lists returned by snapshots can be passed
+ * to query requests without copying.
+ * <p/>
+ * The methods which do not take a token proxy share a single snapshot, so they should only be used if the
+ * {@link TokenProxyService} always returns a token proxy which can see the same resources.
+ */
+public class ResourceCatalogue {
+
+    private static final Object DEFAULT_TOKEN_PROXY_KEY = new Object();
+
+    private final ResourcesService resourcesService;
+    private final TokenProxyService<?, TokenType.Simple> tokenProxyService;
+    private final RefreshingCache<Object, Snapshot> snapshots;
+
+    // guarded by itself
+    private final Map<ResourceName, WeakReference<ResourceName>> internedNames = new WeakHashMap<>();
+
+    /**
+     * Creates a new ResourceCatalogue
+     * @param resourcesService The service used to list resources
+     * @param tokenProxyService Provides the token proxy for the methods which do not take one. This may be null if only
+     * the methods which take a token proxy are used
+     * @param refreshAfter How long after listing snapshots are refreshed in the background
+     * @param expireAfter How long after listing snapshots are no longer returned
+     * @param maxSnapshots The maximum number of token proxies to hold snapshots for
+     * @param refreshExecutor The executor used for background refreshes
+     */
+    public ResourceCatalogue(
+        final ResourcesService resourcesService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxSnapshots,
+        final Executor refreshExecutor
+    ) {
+        this.resourcesService = resourcesService;
+        this.tokenProxyService = tokenProxyService;
+        snapshots = new RefreshingCache<>(refreshAfter, expireAfter, maxSnapshots, snapshot -> 1, refreshExecutor);
+    }
+
+    /**
+     * Returns the resources visible with the token proxy provided by the {@link TokenProxyService}
+     * @return A snapshot of the resources
+     * @throws HodErrorException If the snapshot is not cached and listing the resources fails
+     * @throws NullPointerException If a TokenProxyService has not been configured
+     */
+    public Snapshot getSnapshot() throws HodErrorException {
+        final TokenProxy<?, TokenType.Simple> tokenProxy = getTokenProxy();
+        return snapshots.get(DEFAULT_TOKEN_PROXY_KEY, () -> createSnapshot(resourcesService.list(tokenProxy, new ListResourcesRequestBuilder())));
+    }
+
+    /**
+     * Returns the resources visible with the given token proxy
+     * @param tokenProxy The token proxy to use
+     * @return A snapshot of the resources
+     * @throws HodErrorException If the snapshot is not cached and listing the resources fails
+     */
+    public Snapshot getSnapshot(final TokenProxy<?, TokenType.Simple> tokenProxy) throws HodErrorException {
+        return snapshots.get(tokenProxy, () -> createSnapshot(resourcesService.list(tokenProxy, new ListResourcesRequestBuilder())));
+    }
+
+    /**
+     * Returns the interned instance of a resource name, so that it can be compared by identity with the names in
+     * snapshots
+     * @param resourceName The resource name
+     * @return The interned resource name which is equal to the given resource name
+     */
+    public ResourceName intern(final ResourceName resourceName) {
+        synchronized (internedNames) {
+            final WeakReference<ResourceName> reference = internedNames.get(resourceName);
+            final ResourceName interned = reference == null ? null : reference.get();
+
+            if (interned != null) {
+                return interned;
+            }
+
+            internedNames.put(resourceName, new WeakReference<>(resourceName));
+            return resourceName;
+        }
+    }
+
+    /**
+     * Removes all the snapshots, so they will be listed again when next requested
+     */
+    public void clear() {
+        snapshots.invalidateAll();
+    }
+
+    // the token proxy is found on the calling thread, since the TokenProxyService may not work on the refresh executor
+    private TokenProxy<?, TokenType.Simple> getTokenProxy() {
+        if (tokenProxyService == null) {
+            throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
+        }
+
+        return tokenProxyService.getTokenProxy();
+    }
+
+    private Snapshot createSnapshot(final List<ResourceDetails> resources) {
+        final Map<ResourceName, ResourceDetails> details = new HashMap<>();
+        final Map<ResourceType, Map<String, List<ResourceName>>> namesByType = new HashMap<>();
+
+        for (final ResourceDetails resource : resources) {
+            if (resource.getResource() == null) {
+                continue;
+            }
+
+            final ResourceName name = intern(resource.getResource().getResourceName());
+            details.put(name, resource);
+
+            namesByType.computeIfAbsent(resource.getType(), type -> new HashMap<>())
+                .computeIfAbsent(name.getDomain(), domain -> new ArrayList<>())
+                .add(name);
+        }
+
+        final Map<ResourceType, Map<String, List<ResourceName>>> byTypeAndDomain = new HashMap<>();
+        final Map<ResourceType, List<ResourceName>> byType = new HashMap<>();
+
+        for (final Map.Entry<ResourceType, Map<String, List<ResourceName>>> typeEntry : namesByType.entrySet()) {
+            final Map<String, List<ResourceName>> byDomain = new HashMap<>();
+            final List<ResourceName> allNames = new ArrayList<>();
+
+            for (final Map.Entry<String, List<ResourceName>> domainEntry : typeEntry.getValue().entrySet()) {
+                byDomain.put(domainEntry.getKey(), Collections.unmodifiableList(domainEntry.getValue()));
+                allNames.addAll(domainEntry.getValue());
+            }
+
+            byTypeAndDomain.put(typeEntry.getKey(), Collections.unmodifiableMap(byDomain));
+            byType.put(typeEntry.getKey(), Collections.unmodifiableList(allNames));
+        }
+
+        return new Snapshot(details, byTypeAndDomain, byType);
+    }
+
+    /**
+     * Immutable view of the resources visible with a token at the time they were listed
+     */
+    public static class Snapshot {
+
+        private final Map<ResourceName, ResourceDetails> details;
+        private final Map<ResourceType, Map<String, List<ResourceName>>> byTypeAndDomain;
+        private final Map<ResourceType, List<ResourceName>> byType;
+
+        private Snapshot(
+            final Map<ResourceName, ResourceDetails> details,
+            final Map<ResourceType, Map<String, List<ResourceName>>> byTypeAndDomain,
+            final Map<ResourceType, List<ResourceName>> byType
+        ) {
+            this.details = details;
+            this.byTypeAndDomain = byTypeAndDomain;
+            this.byType = byType;
+        }
+
+        /**
+         * @param type The resource type
+         * @return The interned names of the resources of the given type in all domains
+         */
+        public List<ResourceName> getResourceNames(final ResourceType type) {
+            final List<ResourceName> names = byType.get(type);
+            return names == null ? Collections.<ResourceName>emptyList() : names;
+        }
+
+        /**
+         * @param type The resource type
+         * @param domain The domain
+         * @return The interned names of the resources of the given type in the given domain
+         */
+        public List<ResourceName> getResourceNames(final ResourceType type, final String domain) {
+            final Map<String, List<ResourceName>> byDomain = byTypeAndDomain.get(type);
+            final List<ResourceName> names = byDomain == null ? null : byDomain.get(domain);
+            return names == null ? Collections.<ResourceName>emptyList() : names;
+        }
+
+        /**
+         * @param type The resource type
+         * @return The domains which contain resources of the given type
+         */
+        public Set<String> getDomains(final ResourceType type) {
+            final Map<String, List<ResourceName>> byDomain = byTypeAndDomain.get(type);
+            return byDomain == null ? Collections.<String>emptySet() : byDomain.keySet();
+        }
+
+        /**
+         * @param resourceName The name of the resource
+         * @return The details of the resource, or null if the resource is not visible
+         */
+        public ResourceDetails getDetails(final ResourceName resourceName) {
+            return details.get(resourceName);
+        }
+
+        /**
+         * @param resourceName The name of the resource
+         * @return True if the resource is visible; false otherwise
+         */
+        public boolean contains(final ResourceName resourceName) {
+            return details.containsKey(resourceName);
+        }
+    }
+}
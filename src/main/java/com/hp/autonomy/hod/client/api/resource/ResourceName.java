@@ -6,16 +6,18 @@
 package com.hp.autonomy.hod.client.api.resource;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.hp.autonomy.hod.client.converter.DoNotConvert;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Represents a domain-qualified resource name; for example the identifier for a text index or user store.
@@ -41,13 +43,8 @@ public class ResourceName implements ResourceIdentifier {
     public static final ResourceName ARXIV = new ResourceName(PUBLIC_INDEXES_DOMAIN, "arxiv");
     public static final ResourceName PATENTS = new ResourceName(PUBLIC_INDEXES_DOMAIN, "patents");
 
-    private static final Pattern ESCAPE_PATTERN = Pattern.compile("([\\\\:])");
-
-    private static final Pattern UNESCAPE_BACKSLASH_PATTERN = Pattern.compile("\\\\");
-    private static final Pattern UNESCAPE_COLON_PATTERN = Pattern.compile("\\\\:");
-
-    // Pattern for breaking a domain:name string into a domain and a name
-    private static final Pattern SPLIT_PATTERN = Pattern.compile("((?:[^\\\\:]|\\\\[\\\\:])+):(.+)");
+    private static final char ESCAPE = '\\';
+    private static final char SEPARATOR_CHAR = ':';
 
     private static final long serialVersionUID = -3170086101527611633L;
 
@@ -65,6 +62,12 @@ public class ResourceName implements ResourceIdentifier {
      */
     private final String name;
 
+    // toString is called for every resource name sent to HOD, so the escaped form is only computed once
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient String escaped;
+
     /**
      * Construct a ResourceName from a colon-separated and escaped domain and name.
      *
@@ -75,15 +78,14 @@ public class ResourceName implements ResourceIdentifier {
             throw new IllegalArgumentException("Identifier must not be empty");
         }
 
-        final Matcher matcher = SPLIT_PATTERN.matcher(identifier);
+        final int separatorIndex = findSeparator(identifier);
 
-        // The matches method attempts to match the entire string against the pattern
-        if (matcher.matches()) {
-            domain = unescapeComponent(matcher.group(1));
-            name = unescapeComponent(matcher.group(2));
-        } else {
+        if (separatorIndex <= 0 || separatorIndex == identifier.length() - 1 || containsLineTerminator(identifier, separatorIndex + 1)) {
             throw new IllegalArgumentException("Identifier was invalid");
         }
+
+        domain = unescapeComponent(identifier, 0, separatorIndex);
+        name = unescapeComponent(identifier, separatorIndex + 1, identifier.length());
     }
 
     /**
@@ -110,17 +112,95 @@ public class ResourceName implements ResourceIdentifier {
      */
     @Override
     public String toString() {
-        return escapeComponent(domain) + SEPARATOR + escapeComponent(name);
+        String result = escaped;
+
+        // racing threads compute the same string, so the field does not need to be volatile
+        if (result == null) {
+            final StringBuilder builder = new StringBuilder(domain.length() + name.length() + 4);
+            escapeComponent(builder, domain);
+            builder.append(SEPARATOR);
+            escapeComponent(builder, name);
+            result = builder.toString();
+            escaped = result;
+        }
+
+        return result;
     }
 
     // HOD resource names (text index names, domain names etc) must have : escaped to \: and \ escaped to \\ when
     // combined into a resource name.
-    private static String escapeComponent(final String input) {
-        return ESCAPE_PATTERN.matcher(input).replaceAll("\\\\$1");
+    private static void escapeComponent(final StringBuilder builder, final String input) {
+        for (int i = 0; i < input.length(); i++) {
+            final char c = input.charAt(i);
+
+            if (c == ESCAPE || c == SEPARATOR_CHAR) {
+                builder.append(ESCAPE);
+            }
+
+            builder.append(c);
+        }
     }
 
-    private static String unescapeComponent(final String input) {
-        return input.replace("\\:", ":").replace("\\\\", "\\");
+    // Returns the index of the colon which separates the domain from the name, or -1 if there is no separator or the
+    // domain contains a backslash which is not followed by a backslash or a colon
+    private static int findSeparator(final String identifier) {
+        for (int i = 0; i < identifier.length(); i++) {
+            final char c = identifier.charAt(i);
+
+            if (c == SEPARATOR_CHAR) {
+                return i;
+            } else if (c == ESCAPE) {
+                if (i + 1 < identifier.length() && isEscapable(identifier.charAt(i + 1))) {
+                    i++;
+                } else {
+                    return -1;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static String unescapeComponent(final String input, final int start, final int end) {
+        final int firstEscape = input.indexOf(ESCAPE, start);
+
+        if (firstEscape == -1 || firstEscape >= end) {
+            return input.substring(start, end);
+        }
+
+        final StringBuilder builder = new StringBuilder(end - start);
+        builder.append(input, start, firstEscape);
+
+        for (int i = firstEscape; i < end; i++) {
+            final char c = input.charAt(i);
+
+            // a backslash which does not escape anything is kept
+            if (c == ESCAPE && i + 1 < end && isEscapable(input.charAt(i + 1))) {
+                i++;
+                builder.append(input.charAt(i));
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean isEscapable(final char c) {
+        return c == ESCAPE || c == SEPARATOR_CHAR;
+    }
+
+    // names were previously matched with a regular expression dot, which does not match line terminators
+    private static boolean containsLineTerminator(final String input, final int start) {
+        for (int i = start; i < input.length(); i++) {
+            final char c = input.charAt(i);
+
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     private void readObject(final ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Duration;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Chooses the size in bytes of batches of JSON documents sent to the AddToTextIndex API, adjusting it based on how
+ * the previous batches were processed.
+ * <p/>
+ * The size is adjusted using additive increase, multiplicative decrease: each batch which finishes within the target
+ * duration grows the batch size by a fixed increment, while a batch which is too slow, times out or fails with an error
+ * indicating the request was too large or HP Haven OnDemand is overloaded halves it. The same sizer can be reused
+ * across calls so that it keeps what it has learnt.
+ * <p/>
+ * This class is thread safe
+ */
+@Slf4j
+public class AdaptiveBatchSizer {
+
+    private static final Set<HodErrorCode> DECREASE_CODES = EnumSet.of(
+        HodErrorCode.INPUT_TOO_LONG,
+        HodErrorCode.JOB_TOOK_TOO_LONG,
+        HodErrorCode.REQUEST_TOOK_TOO_LONG,
+        HodErrorCode.REQUEST_STRING_TOO_LONG,
+        HodErrorCode.MULTIPART_FIELD_TOO_LONG,
+        HodErrorCode.MULTIPART_REQUEST_TOO_BIG
+    );
+
+    private static final int DEFAULT_MIN_BATCH_BYTES = 16 * 1024;
+    private static final int DEFAULT_MAX_BATCH_BYTES = 16 * 1024 * 1024;
+    private static final int DEFAULT_INITIAL_BATCH_BYTES = 1024 * 1024;
+    private static final int DEFAULT_INCREMENT_BYTES = 256 * 1024;
+    private static final Duration DEFAULT_TARGET_DURATION = Duration.standardSeconds(30);
+
+    private final int minBatchBytes;
+    private final int maxBatchBytes;
+    private final int incrementBytes;
+    private final Duration targetDuration;
+
+    private int batchBytes;
+
+    /**
+     * Creates a new AdaptiveBatchSizer with default limits. Batches start at 1MB and may vary between 16KB and 16MB,
+     * aiming for each job to finish within 30 seconds.
+     */
+    public AdaptiveBatchSizer() {
+        this(DEFAULT_MIN_BATCH_BYTES, DEFAULT_MAX_BATCH_BYTES, DEFAULT_INITIAL_BATCH_BYTES, DEFAULT_INCREMENT_BYTES, DEFAULT_TARGET_DURATION);
+    }
+
+    /**
+     * Creates a new AdaptiveBatchSizer
+     * @param minBatchBytes The smallest batch size which will be used
+     * @param maxBatchBytes The largest batch size which will be used
+     * @param initialBatchBytes The batch size to use before any batches have finished
+     * @param incrementBytes The amount the batch size grows by after each fast batch
+     * @param targetDuration Batches which take longer than this to finish will cause the batch size to shrink
+     * @throws IllegalArgumentException If the sizes are not positive or are inconsistent
+     */
+    public AdaptiveBatchSizer(
+        final int minBatchBytes,
+        final int maxBatchBytes,
+        final int initialBatchBytes,
+        final int incrementBytes,
+        final Duration targetDuration
+    ) {
+        if (minBatchBytes <= 0 || incrementBytes <= 0 || minBatchBytes > maxBatchBytes) {
+            throw new IllegalArgumentException("Batch sizes must be positive and minBatchBytes must not exceed maxBatchBytes");
+        }
+
+        if (initialBatchBytes < minBatchBytes || initialBatchBytes > maxBatchBytes) {
+            throw new IllegalArgumentException("initialBatchBytes must be between minBatchBytes and maxBatchBytes");
+        }
+
+        this.minBatchBytes = minBatchBytes;
+        this.maxBatchBytes = maxBatchBytes;
+        this.incrementBytes = incrementBytes;
+        this.targetDuration = targetDuration;
+
+        batchBytes = initialBatchBytes;
+    }
+
+    /**
+     * @return The size in bytes to use for the next batch
+     */
+    public synchronized int getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * Records that a batch finished successfully
+     * @param duration The time between submitting the batch and its job finishing
+     */
+    public synchronized void onSuccess(final Duration duration) {
+        if (duration.isLongerThan(targetDuration)) {
+            log.debug("Batch took {}, decreasing batch size", duration);
+            decrease();
+        } else {
+            batchBytes = (int) Math.min((long) batchBytes + incrementBytes, maxBatchBytes);
+        }
+    }
+
+    /**
+     * Records that a batch failed with the given error
+     * @param errorCode The error returned by HP Haven OnDemand
+     * @return True if the error indicates the batch was too large or HP Haven OnDemand was overloaded, in which case the
+     * batch size has been decreased; false otherwise
+     */
+    public synchronized boolean onError(final HodErrorCode errorCode) {
+        if (DECREASE_CODES.contains(errorCode)) {
+            log.debug("Batch failed with {}, decreasing batch size", errorCode);
+            decrease();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Records that a batch timed out
+     */
+    public synchronized void onTimeout() {
+        log.debug("Batch timed out, decreasing batch size");
+        decrease();
+    }
+
+    private void decrease() {
+        batchBytes = Math.max(batchBytes / 2, minBatchBytes);
+    }
+}
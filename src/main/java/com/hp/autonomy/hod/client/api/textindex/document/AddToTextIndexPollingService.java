@@ -5,6 +5,7 @@
 
 package com.hp.autonomy.hod.client.api.textindex.document;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hp.autonomy.hod.client.api.authentication.EntityType;
 import com.hp.autonomy.hod.client.api.authentication.TokenType;
 import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
@@ -20,7 +21,6 @@ import com.hp.autonomy.hod.client.job.JobStatus;
 import com.hp.autonomy.hod.client.job.PollingJobStatusRunnable;
 import com.hp.autonomy.hod.client.token.TokenProxy;
 import com.hp.autonomy.hod.client.util.TypedByteArrayWithFilename;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import retrofit.mime.TypedFile;
 
@@ -30,16 +30,17 @@ import java.io.InputStream;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
- * Implementation of AddToTextIndexService which polls for job completion.
+ * Implementation of AddToTextIndexService which polls for job completion. Documents added in batches are serialized with
+ * the object mapper of the configuration.
  * <p/>
  * The destroy method should be called when the service is no longer needed.
  */
-@Slf4j
 public class AddToTextIndexPollingService extends AbstractPollingService implements AddToTextIndexService {
 
     private final AddToTextIndexBackend addToTextIndexBackend;
     private final JobService<? extends JobStatus<AddToTextIndexResponse>> jobService;
     private final Requester<?, TokenType.Simple> requester;
+    private final ObjectMapper objectMapper;
 
     /**
      * Creates a new AddToTextIndexPollingService with a default ScheduledExecutorService
@@ -51,6 +52,7 @@ public class AddToTextIndexPollingService extends AbstractPollingService impleme
         addToTextIndexBackend = hodServiceConfig.getRestAdapter().create(AddToTextIndexBackend.class);
         jobService = new JobServiceImpl<>(hodServiceConfig, AddToTextIndexBackend.AddToTextIndexJobStatus.class);
         requester = hodServiceConfig.getRequester();
+        objectMapper = hodServiceConfig.getObjectMapper();
     }
 
     /**
@@ -64,6 +66,7 @@ public class AddToTextIndexPollingService extends AbstractPollingService impleme
         addToTextIndexBackend = hodServiceConfig.getRestAdapter().create(AddToTextIndexBackend.class);
         jobService = new JobServiceImpl<>(hodServiceConfig, AddToTextIndexBackend.AddToTextIndexJobStatus.class);
         requester = hodServiceConfig.getRequester();
+        objectMapper = hodServiceConfig.getObjectMapper();
     }
 
     @Override
@@ -91,6 +94,29 @@ public class AddToTextIndexPollingService extends AbstractPollingService impleme
         getExecutorService().submit(new PollingJobStatusRunnable<>(tokenProxy, getTimeout(), jobId, callback, getExecutorService(), jobService));
     }
 
+    @Override
+    public void addJsonToTextIndexInBatches(
+        final Iterable<?> documents,
+        final ResourceIdentifier index,
+        final AddToTextIndexRequestBuilder params,
+        final AdaptiveBatchSizer batchSizer,
+        final HodJobCallback<AddToTextIndexResponse> callback
+    ) {
+        JsonBatchSubmitter.start(documents, index, objectMapper, batchSizer, callback, (batch, batchCallback) -> addJsonToTextIndex(new Documents<>(batch), index, params, batchCallback));
+    }
+
+    @Override
+    public void addJsonToTextIndexInBatches(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Iterable<?> documents,
+        final ResourceIdentifier index,
+        final AddToTextIndexRequestBuilder params,
+        final AdaptiveBatchSizer batchSizer,
+        final HodJobCallback<AddToTextIndexResponse> callback
+    ) {
+        JsonBatchSubmitter.start(documents, index, objectMapper, batchSizer, callback, (batch, batchCallback) -> addJsonToTextIndex(tokenProxy, new Documents<>(batch), index, params, batchCallback));
+    }
+
     @Override
     public void addUrlToTextIndex(
         final String url,
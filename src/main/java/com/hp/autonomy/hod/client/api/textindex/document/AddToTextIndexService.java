@@ -56,6 +56,53 @@ public interface AddToTextIndexService {
         HodJobCallback<AddToTextIndexResponse> callback
     ) throws HodErrorException;
 
+    /**
+     * Index JSON documents into HP Haven OnDemand in batches using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}. Each batch is sent as a separate job once the previous
+     * job has finished, with the size of each batch chosen by the given batch sizer. A batch which fails because it is
+     * too large is split and retried. The documents are serialized with a default ObjectMapper.
+     * @param documents The objects to convert to JSON. These are read lazily
+     * @param index The index to add to
+     * @param params Additional parameters to be sent as part of each request
+     * @param batchSizer Chooses the size of each batch, learning from the jobs submitted
+     * @param callback Callback that will be called once with the combined response of all the jobs, or with the first
+     * failure if any job fails
+     * @throws NullPointerException If a TokenProxyService has not been defined
+     */
+    default void addJsonToTextIndexInBatches(
+        final Iterable<?> documents,
+        final ResourceIdentifier index,
+        final AddToTextIndexRequestBuilder params,
+        final AdaptiveBatchSizer batchSizer,
+        final HodJobCallback<AddToTextIndexResponse> callback
+    ) {
+        JsonBatchSubmitter.start(documents, index, JsonBatchSubmitter.DEFAULT_OBJECT_MAPPER, batchSizer, callback, (batch, batchCallback) -> addJsonToTextIndex(new Documents<>(batch), index, params, batchCallback));
+    }
+
+    /**
+     * Index JSON documents into HP Haven OnDemand in batches using the given token proxy. Each batch is sent as a
+     * separate job once the previous job has finished, with the size of each batch chosen by the given batch sizer. A
+     * batch which fails because it is too large is split and retried. The documents are serialized with a default
+     * ObjectMapper.
+     * @param tokenProxy The token proxy to use
+     * @param documents The objects to convert to JSON. These are read lazily
+     * @param index The index to add to
+     * @param params Additional parameters to be sent as part of each request
+     * @param batchSizer Chooses the size of each batch, learning from the jobs submitted
+     * @param callback Callback that will be called once with the combined response of all the jobs, or with the first
+     * failure if any job fails
+     */
+    default void addJsonToTextIndexInBatches(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Iterable<?> documents,
+        final ResourceIdentifier index,
+        final AddToTextIndexRequestBuilder params,
+        final AdaptiveBatchSizer batchSizer,
+        final HodJobCallback<AddToTextIndexResponse> callback
+    ) {
+        JsonBatchSubmitter.start(documents, index, JsonBatchSubmitter.DEFAULT_OBJECT_MAPPER, batchSizer, callback, (batch, batchCallback) -> addJsonToTextIndex(tokenProxy, new Documents<>(batch), index, params, batchCallback));
+    }
+
     /**
      * Index a public accessible url into HP Haven OnDemand using a token proxy
      * provided by a {@link com.hp.autonomy.hod.client.token.TokenProxyService}
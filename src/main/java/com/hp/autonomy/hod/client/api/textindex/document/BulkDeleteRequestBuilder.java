@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * Helper class for configuring how a bulk delete is split into DeleteFromTextIndex requests. These options are not
+ * sent to HP Haven OnDemand.
+ */
+@Data
+@Accessors(chain = true)
+public class BulkDeleteRequestBuilder {
+
+    /**
+     * @param maxReferencesPerRequest The maximum number of references sent in a single request
+     */
+    private int maxReferencesPerRequest = 500;
+
+    /**
+     * @param maxRequestLength The maximum length of the URL encoded references sent in a single request. This should
+     * be kept below the maximum URL length accepted by HP Haven OnDemand
+     */
+    private int maxRequestLength = 6000;
+
+    /**
+     * @param maxConcurrentRequests The maximum number of delete jobs which may be running at once
+     */
+    private int maxConcurrentRequests = 4;
+
+}
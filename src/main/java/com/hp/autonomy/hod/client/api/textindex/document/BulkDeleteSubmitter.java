@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.job.ChunkedJobSubmitter;
+import com.hp.autonomy.hod.client.job.HodJobCallback;
+import com.hp.autonomy.hod.client.util.ParameterChunkIterator;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Splits the references of a bulk delete into chunks, which are deleted by a {@link ChunkedJobSubmitter}
+ */
+class BulkDeleteSubmitter {
+
+    private static final String REFERENCE_PARAMETER = "index_reference";
+
+    private BulkDeleteSubmitter() {}
+
+    static void start(
+        final ResourceIdentifier index,
+        final Iterable<String> references,
+        final BulkDeleteRequestBuilder params,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback,
+        final ChunkedJobSubmitter.JobSubmitter<List<String>, DeleteFromTextIndexResponse> jobSubmitter
+    ) {
+        final ParameterChunkIterator chunks = new ParameterChunkIterator(
+            references.iterator(),
+            REFERENCE_PARAMETER,
+            params.getMaxReferencesPerRequest(),
+            params.getMaxRequestLength()
+        );
+
+        final DeleteFromTextIndexResponse identity = new DeleteFromTextIndexResponse.Builder()
+            .setIndex(index.toString())
+            .build();
+
+        new ChunkedJobSubmitter<>(
+            chunks,
+            jobSubmitter,
+            identity,
+            BulkDeleteSubmitter::combineResponses,
+            params.getMaxConcurrentRequests(),
+            callback
+        ).start();
+    }
+
+    /**
+     * Starts a bulk delete of a stream of references, closing the stream once the callback has been called. The
+     * references are read as earlier jobs finish, so the stream cannot be closed when the bulk delete is started.
+     */
+    static void startWithStream(
+        final Stream<String> references,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback,
+        final BiConsumer<Iterable<String>, HodJobCallback<DeleteFromTextIndexResponse>> bulkDelete
+    ) {
+        try {
+            bulkDelete.accept(references::iterator, new StreamClosingCallback(references, callback));
+        } catch (final RuntimeException e) {
+            references.close();
+            throw e;
+        }
+    }
+
+    private static DeleteFromTextIndexResponse combineResponses(final DeleteFromTextIndexResponse first, final DeleteFromTextIndexResponse second) {
+        return new DeleteFromTextIndexResponse.Builder()
+            .setIndex(second.getIndex())
+            .setDocumentsDeleted(first.getDocumentsDeleted() + second.getDocumentsDeleted())
+            .build();
+    }
+
+    private static class StreamClosingCallback implements HodJobCallback<DeleteFromTextIndexResponse> {
+
+        private final Stream<String> references;
+        private final HodJobCallback<DeleteFromTextIndexResponse> callback;
+
+        private StreamClosingCallback(final Stream<String> references, final HodJobCallback<DeleteFromTextIndexResponse> callback) {
+            this.references = references;
+            this.callback = callback;
+        }
+
+        @Override
+        public void success(final DeleteFromTextIndexResponse result) {
+            references.close();
+            callback.success(result);
+        }
+
+        @Override
+        public void error(final HodErrorCode error) {
+            references.close();
+            callback.error(error);
+        }
+
+        @Override
+        public void timeout() {
+            references.close();
+            callback.timeout();
+        }
+
+        @Override
+        public void handleException(final RuntimeException exception) {
+            references.close();
+            callback.handleException(exception);
+        }
+    }
+}
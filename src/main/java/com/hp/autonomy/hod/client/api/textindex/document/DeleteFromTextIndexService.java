@@ -12,6 +12,7 @@ import com.hp.autonomy.hod.client.job.HodJobCallback;
 import com.hp.autonomy.hod.client.token.TokenProxy;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Service representing the DeleteFromTextIndex API
@@ -51,6 +52,76 @@ public interface DeleteFromTextIndexService {
         HodJobCallback<DeleteFromTextIndexResponse> callback
     ) throws HodErrorException;
 
+    /**
+     * Deletes the documents with the given references using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}. The references are split into chunks which are
+     * deleted by separate, concurrently running jobs.
+     * @param index The index to delete from
+     * @param references The references of the documents to delete. These are read lazily
+     * @param params Options controlling how the references are split into requests
+     * @param callback Callback that will be called once with the combined response of all the jobs, or with the first
+     * failure if any job fails
+     * @throws NullPointerException If a TokenProxyService has not been defined
+     */
+    default void bulkDeleteReferencesFromTextIndex(
+        final ResourceIdentifier index,
+        final Iterable<String> references,
+        final BulkDeleteRequestBuilder params,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback
+    ) {
+        BulkDeleteSubmitter.start(index, references, params, callback, (chunk, chunkCallback) -> deleteReferencesFromTextIndex(index, chunk, chunkCallback));
+    }
+
+    /**
+     * Deletes the documents with the given references using the given token proxy. The references are split into chunks
+     * which are deleted by separate, concurrently running jobs.
+     * @param tokenProxy The token proxy to use
+     * @param index The index to delete from
+     * @param references The references of the documents to delete. These are read lazily
+     * @param params Options controlling how the references are split into requests
+     * @param callback Callback that will be called once with the combined response of all the jobs, or with the first
+     * failure if any job fails
+     */
+    default void bulkDeleteReferencesFromTextIndex(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final ResourceIdentifier index,
+        final Iterable<String> references,
+        final BulkDeleteRequestBuilder params,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback
+    ) {
+        BulkDeleteSubmitter.start(index, references, params, callback, (chunk, chunkCallback) -> deleteReferencesFromTextIndex(tokenProxy, index, chunk, chunkCallback));
+    }
+
+    /**
+     * Deletes the documents with the given stream of references using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}. The stream is closed once the callback has been
+     * called
+     * @see #bulkDeleteReferencesFromTextIndex(ResourceIdentifier, Iterable, BulkDeleteRequestBuilder, HodJobCallback)
+     */
+    default void bulkDeleteReferencesFromTextIndex(
+        final ResourceIdentifier index,
+        final Stream<String> references,
+        final BulkDeleteRequestBuilder params,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback
+    ) {
+        BulkDeleteSubmitter.startWithStream(references, callback, (iterable, streamCallback) -> bulkDeleteReferencesFromTextIndex(index, iterable, params, streamCallback));
+    }
+
+    /**
+     * Deletes the documents with the given stream of references using the given token proxy. The stream is closed
+     * once the callback has been called
+     * @see #bulkDeleteReferencesFromTextIndex(TokenProxy, ResourceIdentifier, Iterable, BulkDeleteRequestBuilder, HodJobCallback)
+     */
+    default void bulkDeleteReferencesFromTextIndex(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final ResourceIdentifier index,
+        final Stream<String> references,
+        final BulkDeleteRequestBuilder params,
+        final HodJobCallback<DeleteFromTextIndexResponse> callback
+    ) {
+        BulkDeleteSubmitter.startWithStream(references, callback, (iterable, streamCallback) -> bulkDeleteReferencesFromTextIndex(tokenProxy, index, iterable, params, streamCallback));
+    }
+
     /**
      * Deletes all the documents from the given text index using a token proxy
      * provided by a {@link com.hp.autonomy.hod.client.token.TokenProxyService}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Groups documents into batches of pre-serialized JSON no larger than the current size chosen by an
+ * {@link AdaptiveBatchSizer}. Each document is serialized once, when its batch is created, so the size of a batch is
+ * known exactly and the batch is not serialized again when it is sent.
+ */
+class JsonBatchIterator implements Iterator<List<RawValue>> {
+
+    private final Iterator<?> documents;
+    private final ObjectMapper objectMapper;
+    private final AdaptiveBatchSizer batchSizer;
+
+    private byte[] pending;
+
+    JsonBatchIterator(final Iterator<?> documents, final ObjectMapper objectMapper, final AdaptiveBatchSizer batchSizer) {
+        this.documents = documents;
+        this.objectMapper = objectMapper;
+        this.batchSizer = batchSizer;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pending != null || documents.hasNext();
+    }
+
+    @Override
+    public List<RawValue> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        // read the size once so the whole batch uses a consistent limit
+        final int maxBytes = batchSizer.getBatchBytes();
+        final List<RawValue> batch = new ArrayList<>();
+        int bytes = 0;
+
+        while (pending != null || documents.hasNext()) {
+            final byte[] json = pending != null ? pending : serialize(documents.next());
+            pending = null;
+
+            if (!batch.isEmpty() && bytes + json.length > maxBytes) {
+                pending = json;
+                break;
+            }
+
+            batch.add(new RawValue(new String(json, StandardCharsets.UTF_8)));
+            bytes += json.length;
+        }
+
+        return batch;
+    }
+
+    private byte[] serialize(final Object document) {
+        try {
+            return objectMapper.writeValueAsBytes(document);
+        } catch (final JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize document", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.job.ChunkedJobSubmitter;
+import com.hp.autonomy.hod.client.job.HodJobCallback;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Groups documents into batches of JSON sized by an {@link AdaptiveBatchSizer}, which are added by a
+ * {@link ChunkedJobSubmitter} one at a time
+ */
+@Slf4j
+class JsonBatchSubmitter {
+
+    // used by the default methods of AddToTextIndexService, which have no configured object mapper
+    static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+
+    private JsonBatchSubmitter() {}
+
+    static void start(
+        final Iterable<?> documents,
+        final ResourceIdentifier index,
+        final ObjectMapper objectMapper,
+        final AdaptiveBatchSizer batchSizer,
+        final HodJobCallback<AddToTextIndexResponse> callback,
+        final ChunkedJobSubmitter.JobSubmitter<List<RawValue>, AddToTextIndexResponse> jobSubmitter
+    ) {
+        final AddToTextIndexResponse identity = new AddToTextIndexResponse.Builder()
+            .setIndex(index.toString())
+            .setReferences(Collections.<AddToTextIndexReference>emptyList())
+            .build();
+
+        final AdaptiveBatchSubmitter batchSubmitter = new AdaptiveBatchSubmitter(jobSubmitter, batchSizer, identity);
+
+        // batches are sent one at a time so that each batch is sized using the results of the one before
+        new ChunkedJobSubmitter<>(
+            new JsonBatchIterator(documents.iterator(), objectMapper, batchSizer),
+            batchSubmitter,
+            identity,
+            JsonBatchSubmitter::combineResponses,
+            1,
+            callback
+        ).start();
+    }
+
+    private static AddToTextIndexResponse combineResponses(final AddToTextIndexResponse first, final AddToTextIndexResponse second) {
+        final List<AddToTextIndexReference> references = new ArrayList<>();
+
+        if (first.getReferences() != null) {
+            references.addAll(first.getReferences());
+        }
+
+        if (second.getReferences() != null) {
+            references.addAll(second.getReferences());
+        }
+
+        return new AddToTextIndexResponse.Builder()
+            .setIndex(second.getIndex())
+            .setReferences(references)
+            .build();
+    }
+
+    // Reports the outcome of each batch to the batch sizer, splitting batches which fail because they are too large
+    private static class AdaptiveBatchSubmitter implements ChunkedJobSubmitter.JobSubmitter<List<RawValue>, AddToTextIndexResponse> {
+
+        private final ChunkedJobSubmitter.JobSubmitter<List<RawValue>, AddToTextIndexResponse> jobSubmitter;
+        private final AdaptiveBatchSizer batchSizer;
+        private final AddToTextIndexResponse identity;
+
+        private AdaptiveBatchSubmitter(
+            final ChunkedJobSubmitter.JobSubmitter<List<RawValue>, AddToTextIndexResponse> jobSubmitter,
+            final AdaptiveBatchSizer batchSizer,
+            final AddToTextIndexResponse identity
+        ) {
+            this.jobSubmitter = jobSubmitter;
+            this.batchSizer = batchSizer;
+            this.identity = identity;
+        }
+
+        @Override
+        public void submit(final List<RawValue> batch, final HodJobCallback<AddToTextIndexResponse> callback) {
+            final BatchCallback batchCallback = new BatchCallback(batch, callback);
+
+            try {
+                jobSubmitter.submit(batch, batchCallback);
+            } catch (final HodErrorException e) {
+                // requests which are too large are rejected before a job is created
+                batchCallback.error(e.getErrorCode());
+            }
+        }
+
+        private void retryInHalves(final List<RawValue> batch, final HodJobCallback<AddToTextIndexResponse> callback) {
+            final int middle = batch.size() / 2;
+
+            log.debug("Retrying batch of {} documents as two smaller batches", batch.size());
+
+            final List<List<RawValue>> halves = Arrays.asList(
+                new ArrayList<>(batch.subList(0, middle)),
+                new ArrayList<>(batch.subList(middle, batch.size()))
+            );
+
+            new ChunkedJobSubmitter<>(halves.iterator(), this, identity, JsonBatchSubmitter::combineResponses, 1, callback).start();
+        }
+
+        private class BatchCallback implements HodJobCallback<AddToTextIndexResponse> {
+
+            private final List<RawValue> batch;
+            private final HodJobCallback<AddToTextIndexResponse> callback;
+            private final long startTime = System.nanoTime();
+
+            // Jobs may report more than one error, so only the first outcome is counted
+            private final AtomicBoolean done = new AtomicBoolean(false);
+
+            private BatchCallback(final List<RawValue> batch, final HodJobCallback<AddToTextIndexResponse> callback) {
+                this.batch = batch;
+                this.callback = callback;
+            }
+
+            @Override
+            public void success(final AddToTextIndexResponse result) {
+                if (done.compareAndSet(false, true)) {
+                    batchSizer.onSuccess(Duration.millis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
+                    callback.success(result);
+                }
+            }
+
+            @Override
+            public void error(final HodErrorCode error) {
+                if (done.compareAndSet(false, true)) {
+                    if (batchSizer.onError(error) && batch.size() > 1) {
+                        retryInHalves(batch, callback);
+                    } else {
+                        callback.error(error);
+                    }
+                }
+            }
+
+            @Override
+            public void timeout() {
+                if (done.compareAndSet(false, true)) {
+                    batchSizer.onTimeout();
+                    callback.timeout();
+                }
+            }
+
+            @Override
+            public void handleException(final RuntimeException exception) {
+                if (done.compareAndSet(false, true)) {
+                    callback.handleException(exception);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.content;
+
+import com.hp.autonomy.hod.client.api.textindex.query.search.Document;
+import com.hp.autonomy.hod.client.api.textindex.query.search.QueryResults;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.collections4.map.LRUMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Fetches the content of a large number of documents by splitting the references into batches and requesting the
+ * batches concurrently, instead of sending every reference in a single GetContent request.
+ * <p/>
+ * At most maxConcurrentBatches requests are in flight at once. A failed batch does not fail the whole fetch; instead it
+ * is reported in {@link Results#getFailures()} and the content of the other batches is still returned.
+ * <p/>
+ * Recently fetched documents are kept in a least recently used cache of the given size, and are not requested again.
+ * Since the cache is keyed by reference, the content fetcher should always use the same index and parameters.
+ * <p/>
+ * This class is thread safe
+ * @param <T> The type of the documents
+ */
+@Slf4j
+public class BatchedContentFetcher<T extends Serializable> {
+
+    private final ContentFetcher<T> contentFetcher;
+    private final Function<? super T, String> referenceFunction;
+    private final ExecutorService executorService;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+    private final Map<String, T> cache;
+
+    /**
+     * Creates a new BatchedContentFetcher
+     * @param contentFetcher Fetches the content for a single batch of references
+     * @param referenceFunction Returns the reference of a document
+     * @param executorService The executor service used to fetch batches
+     * @param batchSize The maximum number of references in each request
+     * @param maxConcurrentBatches The maximum number of batches which may be requested at once
+     * @param cacheSize The maximum number of documents to cache, or 0 to disable caching
+     * @throws IllegalArgumentException If batchSize or maxConcurrentBatches are not positive, or cacheSize is negative
+     */
+    public BatchedContentFetcher(
+        final ContentFetcher<T> contentFetcher,
+        final Function<? super T, String> referenceFunction,
+        final ExecutorService executorService,
+        final int batchSize,
+        final int maxConcurrentBatches,
+        final int cacheSize
+    ) {
+        if (batchSize <= 0 || maxConcurrentBatches <= 0) {
+            throw new IllegalArgumentException("batchSize and maxConcurrentBatches must be positive");
+        }
+
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative");
+        }
+
+        this.contentFetcher = contentFetcher;
+        this.referenceFunction = referenceFunction;
+        this.executorService = executorService;
+        this.batchSize = batchSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        cache = cacheSize == 0 ? null : new LRUMap<>(cacheSize);
+    }
+
+    /**
+     * Creates a new BatchedContentFetcher for {@link Document}s
+     * @param contentFetcher Fetches the content for a single batch of references
+     * @param executorService The executor service used to fetch batches
+     * @param batchSize The maximum number of references in each request
+     * @param maxConcurrentBatches The maximum number of batches which may be requested at once
+     * @param cacheSize The maximum number of documents to cache, or 0 to disable caching
+     * @return A new {@literal BatchedContentFetcher<Document>}
+     */
+    public static BatchedContentFetcher<Document> documentsFetcher(
+        final ContentFetcher<Document> contentFetcher,
+        final ExecutorService executorService,
+        final int batchSize,
+        final int maxConcurrentBatches,
+        final int cacheSize
+    ) {
+        return new BatchedContentFetcher<>(contentFetcher, Document::getReference, executorService, batchSize, maxConcurrentBatches, cacheSize);
+    }
+
+    /**
+     * Fetches the content of the documents with the given references
+     * @param references The references of the documents. Duplicate references are only requested once
+     * @return The documents keyed by reference, in the order of the given references, and the batches which failed.
+     * References which do not exist are left out of the content
+     */
+    public Results<T> getContent(final Collection<String> references) {
+        final Set<String> uniqueReferences = new LinkedHashSet<>(references);
+        final Map<String, T> found = new HashMap<>();
+        final List<String> missing = new ArrayList<>();
+
+        for (final String reference : uniqueReferences) {
+            final T document = getCached(reference);
+
+            if (document != null) {
+                found.put(reference, document);
+            } else {
+                missing.add(reference);
+            }
+        }
+
+        final List<FailedBatch> failures = new ArrayList<>();
+
+        if (!missing.isEmpty()) {
+            fetchBatches(ListUtils.partition(missing, batchSize), found, failures);
+        }
+
+        final Map<String, T> content = new LinkedHashMap<>();
+
+        for (final String reference : uniqueReferences) {
+            final T document = found.get(reference);
+
+            if (document != null) {
+                content.put(reference, document);
+            }
+        }
+
+        return new Results<>(content, failures);
+    }
+
+    private void fetchBatches(final List<List<String>> batches, final Map<String, T> found, final List<FailedBatch> failures) {
+        log.debug("Fetching content for {} batches with {} concurrent requests", batches.size(), maxConcurrentBatches);
+
+        final CompletionService<QueryResults<T>> completionService = new ExecutorCompletionService<>(executorService);
+        final Map<Future<QueryResults<T>>, List<String>> inFlight = new HashMap<>();
+        int nextBatch = 0;
+
+        try {
+            while (nextBatch < batches.size() || !inFlight.isEmpty()) {
+                while (inFlight.size() < maxConcurrentBatches && nextBatch < batches.size()) {
+                    final List<String> batch = new ArrayList<>(batches.get(nextBatch++));
+                    inFlight.put(completionService.submit(() -> contentFetcher.fetch(batch)), batch);
+                }
+
+                final Future<QueryResults<T>> future = completionService.take();
+                final List<String> batch = inFlight.remove(future);
+
+                try {
+                    for (final T document : future.get().getDocuments()) {
+                        final String reference = referenceFunction.apply(document);
+                        found.put(reference, document);
+                        putCached(reference, document);
+                    }
+                } catch (final ExecutionException e) {
+                    final Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    log.warn("Error fetching content for batch of {} references", batch.size(), cause);
+                    failures.add(new FailedBatch(batch, cause));
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for content", e);
+        } finally {
+            for (final Future<QueryResults<T>> future : inFlight.keySet()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private T getCached(final String reference) {
+        if (cache == null) {
+            return null;
+        }
+
+        synchronized (cache) {
+            return cache.get(reference);
+        }
+    }
+
+    private void putCached(final String reference, final T document) {
+        if (cache != null) {
+            synchronized (cache) {
+                cache.put(reference, document);
+            }
+        }
+    }
+
+    /**
+     * Fetches the content for a single batch of references
+     * @param <T> The type of the documents
+     */
+    @FunctionalInterface
+    public interface ContentFetcher<T extends Serializable> {
+
+        /**
+         * @param references The references of the documents to fetch
+         * @return The documents with the given references
+         * @throws HodErrorException If an error occurs fetching the documents
+         */
+        QueryResults<T> fetch(List<String> references) throws HodErrorException;
+    }
+
+    /**
+     * The result of fetching content in batches
+     * @param <T> The type of the documents
+     */
+    @Data
+    public static class Results<T extends Serializable> {
+
+        /**
+         * @return The documents which were fetched, keyed by reference
+         */
+        private final Map<String, T> content;
+
+        /**
+         * @return The batches which could not be fetched
+         */
+        private final List<FailedBatch> failures;
+    }
+
+    /**
+     * A batch of references whose content could not be fetched
+     */
+    @Data
+    public static class FailedBatch {
+
+        /**
+         * @return The references in the batch
+         */
+        private final List<String> references;
+
+        /**
+         * @return The reason the batch failed. This is usually a {@link HodErrorException}
+         */
+        private final Exception cause;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.fields;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.api.textindex.status.TextIndexStatus;
+import com.hp.autonomy.hod.client.api.textindex.status.TextIndexStatusService;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.map.LRUMap;
+import org.joda.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * RetrieveIndexFieldsService which caches the fields of each index until the status of the index shows that it has
+ * changed, for search forms which need the field types of the same indexes on every render.
+ * <p/>
+ * The status of each index is checked with {@link TextIndexStatusService} at most once per status check interval. If
+ * the component count, total documents, total index size or 24 hour update count have changed, the cached fields for
+ * the index are discarded. Once the interval has passed the status is checked in the background, and the cached fields
+ * are returned until the check finds a change. The first status checks of several indexes are made in parallel. When
+ * fields are requested for several indexes, the indexes which are not cached are retrieved together in a single
+ * request.
+ * <p/>
+ * Fields and index statuses are cached separately for each token proxy, since users may not be able to see the same
+ * indexes. The number of index statuses held is limited to the maximum number of entries, discarding the statuses which
+ * were checked longest ago.
+ */
+@Slf4j
+public class CachingRetrieveIndexFieldsService implements RetrieveIndexFieldsService {
+
+    private final RetrieveIndexFieldsService retrieveIndexFieldsService;
+    private final TextIndexStatusService textIndexStatusService;
+    private final TokenProxyService<?, TokenType.Simple> tokenProxyService;
+    private final long statusCheckIntervalNanos;
+    private final Executor statusCheckExecutor;
+    private final LongSupplier nanoTime;
+
+    private final int maxEntries;
+
+    // keyed by token proxy and index
+    private final ConcurrentMap<List<Object>, IndexState> indexStates = new ConcurrentHashMap<>();
+    private final Set<List<Object>> checkingIndexes = ConcurrentHashMap.newKeySet();
+
+    // guarded by themselves
+    private final Map<List<Object>, CachedFields> fieldsByIndex;
+    private final Map<List<Object>, CachedFields> combinedFields;
+
+    /**
+     * Creates a new CachingRetrieveIndexFieldsService
+     * @param retrieveIndexFieldsService The service used to retrieve fields which are not cached
+     * @param textIndexStatusService The service used to check whether indexes have changed
+     * @param tokenProxyService Provides the token proxy for the methods which do not take one. This may be null if only
+     * the methods which take a token proxy are used
+     * @param statusCheckInterval The minimum time between status checks of each index
+     * @param maxEntries The maximum number of responses and index statuses to cache
+     * @param statusCheckExecutor The executor used for status checks
+     */
+    public CachingRetrieveIndexFieldsService(
+        final RetrieveIndexFieldsService retrieveIndexFieldsService,
+        final TextIndexStatusService textIndexStatusService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration statusCheckInterval,
+        final int maxEntries,
+        final Executor statusCheckExecutor
+    ) {
+        this(retrieveIndexFieldsService, textIndexStatusService, tokenProxyService, statusCheckInterval, maxEntries, statusCheckExecutor, System::nanoTime);
+    }
+
+    CachingRetrieveIndexFieldsService(
+        final RetrieveIndexFieldsService retrieveIndexFieldsService,
+        final TextIndexStatusService textIndexStatusService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration statusCheckInterval,
+        final int maxEntries,
+        final Executor statusCheckExecutor,
+        final LongSupplier nanoTime
+    ) {
+        this.retrieveIndexFieldsService = retrieveIndexFieldsService;
+        this.textIndexStatusService = textIndexStatusService;
+        this.tokenProxyService = tokenProxyService;
+        statusCheckIntervalNanos = TimeUnit.MILLISECONDS.toNanos(statusCheckInterval.getMillis());
+        this.statusCheckExecutor = statusCheckExecutor;
+        this.nanoTime = nanoTime;
+        this.maxEntries = maxEntries;
+        fieldsByIndex = new LRUMap<>(maxEntries);
+        combinedFields = new LRUMap<>(maxEntries);
+    }
+
+    @Override
+    public RetrieveIndexFieldsResponse retrieveIndexFields(final Collection<ResourceName> indexes, final RetrieveIndexFieldsRequestBuilder params) throws HodErrorException {
+        return retrieveCombined(getTokenProxy(), indexes, params);
+    }
+
+    @Override
+    public RetrieveIndexFieldsResponse retrieveIndexFields(final TokenProxy<?, TokenType.Simple> tokenProxy, final Collection<ResourceName> indexes, final RetrieveIndexFieldsRequestBuilder params) throws HodErrorException {
+        return retrieveCombined(tokenProxy, indexes, params);
+    }
+
+    @Override
+    public Map<String, RetrieveIndexFieldsResponse> retrieveIndexFieldsByIndex(final Collection<ResourceName> indexes, final RetrieveIndexFieldsRequestBuilder params) throws HodErrorException {
+        return retrieveByIndex(getTokenProxy(), indexes, params);
+    }
+
+    @Override
+    public Map<String, RetrieveIndexFieldsResponse> retrieveIndexFieldsByIndex(final TokenProxy<?, TokenType.Simple> tokenProxy, final Collection<ResourceName> indexes, final RetrieveIndexFieldsRequestBuilder params) throws HodErrorException {
+        return retrieveByIndex(tokenProxy, indexes, params);
+    }
+
+    /**
+     * Removes all the cached fields and index statuses
+     */
+    public void clear() {
+        indexStates.clear();
+
+        synchronized (fieldsByIndex) {
+            fieldsByIndex.clear();
+        }
+
+        synchronized (combinedFields) {
+            combinedFields.clear();
+        }
+    }
+
+    private RetrieveIndexFieldsResponse retrieveCombined(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<ResourceName> indexes,
+        final RetrieveIndexFieldsRequestBuilder params
+    ) throws HodErrorException {
+        final Map<ResourceName, Long> versions = checkIndexes(tokenProxy, indexes);
+        final List<Object> key = Arrays.asList(tokenProxy, new HashSet<>(indexes), params.build());
+        final CachedFields cached;
+
+        synchronized (combinedFields) {
+            cached = combinedFields.get(key);
+        }
+
+        if (cached != null && cached.versions.equals(versions)) {
+            return cached.response;
+        }
+
+        final RetrieveIndexFieldsResponse response = retrieveIndexFieldsService.retrieveIndexFields(tokenProxy, indexes, params);
+
+        synchronized (combinedFields) {
+            combinedFields.put(key, new CachedFields(response, versions));
+        }
+
+        return response;
+    }
+
+    private Map<String, RetrieveIndexFieldsResponse> retrieveByIndex(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<ResourceName> indexes,
+        final RetrieveIndexFieldsRequestBuilder params
+    ) throws HodErrorException {
+        final Map<ResourceName, Long> versions = checkIndexes(tokenProxy, indexes);
+        final Map<String, Object> builtParams = params.build();
+        final Map<String, RetrieveIndexFieldsResponse> output = new HashMap<>();
+        final List<ResourceName> missing = new ArrayList<>();
+
+        synchronized (fieldsByIndex) {
+            for (final ResourceName index : new LinkedHashSet<>(indexes)) {
+                final CachedFields cached = fieldsByIndex.get(Arrays.asList(tokenProxy, index, builtParams));
+
+                if (cached != null && cached.versions.equals(versionOf(versions, index))) {
+                    output.put(index.getName(), cached.response);
+                } else {
+                    missing.add(index);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            log.debug("Retrieving fields for {} indexes which are not cached", missing.size());
+
+            final Map<String, RetrieveIndexFieldsResponse> responses = retrieveIndexFieldsService.retrieveIndexFieldsByIndex(tokenProxy, missing, params);
+
+            synchronized (fieldsByIndex) {
+                for (final ResourceName index : missing) {
+                    final RetrieveIndexFieldsResponse response = responses.get(index.getName());
+
+                    if (response != null) {
+                        fieldsByIndex.put(Arrays.asList(tokenProxy, index, builtParams), new CachedFields(response, versionOf(versions, index)));
+                    }
+                }
+            }
+
+            output.putAll(responses);
+        }
+
+        return output;
+    }
+
+    // returns a version for each index, which changes whenever the status of the index changes
+    private Map<ResourceName, Long> checkIndexes(final TokenProxy<?, TokenType.Simple> tokenProxy, final Collection<ResourceName> indexes) throws HodErrorException {
+        final Map<ResourceName, Long> versions = new HashMap<>();
+        final List<ResourceName> uncheckedIndexes = new ArrayList<>();
+
+        for (final ResourceName index : new LinkedHashSet<>(indexes)) {
+            final List<Object> key = stateKey(tokenProxy, index);
+            final IndexState state = indexStates.get(key);
+
+            if (state == null) {
+                uncheckedIndexes.add(index);
+            } else {
+                if (nanoTime.getAsLong() - state.checkedAt >= statusCheckIntervalNanos) {
+                    checkInBackground(tokenProxy, index);
+                }
+
+                // the check may have already finished if the executor runs it on this thread, or the state may have
+                // been removed by clear
+                final IndexState current = indexStates.get(key);
+                versions.put(index, current == null ? state.version : current.version);
+            }
+        }
+
+        // indexes which have never been checked have no fields to serve, so their checks must be waited for
+        if (uncheckedIndexes.size() == 1) {
+            final ResourceName index = uncheckedIndexes.get(0);
+            versions.put(index, updateState(tokenProxy, index, textIndexStatusService.getIndexStatus(tokenProxy, index)).version);
+        } else if (!uncheckedIndexes.isEmpty()) {
+            final List<CompletableFuture<TextIndexStatus>> statuses = new ArrayList<>(uncheckedIndexes.size());
+
+            for (final ResourceName index : uncheckedIndexes) {
+                statuses.add(checkInParallel(tokenProxy, index));
+            }
+
+            for (int i = 0; i < uncheckedIndexes.size(); i++) {
+                final ResourceName index = uncheckedIndexes.get(i);
+                versions.put(index, updateState(tokenProxy, index, await(statuses.get(i))).version);
+            }
+        }
+
+        return versions;
+    }
+
+    private void checkInBackground(final TokenProxy<?, TokenType.Simple> tokenProxy, final ResourceName index) {
+        final List<Object> key = stateKey(tokenProxy, index);
+
+        // only one check of each index runs at a time
+        if (!checkingIndexes.add(key)) {
+            return;
+        }
+
+        try {
+            statusCheckExecutor.execute(() -> {
+                try {
+                    updateState(tokenProxy, index, textIndexStatusService.getIndexStatus(tokenProxy, index));
+                } catch (final HodErrorException | RuntimeException e) {
+                    // the check will be retried by the next request for the index
+                    log.warn("Error checking status of index {}", index, e);
+                } finally {
+                    checkingIndexes.remove(key);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            checkingIndexes.remove(key);
+            log.warn("Could not start status check of index {}", index, e);
+        }
+    }
+
+    private CompletableFuture<TextIndexStatus> checkInParallel(final TokenProxy<?, TokenType.Simple> tokenProxy, final ResourceName index) {
+        final CompletableFuture<TextIndexStatus> future = new CompletableFuture<>();
+
+        final Runnable check = () -> {
+            try {
+                future.complete(textIndexStatusService.getIndexStatus(tokenProxy, index));
+            } catch (final HodErrorException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        };
+
+        try {
+            statusCheckExecutor.execute(check);
+        } catch (final RejectedExecutionException e) {
+            check.run();
+        }
+
+        return future;
+    }
+
+    private IndexState updateState(final TokenProxy<?, TokenType.Simple> tokenProxy, final ResourceName index, final TextIndexStatus status) {
+        final long now = nanoTime.getAsLong();
+
+        final IndexState updated = indexStates.compute(stateKey(tokenProxy, index), (key, state) -> {
+            if (state == null || hasChanged(state.status, status)) {
+                log.debug("Status of index {} has changed", index);
+                return new IndexState(status, state == null ? 0 : state.version + 1, now);
+            }
+
+            return new IndexState(state.status, state.version, now);
+        });
+
+        if (indexStates.size() > maxEntries) {
+            removeOldestState();
+        }
+
+        return updated;
+    }
+
+    // eviction is approximate, since states may be updated while the oldest is found
+    private void removeOldestState() {
+        Map.Entry<List<Object>, IndexState> oldest = null;
+
+        for (final Map.Entry<List<Object>, IndexState> entry : indexStates.entrySet()) {
+            if (oldest == null || entry.getValue().checkedAt - oldest.getValue().checkedAt < 0) {
+                oldest = entry;
+            }
+        }
+
+        if (oldest != null) {
+            indexStates.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private static List<Object> stateKey(final TokenProxy<?, TokenType.Simple> tokenProxy, final ResourceName index) {
+        return Arrays.asList(tokenProxy, index);
+    }
+
+    private TokenProxy<?, TokenType.Simple> getTokenProxy() {
+        if (tokenProxyService == null) {
+            throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
+        }
+
+        return tokenProxyService.getTokenProxy();
+    }
+
+    private static TextIndexStatus await(final CompletableFuture<TextIndexStatus> future) throws HodErrorException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for index status", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof HodErrorException) {
+                throw (HodErrorException) cause;
+            } else {
+                throw (RuntimeException) cause;
+            }
+        }
+    }
+
+    private static Map<ResourceName, Long> versionOf(final Map<ResourceName, Long> versions, final ResourceName index) {
+        final Map<ResourceName, Long> output = new HashMap<>();
+        output.put(index, versions.get(index));
+        return output;
+    }
+
+    private static boolean hasChanged(final TextIndexStatus previous, final TextIndexStatus current) {
+        return previous.getComponentCount() != current.getComponentCount()
+            || previous.getTotalDocuments() != current.getTotalDocuments()
+            || previous.getTotalIndexSize() != current.getTotalIndexSize()
+            || previous.getIndexUpdates24hr() != current.getIndexUpdates24hr();
+    }
+
+    private static class IndexState {
+
+        private final TextIndexStatus status;
+        private final long version;
+        private final long checkedAt;
+
+        private IndexState(final TextIndexStatus status, final long version, final long checkedAt) {
+            this.status = status;
+            this.version = version;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static class CachedFields {
+
+        private final RetrieveIndexFieldsResponse response;
+        private final Map<ResourceName, Long> versions;
+
+        private CachedFields(final RetrieveIndexFieldsResponse response, final Map<ResourceName, Long> versions) {
+            this.response = response;
+            this.versions = versions;
+        }
+    }
+}
@@ -35,9 +35,13 @@ public class RetrieveIndexFieldsRequestBuilder {
      */
     Map<String, Object> build() {
         final Map<String, Object> map = new MultiMap<>();
-        for (final FieldType fieldType : fieldTypes) {
-            map.put("field_types", fieldType);
+
+        if (fieldTypes != null) {
+            for (final FieldType fieldType : fieldTypes) {
+                map.put("field_types", fieldType);
+            }
         }
+
         map.put("max_values", maxValues);
 
         return map;
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.parametric;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import com.hp.autonomy.hod.client.util.RefreshingCache;
+import org.joda.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * GetParametricRangesService which caches parametric ranges by field names, indexes, ranges and parameters, for facet
+ * panels which request the same ranges for every search.
+ * <p/>
+ * Cached ranges are refreshed in the background once they are older than refreshAfter, and are returned stale until they
+ * are older than expireAfter. The memory used is bounded by the total number of ranges cached. Ranges are cached
+ * separately for each token proxy, since users may not be able to see the same indexes or documents. The parameters are
+ * copied when ranges are requested, so later changes to them do not affect background refreshes.
+ */
+public class CachingParametricRangesService implements GetParametricRangesService {
+
+    private final GetParametricRangesService getParametricRangesService;
+    private final TokenProxyService<?, TokenType.Simple> tokenProxyService;
+    private final RefreshingCache<List<Object>, List<FieldRanges>> cache;
+
+    /**
+     * Creates a new CachingParametricRangesService
+     * @param getParametricRangesService The service used to fetch ranges which are not cached
+     * @param tokenProxyService Provides the token proxy for the methods which do not take one. This may be null if only
+     * the methods which take a token proxy are used
+     * @param refreshAfter How long after fetching ranges are refreshed in the background
+     * @param expireAfter How long after fetching ranges are no longer returned
+     * @param maxRanges The maximum number of ranges to cache
+     * @param refreshExecutor The executor used for background refreshes
+     */
+    public CachingParametricRangesService(
+        final GetParametricRangesService getParametricRangesService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxRanges,
+        final Executor refreshExecutor
+    ) {
+        this.getParametricRangesService = getParametricRangesService;
+        this.tokenProxyService = tokenProxyService;
+        cache = new RefreshingCache<>(refreshAfter, expireAfter, maxRanges, CachingParametricRangesService::countRanges, refreshExecutor);
+    }
+
+    @Override
+    public List<FieldRanges> getParametricRanges(
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final String ranges,
+        final GetParametricRangesRequestBuilder params
+    ) throws HodErrorException {
+        return getParametricRanges(getTokenProxy(), fieldNames, indexes, ranges, params);
+    }
+
+    @Override
+    public List<FieldRanges> getParametricRanges(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final String ranges,
+        final GetParametricRangesRequestBuilder params
+    ) throws HodErrorException {
+        final List<String> fieldNamesCopy = new ArrayList<>(fieldNames);
+        final List<ResourceName> indexesCopy = new ArrayList<>(indexes);
+        final GetParametricRangesRequestBuilder paramsCopy = params.copy();
+
+        return new ArrayList<>(cache.get(
+            cacheKey(tokenProxy, fieldNamesCopy, indexesCopy, ranges, paramsCopy),
+            () -> getParametricRangesService.getParametricRanges(tokenProxy, fieldNamesCopy, indexesCopy, ranges, paramsCopy)
+        ));
+    }
+
+    /**
+     * Removes all the cached ranges
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // the parameters are compared as builders rather than built maps, since the built map leaves out some parameters
+    private List<Object> cacheKey(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final List<String> fieldNames,
+        final List<ResourceName> indexes,
+        final String ranges,
+        final GetParametricRangesRequestBuilder params
+    ) {
+        return Arrays.asList(tokenProxy, fieldNames, new HashSet<>(indexes), ranges, params);
+    }
+
+    // the token proxy is found on the calling thread, since the TokenProxyService may not work on the refresh executor
+    private TokenProxy<?, TokenType.Simple> getTokenProxy() {
+        if (tokenProxyService == null) {
+            throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
+        }
+
+        return tokenProxyService.getTokenProxy();
+    }
+
+    private static int countRanges(final List<FieldRanges> fields) {
+        int count = 0;
+
+        for (final FieldRanges field : fields) {
+            count += 1 + (field.getValueRanges() == null ? 0 : field.getValueRanges().size());
+        }
+
+        return count;
+    }
+}
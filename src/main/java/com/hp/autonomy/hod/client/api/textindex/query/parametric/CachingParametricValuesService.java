@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.parametric;
+
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import com.hp.autonomy.hod.client.util.RefreshingCache;
+import org.joda.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * GetParametricValuesService which caches parametric values by field names, indexes and parameters, for facet panels
+ * which request the same values for every search.
+ * <p/>
+ * Cached values are refreshed in the background once they are older than refreshAfter, and are returned stale until they
+ * are older than expireAfter. The memory used is bounded by the total number of parametric values cached. Values are
+ * cached separately for each token proxy, since users may not be able to see the same indexes or documents. The
+ * parameters are copied when values are requested, so later changes to them do not affect background refreshes.
+ * <p/>
+ * The methods which pass fields to a consumer are not cached.
+ */
+public class CachingParametricValuesService implements GetParametricValuesService {
+
+    private final GetParametricValuesService getParametricValuesService;
+    private final TokenProxyService<?, TokenType.Simple> tokenProxyService;
+    private final RefreshingCache<List<Object>, List<FieldValues>> cache;
+
+    /**
+     * Creates a new CachingParametricValuesService
+     * @param getParametricValuesService The service used to fetch values which are not cached
+     * @param tokenProxyService Provides the token proxy for the methods which do not take one. This may be null if only
+     * the methods which take a token proxy are used
+     * @param refreshAfter How long after fetching values are refreshed in the background
+     * @param expireAfter How long after fetching values are no longer returned
+     * @param maxValues The maximum number of parametric values to cache
+     * @param refreshExecutor The executor used for background refreshes
+     */
+    public CachingParametricValuesService(
+        final GetParametricValuesService getParametricValuesService,
+        final TokenProxyService<?, TokenType.Simple> tokenProxyService,
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxValues,
+        final Executor refreshExecutor
+    ) {
+        this.getParametricValuesService = getParametricValuesService;
+        this.tokenProxyService = tokenProxyService;
+        cache = new RefreshingCache<>(refreshAfter, expireAfter, maxValues, CachingParametricValuesService::countValues, refreshExecutor);
+    }
+
+    @Override
+    public List<FieldValues> getParametricValues(
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params
+    ) throws HodErrorException {
+        return getParametricValues(getTokenProxy(), fieldNames, indexes, params);
+    }
+
+    @Override
+    public List<FieldValues> getParametricValues(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params
+    ) throws HodErrorException {
+        final List<String> fieldNamesCopy = new ArrayList<>(fieldNames);
+        final List<ResourceName> indexesCopy = new ArrayList<>(indexes);
+        final GetParametricValuesRequestBuilder paramsCopy = params.copy();
+
+        return new ArrayList<>(cache.get(
+            cacheKey(tokenProxy, fieldNamesCopy, indexesCopy, paramsCopy),
+            () -> getParametricValuesService.getParametricValues(tokenProxy, fieldNamesCopy, indexesCopy, paramsCopy)
+        ));
+    }
+
+    @Override
+    public void getParametricValues(
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params,
+        final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        getParametricValuesService.getParametricValues(fieldNames, indexes, params, consumer);
+    }
+
+    @Override
+    public void getParametricValues(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params,
+        final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        getParametricValuesService.getParametricValues(tokenProxy, fieldNames, indexes, params, consumer);
+    }
+
+    /**
+     * Removes all the cached values
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // the order of the indexes does not affect the response, but the order of the field names does
+    private List<Object> cacheKey(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final List<String> fieldNames,
+        final List<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params
+    ) {
+        return Arrays.asList(tokenProxy, fieldNames, new HashSet<>(indexes), params);
+    }
+
+    // the token proxy is found on the calling thread, since the TokenProxyService may not work on the refresh executor
+    private TokenProxy<?, TokenType.Simple> getTokenProxy() {
+        if (tokenProxyService == null) {
+            throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
+        }
+
+        return tokenProxyService.getTokenProxy();
+    }
+
+    private static int countValues(final List<FieldValues> fields) {
+        int count = 0;
+
+        for (final FieldValues field : fields) {
+            count += countValues(field);
+        }
+
+        return count;
+    }
+
+    private static int countValues(final FieldValues field) {
+        int count = 1;
+
+        for (final FieldValues.ValueAndCount value : field.getValues()) {
+            count += value.getSubField() == null ? 1 : 1 + countValues(value.getSubField());
+        }
+
+        return count;
+    }
+}
@@ -52,6 +52,20 @@ public class GetParametricRangesRequestBuilder {
 
     private String securityInfo;
 
+    GetParametricRangesRequestBuilder copy() {
+        final GetParametricRangesRequestBuilder copy = new GetParametricRangesRequestBuilder();
+        copy.text = text;
+        copy.fieldText = fieldText;
+        copy.maxRanges = maxRanges;
+        copy.sort = sort;
+        copy.totalRanges = totalRanges;
+        copy.valueDetails = valueDetails;
+        copy.queryProfile = queryProfile;
+        copy.minScore = minScore;
+        copy.securityInfo = securityInfo;
+        return copy;
+    }
+
     Map<String, Object> build() {
         final Map<String, Object> map = new MultiMap<>();
         map.put("text", text);
@@ -87,6 +87,25 @@ public class GetParametricValuesRequestBuilder {
         return this;
     }
 
+    /**
+     * @return A copy of this builder, which is not affected by later changes to this builder
+     */
+    GetParametricValuesRequestBuilder copy() {
+        final GetParametricValuesRequestBuilder copy = new GetParametricValuesRequestBuilder();
+        copy.minScore = minScore;
+        copy.text = text;
+        copy.fieldText = fieldText;
+        copy.maxValues = maxValues;
+        copy.documentCount = documentCount;
+        copy.totalValues = totalValues;
+        copy.nestFieldResults = nestFieldResults;
+        copy.sort = sort;
+        copy.queryProfile = queryProfile;
+        copy.datePeriod = datePeriod;
+        copy.securityInfo = securityInfo;
+        return copy;
+    }
+
     /**
      * @return A map of query parameters suitable for use with {@link GetParametricValuesBackend}. get is NOT supported on
      * the resulting map
@@ -12,6 +12,7 @@ import com.hp.autonomy.hod.client.token.TokenProxy;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service representing the GetParametricValues API
@@ -52,4 +53,50 @@ public interface GetParametricValuesService {
         GetParametricValuesRequestBuilder params
     ) throws HodErrorException;
 
+    /**
+     * Query parametric values for the fieldNames using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}, passing each field to the consumer as soon as it has
+     * been read from the response. Use this for fields with many values to avoid holding every field in memory. The
+     * default implementation retrieves all the fields before passing them to the consumer
+     * @param fieldNames A list of field names to return values for
+     * @param indexes The indexes to get values from
+     * @param params Additional parameters to be sent as part of the request
+     * @param consumer Called with each field name and its parametric values
+     * @throws NullPointerException If a TokenProxyService has not been defined
+     * @throws java.io.UncheckedIOException If the response could not be read
+     * @throws com.hp.autonomy.hod.client.api.authentication.HodAuthenticationFailedException If the token associated
+     * with the token proxy has expired
+     */
+    default void getParametricValues(
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params,
+        final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        getParametricValues(fieldNames, indexes, params).forEach(consumer);
+    }
+
+    /**
+     * Get parametric values for the fieldNames using the given token proxy, passing each field to the consumer as soon
+     * as it has been read from the response. Use this for fields with many values to avoid holding every field in memory.
+     * The default implementation retrieves all the fields before passing them to the consumer
+     * @param tokenProxy The token to use to authenticate the request
+     * @param fieldNames A list of field names to return values for
+     * @param indexes The indexes to get values from
+     * @param params Additional parameters to be sent as part of the request
+     * @param consumer Called with each field name and its parametric values
+     * @throws java.io.UncheckedIOException If the response could not be read
+     * @throws com.hp.autonomy.hod.client.api.authentication.HodAuthenticationFailedException If the token associated
+     * with the token proxy has expired
+     */
+    default void getParametricValues(
+        final TokenProxy<?, TokenType.Simple> tokenProxy,
+        final Collection<String> fieldNames,
+        final Collection<ResourceName> indexes,
+        final GetParametricValuesRequestBuilder params,
+        final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        getParametricValues(tokenProxy, fieldNames, indexes, params).forEach(consumer);
+    }
+
 }
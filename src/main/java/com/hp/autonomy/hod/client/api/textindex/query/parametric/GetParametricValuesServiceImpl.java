@@ -5,10 +5,8 @@
 
 package com.hp.autonomy.hod.client.api.textindex.query.parametric;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.hp.autonomy.hod.client.api.authentication.EntityType;
 import com.hp.autonomy.hod.client.api.authentication.TokenType;
 import com.hp.autonomy.hod.client.api.resource.ResourceName;
@@ -17,9 +15,15 @@ import com.hp.autonomy.hod.client.config.Requester;
 import com.hp.autonomy.hod.client.error.HodErrorException;
 import com.hp.autonomy.hod.client.token.TokenProxy;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Default implementation of GetParametricValuesService
@@ -46,8 +50,9 @@ public class GetParametricValuesServiceImpl implements GetParametricValuesServic
             final Collection<ResourceName> indexes,
             final GetParametricValuesRequestBuilder params
     ) throws HodErrorException {
-        final JsonNode response = requester.makeRequest(JsonNode.class, getBackendCaller(fieldNames, indexes, params));
-        return parseResponse(response);
+        final ParametricValuesResponse response = requester.makeRequest(ParametricValuesResponse.class, requestKey(fieldNames, indexes, params), getBackendCaller(fieldNames, indexes, params));
+        // the response may be shared with other callers if requests are coalesced
+        return new ArrayList<>(response.getFields());
     }
 
     @Override
@@ -57,39 +62,48 @@ public class GetParametricValuesServiceImpl implements GetParametricValuesServic
             final Collection<ResourceName> indexes,
             final GetParametricValuesRequestBuilder params
     ) throws HodErrorException {
-        final JsonNode response = requester.makeRequest(tokenProxy, JsonNode.class, getBackendCaller(fieldNames, indexes, params));
-        return parseResponse(response);
+        final ParametricValuesResponse response = requester.makeRequest(tokenProxy, ParametricValuesResponse.class, requestKey(fieldNames, indexes, params), getBackendCaller(fieldNames, indexes, params));
+        return new ArrayList<>(response.getFields());
     }
 
-    /*
-     * HOD has a bug (HOD-5731) where, if a query profile is provided, GetParametricValues returns an object with number
-      * keys rather than an array. This parses a JSON node of either type.
-     */
-    private List<FieldValues> parseResponse(final JsonNode response) {
-        if (response == null || response.get("fields") == null) {
-            throw new RuntimeException("Failed to parse JSON");
-        }
-
-        final JsonNode fieldsNode = response.get("fields");
-
-        if (fieldsNode.getNodeType() == JsonNodeType.OBJECT || fieldsNode.getNodeType() == JsonNodeType.ARRAY) {
-            final List<FieldValues> output = new ArrayList<>();
+    @Override
+    public void getParametricValues(
+            final Collection<String> fieldNames,
+            final Collection<ResourceName> indexes,
+            final GetParametricValuesRequestBuilder params,
+            final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        readFields(requester.makeRequest(getBackendCaller(fieldNames, indexes, params)), consumer);
+    }
 
-            for (final JsonNode node : fieldsNode) {
-                try {
-                    final FieldValues fieldValues = objectMapper.treeToValue(node, FieldValues.class);
-                    output.add(fieldValues);
-                } catch (final JsonProcessingException e) {
-                    throw new RuntimeException("Failed to parse JSON", e);
-                }
-            }
+    @Override
+    public void getParametricValues(
+            final TokenProxy<?, TokenType.Simple> tokenProxy,
+            final Collection<String> fieldNames,
+            final Collection<ResourceName> indexes,
+            final GetParametricValuesRequestBuilder params,
+            final Consumer<? super FieldValues> consumer
+    ) throws HodErrorException {
+        readFields(requester.makeRequest(tokenProxy, getBackendCaller(fieldNames, indexes, params)), consumer);
+    }
 
-            return output;
-        } else {
-            throw new RuntimeException("Failed to parse JSON");
+    private void readFields(final InputStream inputStream, final Consumer<? super FieldValues> consumer) {
+        try (final JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            ParametricValuesResponse.readFields(parser, consumer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error reading parametric values", e);
         }
     }
 
+    private Object requestKey(
+            final Collection<String> fieldNames,
+            final Collection<ResourceName> indexes,
+            final GetParametricValuesRequestBuilder params
+    ) {
+        // the parameters are compared as a set of entries, since the built MultiMap does not compare equal by value
+        return Arrays.asList("getParametricValues", new ArrayList<>(fieldNames), new ArrayList<>(indexes), new HashSet<>(params.build().entrySet()));
+    }
+
     private Requester.BackendCaller<EntityType, TokenType.Simple> getBackendCaller(
             final Collection<String> fieldNames,
             final Collection<ResourceName> indexes,
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.parametric;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Response from GetParametricValues. The fields are read from the response stream one at a time, without building a
+ * tree of the whole response first.
+ * <p/>
+ * HOD has a bug (HOD-5731) where, if a query profile is provided, GetParametricValues returns an object with number keys
+ * rather than an array, so fields may be read from either.
+ */
+@Data
+@JsonDeserialize(using = ParametricValuesResponse.Deserializer.class)
+class ParametricValuesResponse {
+
+    private final List<FieldValues> fields;
+
+    /**
+     * Reads a GetParametricValues response, passing each field to the consumer as soon as it has been read
+     * @param parser The parser, which must have a codec and be positioned before or at the start of the response
+     * @param consumer Called with each field in the response
+     * @throws IOException If the response cannot be read, or does not contain any fields
+     */
+    static void readFields(final JsonParser parser, final Consumer<? super FieldValues> consumer) throws IOException {
+        JsonToken token = parser.getCurrentToken() == null ? parser.nextToken() : parser.getCurrentToken();
+
+        if (token != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, "Failed to parse JSON: expected an object");
+        }
+
+        boolean foundFields = false;
+
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            token = parser.nextToken();
+
+            if ("fields".equals(name) && token == JsonToken.START_ARRAY) {
+                foundFields = true;
+
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    consumer.accept(parser.readValueAs(FieldValues.class));
+                }
+            } else if ("fields".equals(name) && token == JsonToken.START_OBJECT) {
+                foundFields = true;
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    parser.nextToken();
+                    consumer.accept(parser.readValueAs(FieldValues.class));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!foundFields) {
+            throw JsonMappingException.from(parser, "Failed to parse JSON: no fields found");
+        }
+    }
+
+    static class Deserializer extends JsonDeserializer<ParametricValuesResponse> {
+
+        @Override
+        public ParametricValuesResponse deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+            final List<FieldValues> fields = new ArrayList<>();
+            readFields(parser, fields::add);
+            return new ParametricValuesResponse(fields);
+        }
+    }
+}
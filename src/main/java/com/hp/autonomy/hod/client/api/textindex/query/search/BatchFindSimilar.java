@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs FindSimilar for many seeds concurrently, where a seed is a document reference or query text depending on the
+ * {@link SeedQuery} used.
+ * <p/>
+ * All the runs of a BatchFindSimilar share a limit on the number of requests in flight, so several jobs may use the
+ * same instance without overloading HP Haven OnDemand. Identical seeds are only queried once per run. The results for
+ * each seed are passed to a {@link SeedCallback} on the calling thread as soon as they arrive, so they do not all need to
+ * be held in memory.
+ * <p/>
+ * This class is thread safe
+ * @param <T> The type of the documents
+ */
+@Slf4j
+public class BatchFindSimilar<T extends Serializable> {
+
+    private final SeedQuery<T> seedQuery;
+    private final ExecutorService executorService;
+    private final int maxConcurrentRequests;
+    private final Semaphore permits;
+
+    /**
+     * Creates a new BatchFindSimilar
+     * @param seedQuery Runs FindSimilar for a single seed
+     * @param executorService The executor service used to run the queries
+     * @param maxConcurrentRequests The maximum number of requests which may be in flight at once, across all runs
+     * @throws IllegalArgumentException If maxConcurrentRequests is not positive
+     */
+    public BatchFindSimilar(final SeedQuery<T> seedQuery, final ExecutorService executorService, final int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+
+        this.seedQuery = seedQuery;
+        this.executorService = executorService;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        permits = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * Creates a new BatchFindSimilar whose seeds are references of documents in HP Haven OnDemand, using a token proxy
+     * provided by a {@link com.hp.autonomy.hod.client.token.TokenProxyService}
+     * @param findSimilarService The service to use
+     * @param executorService The executor service used to run the queries
+     * @param maxConcurrentRequests The maximum number of requests which may be in flight at once, across all runs
+     * @param <T> The type of the documents
+     * @return A new BatchFindSimilar
+     */
+    public static <T extends Serializable> BatchFindSimilar<T> forIndexReferences(
+        final FindSimilarService<T> findSimilarService,
+        final ExecutorService executorService,
+        final int maxConcurrentRequests
+    ) {
+        return new BatchFindSimilar<>(findSimilarService::findSimilarDocumentsToIndexReference, executorService, maxConcurrentRequests);
+    }
+
+    /**
+     * Creates a new BatchFindSimilar whose seeds are query text, using a token proxy provided by a
+     * {@link com.hp.autonomy.hod.client.token.TokenProxyService}
+     * @param findSimilarService The service to use
+     * @param executorService The executor service used to run the queries
+     * @param maxConcurrentRequests The maximum number of requests which may be in flight at once, across all runs
+     * @param <T> The type of the documents
+     * @return A new BatchFindSimilar
+     */
+    public static <T extends Serializable> BatchFindSimilar<T> forTexts(
+        final FindSimilarService<T> findSimilarService,
+        final ExecutorService executorService,
+        final int maxConcurrentRequests
+    ) {
+        return new BatchFindSimilar<>(findSimilarService::findSimilarDocumentsToText, executorService, maxConcurrentRequests);
+    }
+
+    /**
+     * Runs FindSimilar for each of the seeds, blocking until all of them have completed
+     * @param seeds The seeds to query. Duplicate seeds are only queried once
+     * @param params The parameters shared by every query
+     * @param callback Called with the results or error for each seed, in the order in which they complete
+     * @throws RuntimeException If a query or the callback throws a RuntimeException. Queries which are still running are
+     * cancelled
+     */
+    public void run(final Collection<String> seeds, final QueryRequestBuilder params, final SeedCallback<? super T> callback) {
+        // take a copy so that changes made by the caller during the run do not affect it
+        final QueryRequestBuilder sharedParams = params.copy();
+        final Iterator<String> uniqueSeeds = new LinkedHashSet<>(seeds).iterator();
+        final CompletionService<QueryResults<T>> completionService = new ExecutorCompletionService<>(executorService);
+        final Map<Future<QueryResults<T>>, PendingSeed> inFlight = new HashMap<>();
+
+        log.debug("Running FindSimilar for {} seeds", seeds.size());
+
+        try {
+            while (uniqueSeeds.hasNext() || !inFlight.isEmpty()) {
+                // the size limit also bounds the number of completed results waiting for the callback
+                while (uniqueSeeds.hasNext() && inFlight.size() < maxConcurrentRequests && acquirePermit(inFlight.isEmpty())) {
+                    final PendingSeed pendingSeed = new PendingSeed(uniqueSeeds.next());
+                    final Future<QueryResults<T>> future;
+
+                    try {
+                        future = completionService.submit(() -> {
+                            try {
+                                return seedQuery.query(pendingSeed.seed, sharedParams);
+                            } finally {
+                                pendingSeed.releasePermit();
+                            }
+                        });
+                    } catch (final RuntimeException e) {
+                        pendingSeed.releasePermit();
+                        throw e;
+                    }
+
+                    inFlight.put(future, pendingSeed);
+                }
+
+                final Future<QueryResults<T>> future = completionService.take();
+                final String seed = inFlight.remove(future).seed;
+
+                try {
+                    callback.success(seed, future.get());
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+
+                    if (cause instanceof HodErrorException) {
+                        callback.error(seed, (HodErrorException) cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IllegalStateException("Error running FindSimilar for seed " + seed, cause);
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running FindSimilar", e);
+        } finally {
+            for (final Map.Entry<Future<QueryResults<T>>, PendingSeed> entry : inFlight.entrySet()) {
+                // a query cancelled before it starts never runs, so its permit must be released here
+                if (entry.getKey().cancel(true)) {
+                    entry.getValue().releasePermit();
+                }
+            }
+        }
+    }
+
+    // only wait for a permit if this run has nothing in flight, otherwise handle a completed query first
+    private boolean acquirePermit(final boolean block) throws InterruptedException {
+        if (block) {
+            permits.acquire();
+            return true;
+        }
+
+        return permits.tryAcquire();
+    }
+
+    // a seed which has been submitted, whose permit is released exactly once by whichever of the query and the run
+    // finishes with it first
+    private class PendingSeed {
+
+        private final String seed;
+        private final AtomicBoolean permitReleased = new AtomicBoolean();
+
+        private PendingSeed(final String seed) {
+            this.seed = seed;
+        }
+
+        private void releasePermit() {
+            if (permitReleased.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Runs FindSimilar for a single seed
+     * @param <T> The type of the documents
+     */
+    @FunctionalInterface
+    public interface SeedQuery<T extends Serializable> {
+
+        /**
+         * @param seed The seed to find similar documents to
+         * @param params Additional parameters to be sent as part of the request
+         * @return The documents similar to the seed
+         * @throws HodErrorException If an error occurs running the query
+         */
+        QueryResults<T> query(String seed, QueryRequestBuilder params) throws HodErrorException;
+    }
+
+    /**
+     * Callback used with {@link BatchFindSimilar}
+     * @param <T> The type of the documents
+     */
+    public interface SeedCallback<T extends Serializable> {
+
+        /**
+         * Called with the results for a seed
+         * @param seed The seed
+         * @param results The documents similar to the seed
+         */
+        void success(String seed, QueryResults<? extends T> results);
+
+        /**
+         * Called when HP Haven OnDemand returns an error for a seed
+         * @param seed The seed
+         * @param exception The error
+         */
+        void error(String seed, HodErrorException exception);
+    }
+}
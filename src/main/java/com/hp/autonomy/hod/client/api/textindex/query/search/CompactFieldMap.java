@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Unmodifiable map of document fields which stores the values in an array, with the field names held in a
+ * {@link FieldNames} which is shared with other documents. This uses much less memory than a HashMap, which needs an
+ * entry object per field and a separate copy of the keys for every document.
+ */
+class CompactFieldMap extends AbstractMap<String, Serializable> {
+
+    // results from the same query, or from similar queries, usually have the same fields
+    private static final int MAX_SHARED_FIELD_NAMES = 1024;
+    private static final FieldNameDictionary FIELD_NAMES = new FieldNameDictionary(MAX_SHARED_FIELD_NAMES);
+
+    static final CompactFieldMap EMPTY = new CompactFieldMap(FieldNames.EMPTY, new Serializable[0]);
+
+    private final FieldNames names;
+    private final Serializable[] values;
+
+    private CompactFieldMap(final FieldNames names, final Serializable[] values) {
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * @param fields The fields to copy
+     * @return A CompactFieldMap containing the given fields, whose field names are shared with other maps with the
+     * same fields
+     */
+    static CompactFieldMap copyOf(final Map<String, ? extends Serializable> fields) {
+        if (fields.isEmpty()) {
+            return EMPTY;
+        }
+
+        final String[] keys = new String[fields.size()];
+        final Serializable[] values = new Serializable[fields.size()];
+        int i = 0;
+
+        for (final Map.Entry<String, ? extends Serializable> entry : fields.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+
+        return new CompactFieldMap(FIELD_NAMES.intern(keys), values);
+    }
+
+    FieldNames getNames() {
+        return names;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return names.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Serializable get(final Object key) {
+        final int index = names.indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public Set<Entry<String, Serializable>> entrySet() {
+        return new AbstractSet<Entry<String, Serializable>>() {
+            @Override
+            public Iterator<Entry<String, Serializable>> iterator() {
+                return new Iterator<Entry<String, Serializable>>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Serializable> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final Entry<String, Serializable> entry = new SimpleImmutableEntry<>(names.get(index), values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+}
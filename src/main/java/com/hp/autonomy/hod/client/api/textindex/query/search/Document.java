@@ -18,8 +18,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -75,7 +76,7 @@ public class Document implements Serializable {
     private final String content;
 
     /**
-     * @return A map containing any fields on the document which are not known ahead of time
+     * @return An unmodifiable map containing any fields on the document which are not known ahead of time
      */
     @Setter(AccessLevel.NONE)
     private transient Map<String, Serializable> fields;
@@ -100,7 +101,7 @@ public class Document implements Serializable {
         index = builder.index;
         title = builder.title;
         summary = builder.summary;
-        fields = builder.fields;
+        fields = CompactFieldMap.copyOf(builder.fields);
         content = builder.content;
         section = builder.section;
 
@@ -125,16 +126,18 @@ public class Document implements Serializable {
 
     private void readObject(final ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
         objectInputStream.defaultReadObject();
-        fields = new HashMap<>();
+        final Map<String, Serializable> readFields = new LinkedHashMap<>();
 
         final int fieldCount = objectInputStream.readInt();
 
         for (int i = 0; i < fieldCount; i++) {
             final String fieldName = (String) objectInputStream.readObject();
             final Serializable value = (Serializable) objectInputStream.readObject();
-            fields.put(fieldName, value);
+            readFields.put(fieldName, value);
         }
 
+        fields = CompactFieldMap.copyOf(readFields);
+
         // For backwards compatibility of serialized form
         if (promotionType == null) {
             promotionType = PromotionType.NONE;
@@ -159,14 +162,15 @@ public class Document implements Serializable {
         @SuppressWarnings("FieldMayBeFinal")
         private String content = "";
 
-        private final Map<String, Serializable> fields = new HashMap<>();
+        private final Map<String, Serializable> fields = new LinkedHashMap<>();
 
         @SuppressWarnings("FieldMayBeFinal")
         private String summary = "";
 
         public Builder setLinks(final Set<String> links) {
             if (links != null) {
-                this.links = new HashSet<>(links);
+                // most documents have no links, so share a single empty set between them
+                this.links = links.isEmpty() ? Collections.<String>emptySet() : new HashSet<>(links);
             }
 
             return this;
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.joda.time.Duration;
+
+/**
+ * Helper class for configuring how a query is split across groups of indexes by {@link IndexFanOutQuery}. These
+ * options are not sent to HP Haven OnDemand.
+ */
+@Data
+@Accessors(chain = true)
+public class FanOutRequestBuilder {
+
+    /**
+     * @param indexesPerGroup The maximum number of indexes queried by a single request
+     */
+    private int indexesPerGroup = 1;
+
+    /**
+     * @param groupTimeout The maximum time to wait for the results from all the groups. If null, there is no limit
+     */
+    private Duration groupTimeout;
+
+    /**
+     * @param allowPartialResults If true, groups which have not returned within the groupTimeout are left out of the
+     * results, and a warning with the code {@link com.hp.autonomy.hod.client.warning.HodWarningCode#INDEXES_DID_NOT_RESPOND}
+     * listing their indexes is added to the results. If false, the query fails if any group takes too long
+     */
+    private boolean allowPartialResults;
+
+}
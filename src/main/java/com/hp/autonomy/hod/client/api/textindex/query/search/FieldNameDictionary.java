@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps each distinct set of field names to a single shared {@link FieldNames} instance, so that documents with the same
+ * fields share their field names from the moment they are parsed. Looking up a set of names which is already known does
+ * not take a lock, so documents can be parsed concurrently. The dictionary is emptied when it is full, so it does not
+ * grow without bound; documents parsed afterwards share a new instance.
+ * <p/>
+ * This class is thread safe
+ */
+class FieldNameDictionary {
+
+    private final int maxSize;
+    private final ConcurrentMap<List<String>, FieldNames> fieldNames = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize The maximum number of distinct sets of field names to keep
+     */
+    FieldNameDictionary(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param names The field names to look up. The array must not be modified afterwards, as it may be used by the
+     * returned instance
+     * @return The shared instance with the given names
+     */
+    FieldNames intern(final String[] names) {
+        // the list is only a view of the array, so a hit allocates nothing else
+        final List<String> key = Arrays.asList(names);
+        final FieldNames existing = fieldNames.get(key);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        // eviction is approximate, since other threads may add names while the dictionary is cleared
+        if (fieldNames.size() >= maxSize) {
+            fieldNames.clear();
+        }
+
+        final FieldNames created = new FieldNames(names);
+        final FieldNames raced = fieldNames.putIfAbsent(key, created);
+        return raced != null ? raced : created;
+    }
+}
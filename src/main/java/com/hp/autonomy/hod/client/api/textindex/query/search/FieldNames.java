@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, ordered set of field names, which is shared by all the documents with the same fields.
+ */
+final class FieldNames {
+
+    // below this size a linear scan is cheaper than a hash lookup
+    private static final int INDEX_THRESHOLD = 8;
+
+    static final FieldNames EMPTY = new FieldNames(new String[0]);
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+
+    FieldNames(final String[] names) {
+        this.names = names;
+
+        if (names.length > INDEX_THRESHOLD) {
+            indexes = new HashMap<>(names.length * 2);
+
+            for (int i = 0; i < names.length; i++) {
+                indexes.putIfAbsent(names[i], i);
+            }
+        } else {
+            indexes = null;
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String get(final int index) {
+        return names[index];
+    }
+
+    int indexOf(final Object name) {
+        if (indexes != null) {
+            final Integer index = indexes.get(name);
+            return index == null ? -1 : index;
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            // Jackson interns field names, so the identity check usually succeeds
+            if (names[i] == name || names[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
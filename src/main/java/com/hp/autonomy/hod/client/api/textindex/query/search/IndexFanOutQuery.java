@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.warning.HodWarning;
+import com.hp.autonomy.hod.client.warning.HodWarningCode;
+import com.hp.autonomy.types.requests.Spelling;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.ListUtils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a query against groups of indexes concurrently instead of sending all the indexes in a single request, so that
+ * a slow index only delays the results from its own group.
+ * <p/>
+ * The indexes parameter of the query is split into groups, and each group is queried for the results up to the
+ * requested end position, using the default page size of 10 if maxPageResults is not set. The documents from each
+ * group are then merged in rank order using a heap holding one document per group, and the requested page is taken
+ * from the merged documents. The total results of the groups are added together and their warnings are combined. If
+ * partial results are allowed, a warning is added listing the indexes of any groups which were left out.
+ * <p/>
+ * The comparator must order documents in the same way as the sort parameter of the query. For relevance ordered
+ * queries of {@link Document}s, use {@link #documentsByWeight(QueryResultsPager.PageFetcher, ExecutorService)}.
+ * @param <T> The type of the documents
+ */
+@Slf4j
+public class IndexFanOutQuery<T extends Serializable> {
+
+    // the page size used by HP Haven OnDemand when maxPageResults is not set
+    private static final int DEFAULT_MAX_PAGE_RESULTS = 10;
+
+    private final QueryResultsPager.PageFetcher<T> pageFetcher;
+    private final ExecutorService executorService;
+    private final Comparator<? super T> comparator;
+
+    /**
+     * Creates a new IndexFanOutQuery
+     * @param pageFetcher Fetches the results for a single group of indexes
+     * @param executorService The executor service used to query the groups
+     * @param comparator The order of the documents returned by HP Haven OnDemand
+     */
+    public IndexFanOutQuery(
+        final QueryResultsPager.PageFetcher<T> pageFetcher,
+        final ExecutorService executorService,
+        final Comparator<? super T> comparator
+    ) {
+        this.pageFetcher = pageFetcher;
+        this.executorService = executorService;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates a new IndexFanOutQuery which merges {@link Document}s in descending order of weight
+     * @param pageFetcher Fetches the results for a single group of indexes
+     * @param executorService The executor service used to query the groups
+     * @return A new {@literal IndexFanOutQuery<Document>}
+     */
+    public static IndexFanOutQuery<Document> documentsByWeight(final QueryResultsPager.PageFetcher<Document> pageFetcher, final ExecutorService executorService) {
+        return new IndexFanOutQuery<>(pageFetcher, executorService, Comparator.comparingDouble(Document::getWeight).reversed());
+    }
+
+    /**
+     * Runs the query against groups of indexes and merges the results
+     * @param params The parameters for the query, including the indexes to query
+     * @param options The options for splitting the query
+     * @return The merged results
+     * @throws HodErrorException If an error occurs querying a group, or a group takes too long and partial results are
+     * not allowed
+     * @throws IllegalArgumentException If indexesPerGroup is not positive
+     */
+    public QueryResults<T> query(final QueryRequestBuilder params, final FanOutRequestBuilder options) throws HodErrorException {
+        if (options.getIndexesPerGroup() <= 0) {
+            throw new IllegalArgumentException("indexesPerGroup must be positive");
+        }
+
+        final List<ResourceIdentifier> indexes = new ArrayList<>(params.getIndexes());
+
+        if (indexes.size() <= options.getIndexesPerGroup()) {
+            return pageFetcher.fetch(params);
+        }
+
+        final int start = params.getStart() != null ? params.getStart() : 1;
+        final int end = endPosition(params, start);
+        final List<List<ResourceIdentifier>> groups = ListUtils.partition(indexes, options.getIndexesPerGroup());
+        final List<Future<QueryResults<T>>> futures = new ArrayList<>(groups.size());
+
+        log.debug("Querying {} indexes in {} groups", indexes.size(), groups.size());
+
+        for (final List<ResourceIdentifier> group : groups) {
+            // each group must return everything up to the end position, since any of its documents could be on the page
+            final QueryRequestBuilder groupParams = params.copy()
+                .setIndexes(group)
+                .setStart(null)
+                .setAbsoluteMaxResults(end)
+                .setMaxPageResults(end);
+
+            futures.add(executorService.submit(() -> pageFetcher.fetch(groupParams)));
+        }
+
+        final Long deadline = options.getGroupTimeout() == null ? null : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getGroupTimeout().getMillis());
+        final List<QueryResults<T>> groupResults = new ArrayList<>(groups.size());
+        final List<ResourceIdentifier> skippedIndexes = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    groupResults.add(getResults(futures.get(i), deadline));
+                } catch (final TimeoutException e) {
+                    if (!options.isAllowPartialResults()) {
+                        throw new HodErrorException(new HodError.Builder()
+                            .setErrorCode(HodErrorCode.REQUEST_TOOK_TOO_LONG)
+                            .setReason("Indexes " + groups.get(i) + " did not respond within " + options.getGroupTimeout())
+                            .build(), 504);
+                    }
+
+                    log.warn("Indexes {} did not respond within {}, leaving them out of the results", groups.get(i), options.getGroupTimeout());
+                    skippedIndexes.addAll(groups.get(i));
+                }
+            }
+        } finally {
+            for (final Future<QueryResults<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return combine(groupResults, skippedIndexes, start, end);
+    }
+
+    private QueryResults<T> combine(final List<QueryResults<T>> groupResults, final List<ResourceIdentifier> skippedIndexes, final int start, final int end) {
+        final List<List<T>> documents = new ArrayList<>(groupResults.size());
+        final List<HodWarning> warnings = new ArrayList<>();
+        Integer totalResults = null;
+        String expandedQuery = null;
+        Spelling suggestion = null;
+        Spelling autoCorrection = null;
+
+        for (final QueryResults<T> results : groupResults) {
+            documents.add(results.getDocuments());
+            warnings.addAll(results.getHodWarnings());
+
+            if (results.getTotalResults() != null) {
+                totalResults = (totalResults == null ? 0 : totalResults) + results.getTotalResults();
+            }
+
+            expandedQuery = expandedQuery != null ? expandedQuery : results.getExpandedQuery();
+            suggestion = suggestion != null ? suggestion : results.getSuggestion();
+            autoCorrection = autoCorrection != null ? autoCorrection : results.getAutoCorrection();
+        }
+
+        // callers can tell that the results and total are incomplete without parsing the log
+        if (!skippedIndexes.isEmpty()) {
+            warnings.add(new HodWarning.Builder()
+                .setCode(HodWarningCode.INDEXES_DID_NOT_RESPOND.getCode())
+                .setDetails("Indexes " + skippedIndexes + " did not respond in time and were left out of the results")
+                .build());
+        }
+
+        return new QueryResults<>(merge(documents, comparator, start - 1, Math.max(0, end - start + 1)), totalResults, expandedQuery, suggestion, autoCorrection, warnings);
+    }
+
+    /**
+     * Merges lists which are each sorted by the given comparator, keeping only one element from each list in memory at
+     * a time
+     * @param lists The sorted lists to merge
+     * @param comparator The order of the lists
+     * @param skip The number of merged elements to skip
+     * @param limit The maximum number of merged elements to return, or null for no limit
+     * @param <T> The type of the elements
+     * @return The merged elements
+     */
+    static <T> List<T> merge(final List<? extends List<? extends T>> lists, final Comparator<? super T> comparator, final int skip, final Integer limit) {
+        final PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(1, lists.size()), (first, second) -> {
+            final int comparison = comparator.compare(first.current(), second.current());
+
+            // prefer earlier groups for equal elements so the merge is deterministic
+            return comparison != 0 ? comparison : Integer.compare(first.listIndex, second.listIndex);
+        });
+
+        for (int i = 0; i < lists.size(); i++) {
+            if (!lists.get(i).isEmpty()) {
+                heap.add(new Cursor<>(lists.get(i), i));
+            }
+        }
+
+        final List<T> output = new ArrayList<>();
+        int skipped = 0;
+
+        while (!heap.isEmpty() && (limit == null || output.size() < limit)) {
+            final Cursor<T> cursor = heap.poll();
+
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                output.add(cursor.current());
+            }
+
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+
+        return output;
+    }
+
+    private static int endPosition(final QueryRequestBuilder params, final int start) {
+        final int pageSize = params.getMaxPageResults() == null ? DEFAULT_MAX_PAGE_RESULTS : params.getMaxPageResults();
+        final int pageEnd = start + pageSize - 1;
+
+        return params.getAbsoluteMaxResults() == null ? pageEnd : Math.min(pageEnd, params.getAbsoluteMaxResults());
+    }
+
+    private static <T extends Serializable> QueryResults<T> getResults(final Future<QueryResults<T>> future, final Long deadline) throws HodErrorException, TimeoutException {
+        if (deadline == null) {
+            return QueryResultsPager.getPage(future);
+        }
+
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for query results", e);
+        } catch (final ExecutionException e) {
+            // the future has completed, so this will rethrow the cause
+            return QueryResultsPager.getPage(future);
+        }
+    }
+
+    private static class Cursor<T> {
+
+        private final List<? extends T> list;
+        private final int listIndex;
+        private int position;
+
+        private Cursor(final List<? extends T> list, final int listIndex) {
+            this.list = list;
+            this.listIndex = listIndex;
+        }
+
+        private T current() {
+            return list.get(position);
+        }
+
+        private boolean advance() {
+            position++;
+            return position < list.size();
+        }
+    }
+}
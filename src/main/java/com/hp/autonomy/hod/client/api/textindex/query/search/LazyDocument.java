@@ -0,0 +1,333 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A document returned from an HP Haven OnDemand index which does not decode its custom fields until they are used.
+ * <p/>
+ * The custom fields are kept as a compact block of JSON, and a field is decoded each time it is accessed. This reduces
+ * the parsing work and memory used by result pages with many fields per document when only a few of the fields are
+ * used. If most of the fields are needed, use {@link Document} instead.
+ * <p/>
+ * To use this class, create a {@link QueryTextIndexServiceImpl} with a document type of LazyDocument.
+ */
+@Data
+@JsonDeserialize(builder = LazyDocument.Builder.class)
+public class LazyDocument implements Serializable {
+
+    private static final long serialVersionUID = -3530497052575416042L;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * @return The reference of the document
+     * @serial The reference of the document
+     */
+    private final String reference;
+
+    /**
+     * @return The weight (relevance) of the document
+     * @serial The weight (relevance) of the document
+     */
+    private final double weight;
+
+    /**
+     * @return The stemmed terms from the query which matched the document
+     * @serial The stemmed terms from the query which matched the document
+     */
+    private final Set<String> links;
+
+    /**
+     * @return The index in which the document resides
+     * @serial The index in which the document resides
+     */
+    private final String index;
+
+    /**
+     * @return The title of the document
+     * @serial The title of the document
+     */
+    private final String title;
+
+    /**
+     * @return A summary of the document. If summaries were not requested, this will be the empty string
+     * @serial A summary of the document. If summaries were not requested, this will be the empty string
+     */
+    private final String summary;
+
+    /**
+     * @return The content of the document. If content were not requested, this will be the empty string
+     * @serial The content of the document. If content were not requested, this will be the empty string
+     */
+    private final String content;
+
+    /**
+     * @return The section number of the result document
+     * @serial The section number of the result document
+     */
+    private final Integer section;
+
+    /**
+     * @return The type of promotion which triggered this result
+     * @serial The type of promotion which triggered this result
+     */
+    private final PromotionType promotionType;
+
+    /**
+     * @serial The custom fields of the document as a UTF-8 encoded JSON object, or null if there are no custom fields
+     */
+    @Getter(AccessLevel.NONE)
+    private final byte[] rawFields;
+
+    private LazyDocument(final Builder builder) {
+        reference = builder.reference;
+        weight = builder.weight;
+        links = builder.links;
+        index = builder.index;
+        title = builder.title;
+        summary = builder.summary;
+        content = builder.content;
+        section = builder.section;
+        rawFields = builder.finishFields();
+
+        promotionType = builder.promotionType == null ? PromotionType.NONE : builder.promotionType;
+    }
+
+    /**
+     * Decodes a single custom field. The field is decoded on every call, so callers which use a field repeatedly should
+     * keep the result
+     * @param name The name of the field
+     * @return The value of the field, or null if the document does not have the field
+     */
+    public Serializable getField(final String name) {
+        if (rawFields == null) {
+            return null;
+        }
+
+        try (final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(rawFields)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+
+                if (fieldName.equals(name)) {
+                    return decode(parser);
+                }
+
+                parser.skipChildren();
+            }
+
+            return null;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error decoding document field", e);
+        }
+    }
+
+    /**
+     * @return The names of the custom fields on the document. This does not decode the values of the fields
+     */
+    public Set<String> getFieldNames() {
+        if (rawFields == null) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> names = new LinkedHashSet<>();
+
+        try (final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(rawFields)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                names.add(parser.getCurrentName());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error decoding document fields", e);
+        }
+
+        return names;
+    }
+
+    /**
+     * Decodes all the custom fields
+     * @return A map of field names to field values
+     */
+    public Map<String, Serializable> getFields() {
+        if (rawFields == null) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, Serializable> fields = new LinkedHashMap<>();
+
+        try (final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(rawFields)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                fields.put(fieldName, decode(parser));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Error decoding document fields", e);
+        }
+
+        return fields;
+    }
+
+    /**
+     * @return A {@link Document} with the same properties, with all of the custom fields decoded
+     */
+    public Document toDocument() {
+        final Document.Builder builder = new Document.Builder()
+            .setReference(reference)
+            .setWeight(weight)
+            .setLinks(links)
+            .setIndex(index)
+            .setTitle(title)
+            .setSummary(summary)
+            .setContent(content)
+            .setSection(section)
+            .setPromotionType(promotionType);
+
+        for (final Map.Entry<String, Serializable> field : getFields().entrySet()) {
+            builder.addField(field.getKey(), field.getValue());
+        }
+
+        return builder.build();
+    }
+
+    // Jackson will give us a Serializable type
+    private static Serializable decode(final JsonParser parser) throws IOException {
+        return (Serializable) OBJECT_MAPPER.readValue(parser, Object.class);
+    }
+
+    @Setter
+    @Accessors(chain = true)
+    @JsonPOJOBuilder(withPrefix = "set")
+    public static class Builder {
+
+        private String reference;
+        private double weight;
+        private Set<String> links;
+        private String index;
+        private String title;
+        private Integer section;
+
+        @JsonProperty("promotion")
+        private PromotionType promotionType;
+
+        @SuppressWarnings("FieldMayBeFinal")
+        private String content = "";
+
+        @SuppressWarnings("FieldMayBeFinal")
+        private String summary = "";
+
+        @Setter(AccessLevel.NONE)
+        private ByteArrayOutputStream fieldBytes;
+
+        @Setter(AccessLevel.NONE)
+        private JsonGenerator fieldGenerator;
+
+        @Setter(AccessLevel.NONE)
+        private byte[] builtFields;
+
+        public Builder setLinks(final Set<String> links) {
+            if (links != null) {
+                this.links = new HashSet<>(links);
+            }
+
+            return this;
+        }
+
+        public Builder addField(final String key, final Serializable value) {
+            try {
+                generator().writeFieldName(key);
+                generator().writeObject(value);
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Error encoding document field", e);
+            }
+
+            return this;
+        }
+
+        // The field is buffered as tokens rather than being converted to maps and lists
+        @JsonAnySetter
+        Builder _addField(final String key, final TokenBuffer value) throws IOException {
+            generator().writeFieldName(key);
+
+            if (value == null) {
+                generator().writeNull();
+            } else {
+                value.serialize(generator());
+            }
+
+            return this;
+        }
+
+        public LazyDocument build() {
+            return new LazyDocument(this);
+        }
+
+        private JsonGenerator generator() throws IOException {
+            if (builtFields != null) {
+                throw new IllegalStateException("Fields cannot be added after the document has been built");
+            }
+
+            if (fieldGenerator == null) {
+                fieldBytes = new ByteArrayOutputStream();
+                fieldGenerator = OBJECT_MAPPER.getFactory().createGenerator(fieldBytes);
+                fieldGenerator.writeStartObject();
+            }
+
+            return fieldGenerator;
+        }
+
+        private byte[] finishFields() {
+            if (fieldGenerator != null) {
+                try {
+                    fieldGenerator.writeEndObject();
+                    fieldGenerator.close();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Error encoding document fields", e);
+                }
+
+                builtFields = fieldBytes.toByteArray();
+                fieldGenerator = null;
+                fieldBytes = null;
+            }
+
+            return builtFields;
+        }
+    }
+
+}
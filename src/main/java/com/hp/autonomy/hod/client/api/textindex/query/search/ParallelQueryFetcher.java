@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Fetches a large number of query results by requesting pages of results concurrently.
+ * <p/>
+ * The first page is requested on its own to find the total number of results. The remaining pages are then requested
+ * with at most maxConcurrentPages requests in flight at once. Documents are passed to the consumer in rank order on the
+ * calling thread, and each page is discarded once its documents have been consumed, so at most maxConcurrentPages
+ * pages are held in memory.
+ * <p/>
+ * Results are fetched from the start parameter of the given {@link QueryRequestBuilder} (or 1 if it is not set) up to
+ * the total number of results or the absoluteMaxResults parameter, whichever is smaller. No more pages are requested
+ * once a page contains fewer results than requested, since the total number of results may be an estimate.
+ * @param <T> The type of the documents
+ */
+@Slf4j
+public class ParallelQueryFetcher<T extends Serializable> {
+
+    private final QueryResultsPager.PageFetcher<T> pageFetcher;
+    private final ExecutorService executorService;
+    private final int pageSize;
+    private final int maxConcurrentPages;
+
+    /**
+     * Creates a new ParallelQueryFetcher
+     * @param pageFetcher Fetches a single page of results
+     * @param executorService The executor service used to fetch pages
+     * @param pageSize The number of results requested in each page
+     * @param maxConcurrentPages The maximum number of pages which may be requested at once
+     * @throws IllegalArgumentException If pageSize or maxConcurrentPages are not positive
+     */
+    public ParallelQueryFetcher(
+        final QueryResultsPager.PageFetcher<T> pageFetcher,
+        final ExecutorService executorService,
+        final int pageSize,
+        final int maxConcurrentPages
+    ) {
+        if (pageSize <= 0 || maxConcurrentPages <= 0) {
+            throw new IllegalArgumentException("pageSize and maxConcurrentPages must be positive");
+        }
+
+        this.pageFetcher = pageFetcher;
+        this.executorService = executorService;
+        this.pageSize = pageSize;
+        this.maxConcurrentPages = maxConcurrentPages;
+    }
+
+    /**
+     * Fetches all the results for the given parameters, passing each document to the consumer in rank order
+     * @param params The parameters for the query
+     * @param consumer Consumer which will be called with each document
+     * @return The results of the first page. The documents in these results will already have been consumed
+     * @throws HodErrorException If an error occurs fetching a page. Pages which are still being fetched are cancelled
+     */
+    public QueryResults<T> fetch(final QueryRequestBuilder params, final Consumer<? super T> consumer) throws HodErrorException {
+        final int firstStart = params.getStart() != null ? params.getStart() : 1;
+        final int firstSize = params.getAbsoluteMaxResults() == null
+            ? pageSize
+            : Math.max(1, Math.min(pageSize, params.getAbsoluteMaxResults() - firstStart + 1));
+
+        final QueryResults<T> firstPage = pageFetcher.fetch(QueryResultsPager.pageParams(params, firstStart, firstSize).setTotalResults(true));
+        firstPage.getDocuments().forEach(consumer);
+
+        if (firstPage.getDocuments().size() < firstSize || firstPage.getTotalResults() == null) {
+            return firstPage;
+        }
+
+        // the total is the number of results matching the query, so it is also the position of the last result
+        int lastResult = firstPage.getTotalResults();
+
+        if (params.getAbsoluteMaxResults() != null) {
+            lastResult = Math.min(lastResult, params.getAbsoluteMaxResults());
+        }
+
+        log.debug("Fetching results {} to {} with {} concurrent requests", firstStart + firstSize, lastResult, maxConcurrentPages);
+
+        final Deque<Future<QueryResults<T>>> pages = new ArrayDeque<>();
+        final Deque<Integer> pageSizes = new ArrayDeque<>();
+        int nextStart = firstStart + firstSize;
+
+        try {
+            while (nextStart <= lastResult || !pages.isEmpty()) {
+                while (pages.size() < maxConcurrentPages && nextStart <= lastResult) {
+                    final QueryRequestBuilder pageParams = QueryResultsPager.pageParams(params, nextStart, Math.min(pageSize, lastResult - nextStart + 1));
+
+                    pages.addLast(executorService.submit(() -> pageFetcher.fetch(pageParams)));
+                    pageSizes.addLast(pageParams.getMaxPageResults());
+                    nextStart += pageParams.getMaxPageResults();
+                }
+
+                // waiting for the oldest page keeps the documents in rank order
+                final List<T> documents = QueryResultsPager.getPage(pages.removeFirst()).getDocuments();
+                documents.forEach(consumer);
+
+                // a short page is the end of the results, so the later pages are cancelled below
+                if (documents.size() < pageSizes.removeFirst()) {
+                    break;
+                }
+            }
+        } finally {
+            for (final Future<QueryResults<T>> page : pages) {
+                page.cancel(true);
+            }
+        }
+
+        return firstPage;
+    }
+
+    /**
+     * Fetches all the results for the given parameters into a list. This should only be used when the results are known
+     * to fit in memory; otherwise use {@link #fetch(QueryRequestBuilder, Consumer)}
+     * @param params The parameters for the query
+     * @return The documents, in rank order
+     * @throws HodErrorException If an error occurs fetching a page
+     */
+    public List<T> fetchAll(final QueryRequestBuilder params) throws HodErrorException {
+        final List<T> documents = new ArrayList<>();
+        fetch(params, documents::add);
+        return documents;
+    }
+}
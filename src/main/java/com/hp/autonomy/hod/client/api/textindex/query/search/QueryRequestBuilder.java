@@ -166,6 +166,38 @@ public class QueryRequestBuilder {
         return this;
     }
 
+    /**
+     * @return A new QueryRequestBuilder with the same parameters as this one. Changes to the copy do not affect this
+     * builder
+     */
+    public QueryRequestBuilder copy() {
+        return new QueryRequestBuilder()
+            .setMaxDate(maxDate)
+            .setMinDate(minDate)
+            .setMaxDateDays(maxDateDays)
+            .setMaxDateSeconds(maxDateSeconds)
+            .setMinDateDays(minDateDays)
+            .setMinDateSeconds(minDateSeconds)
+            .setEndTag(endTag)
+            .setFieldText(fieldText)
+            .setHighlight(highlight)
+            .setAbsoluteMaxResults(absoluteMaxResults)
+            .setMaxPageResults(maxPageResults)
+            .setMinScore(minScore)
+            .setPrint(print)
+            .setPrintFields(printFields == null ? null : new ArrayList<>(printFields))
+            .setStart(start)
+            .setSort(sort)
+            .setStartTag(startTag)
+            .setSummary(summary)
+            .setTotalResults(totalResults)
+            .setQueryProfile(queryProfile)
+            .setPromotions(promotions)
+            .setCheckSpelling(checkSpelling)
+            .setSecurityInfo(securityInfo)
+            .setIndexes(indexes);
+    }
+
     /**
      * @return A map of query parameters suitable for use with {@link QueryTextIndexBackend}. get is NOT supported on
      * the resulting map
@@ -0,0 +1,581 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.warning.HodWarning;
+import com.hp.autonomy.hod.client.warning.HodWarningCode;
+import com.hp.autonomy.types.requests.Spelling;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of {@link QueryResults} of {@link Document}s, including their {@link HodWarning}s and
+ * {@link Spelling}s, for storing results in caches. This is around half the size of Java serialization and several
+ * times faster.
+ * <p/>
+ * Each encoding starts with a format version. Strings which are repeated across documents, such as field names and
+ * index names, are written once and then referred to by number. Field values produced by Jackson (strings, numbers,
+ * booleans, lists and maps) are written directly; any other values fall back to Java serialization. Warnings without a
+ * code are decoded with {@link HodWarningCode#UNKNOWN_ERROR_CODE}.
+ * <p/>
+ * This class is thread safe
+ */
+public class QueryResultsCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 5;
+    private static final int LIST = 6;
+    private static final int MAP = 7;
+    private static final int SERIALIZED = 8;
+
+    /**
+     * @param results The results to encode
+     * @return The encoded results
+     * @throws UncheckedIOException If a field value could not be serialized
+     */
+    public byte[] encode(final QueryResults<Document> results) {
+        final Writer writer = new Writer();
+        writer.writeResults(results);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param bytes Results encoded by {@link #encode(QueryResults)}
+     * @return The decoded results
+     * @throws IllegalArgumentException If the bytes are not valid encoded results
+     */
+    public QueryResults<Document> decode(final byte[] bytes) {
+        try {
+            return new Reader(bytes).readResults();
+        } catch (final IOException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid encoded query results", e);
+        }
+    }
+
+    /**
+     * @param document The document to encode
+     * @return The encoded document
+     * @throws UncheckedIOException If a field value could not be serialized
+     */
+    public byte[] encodeDocument(final Document document) {
+        final Writer writer = new Writer();
+        writer.writeDocument(document);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param bytes A document encoded by {@link #encodeDocument(Document)}
+     * @return The decoded document
+     * @throws IllegalArgumentException If the bytes are not a valid encoded document
+     */
+    public Document decodeDocument(final byte[] bytes) {
+        try {
+            return new Reader(bytes).readDocument();
+        } catch (final IOException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid encoded document", e);
+        }
+    }
+
+    // Writes directly to a byte array, which is much faster than going through a DataOutputStream
+    private static class Writer {
+
+        private final Map<String, Integer> names = new HashMap<>();
+        private byte[] buffer = new byte[8192];
+        private int position;
+
+        private Writer() {
+            writeByte(FORMAT_VERSION);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void writeResults(final QueryResults<Document> results) {
+            writeVarInt(results.getDocuments().size());
+
+            for (final Document document : results.getDocuments()) {
+                writeDocument(document);
+            }
+
+            writeNullableInt(results.getTotalResults());
+            writeString(results.getExpandedQuery());
+            writeSpelling(results.getSuggestion());
+            writeSpelling(results.getAutoCorrection());
+
+            writeVarInt(results.getHodWarnings().size());
+
+            for (final HodWarning warning : results.getHodWarnings()) {
+                // warnings without a code are decoded with the code used for codes which are not known
+                final HodWarningCode code = warning.getCode() == null ? HodWarningCode.UNKNOWN_ERROR_CODE : warning.getCode();
+                writeInt(code.getCode());
+                writeString(warning.getDetails());
+            }
+        }
+
+        private void writeDocument(final Document document) {
+            writeString(document.getReference());
+            writeLong(Double.doubleToLongBits(document.getWeight()));
+            writeName(document.getIndex());
+            writeString(document.getTitle());
+            writeString(document.getSummary());
+            writeString(document.getContent());
+            writeNullableInt(document.getSection());
+            writeName(document.getPromotionType().name());
+
+            final Set<String> links = document.getLinks();
+
+            if (links == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(links.size() + 1);
+
+                for (final String link : links) {
+                    writeString(link);
+                }
+            }
+
+            final Map<String, Serializable> fields = document.getFields();
+            writeVarInt(fields.size());
+
+            for (final Map.Entry<String, Serializable> field : fields.entrySet()) {
+                writeName(field.getKey());
+                writeValue(field.getValue());
+            }
+        }
+
+        private void writeSpelling(final Spelling spelling) {
+            if (spelling == null) {
+                writeByte(0);
+                return;
+            }
+
+            writeByte(1);
+            writeStringList(spelling.getCorrections());
+            writeString(spelling.getCorrectedQuery());
+            writeString(spelling.getOriginalQuery());
+        }
+
+        private void writeValue(final Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                writeByte(INTEGER);
+                writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeLong((Long) value);
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Boolean) {
+                writeByte(BOOLEAN);
+                writeByte((Boolean) value ? 1 : 0);
+            } else if (value instanceof List) {
+                final List<?> list = (List<?>) value;
+                writeByte(LIST);
+                writeVarInt(list.size());
+
+                for (final Object item : list) {
+                    writeValue(item);
+                }
+            } else if (value instanceof Map && hasStringKeys((Map<?, ?>) value)) {
+                final Map<?, ?> map = (Map<?, ?>) value;
+                writeByte(MAP);
+                writeVarInt(map.size());
+
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeName((String) entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+                try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+                    objectOutputStream.writeObject(value);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Error serializing field value", e);
+                }
+
+                writeByte(SERIALIZED);
+                writeBytes(bytes.toByteArray());
+            }
+        }
+
+        private void writeStringList(final List<String> strings) {
+            if (strings == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(strings.size() + 1);
+
+                for (final String string : strings) {
+                    writeString(string);
+                }
+            }
+        }
+
+        // names are written in full the first time, and as a reference to the earlier name after that
+        private void writeName(final String name) {
+            if (name == null) {
+                writeVarInt(0);
+                return;
+            }
+
+            final Integer index = names.get(name);
+
+            if (index != null) {
+                writeVarInt(index + 2);
+            } else {
+                names.put(name, names.size());
+                writeVarInt(1);
+                writeString(name);
+            }
+        }
+
+        private void writeString(final String string) {
+            if (string == null) {
+                writeVarInt(0);
+            } else {
+                writeBytes(string.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeBytes(final byte[] bytes) {
+            writeVarInt(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeNullableInt(final Integer value) {
+            if (value == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeInt(value);
+            }
+        }
+
+        private void writeVarInt(final int value) {
+            ensureCapacity(5);
+            int remaining = value;
+
+            while ((remaining & ~0x7F) != 0) {
+                buffer[position++] = (byte) (remaining & 0x7F | 0x80);
+                remaining >>>= 7;
+            }
+
+            buffer[position++] = (byte) remaining;
+        }
+
+        private void writeInt(final int value) {
+            ensureCapacity(4);
+
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeLong(final long value) {
+            ensureCapacity(8);
+
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeByte(final int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        private static boolean hasStringKeys(final Map<?, ?> map) {
+            for (final Object key : map.keySet()) {
+                if (!(key instanceof String)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static class Reader {
+
+        private final byte[] buffer;
+        private final List<String> names = new ArrayList<>();
+        private int position;
+
+        private Reader(final byte[] buffer) throws IOException {
+            this.buffer = buffer;
+
+            final int version = readByte();
+
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported format version " + version);
+            }
+        }
+
+        private QueryResults<Document> readResults() throws IOException {
+            final int documentCount = readVarInt();
+            final List<Document> documents = new ArrayList<>(documentCount);
+
+            for (int i = 0; i < documentCount; i++) {
+                documents.add(readDocument());
+            }
+
+            final Integer totalResults = readNullableInt();
+            final String expandedQuery = readString();
+            final Spelling suggestion = readSpelling();
+            final Spelling autoCorrection = readSpelling();
+
+            final int warningCount = readVarInt();
+            final List<HodWarning> warnings = new ArrayList<>(warningCount);
+
+            for (int i = 0; i < warningCount; i++) {
+                warnings.add(new HodWarning.Builder()
+                    .setCode(readInt())
+                    .setDetails(readString())
+                    .build());
+            }
+
+            return new QueryResults<>(documents, totalResults, expandedQuery, suggestion, autoCorrection, warnings);
+        }
+
+        private Document readDocument() throws IOException {
+            final Document.Builder builder = new Document.Builder()
+                .setReference(readString())
+                .setWeight(Double.longBitsToDouble(readLong()))
+                .setIndex(readName())
+                .setTitle(readString())
+                .setSummary(readString())
+                .setContent(readString())
+                .setSection(readNullableInt())
+                .setPromotionType(readPromotionType());
+
+            final int linkCount = readVarInt() - 1;
+
+            if (linkCount >= 0) {
+                final Set<String> links = new HashSet<>();
+
+                for (int i = 0; i < linkCount; i++) {
+                    links.add(readString());
+                }
+
+                builder.setLinks(links);
+            }
+
+            final int fieldCount = readVarInt();
+
+            for (int i = 0; i < fieldCount; i++) {
+                final String name = readName();
+                builder.addField(name, readValue());
+            }
+
+            return builder.build();
+        }
+
+        private PromotionType readPromotionType() throws IOException {
+            final String name = readName();
+
+            if (name == null) {
+                throw new IOException("Missing promotion type");
+            }
+
+            try {
+                return PromotionType.valueOf(name);
+            } catch (final IllegalArgumentException e) {
+                throw new IOException("Unknown promotion type " + name, e);
+            }
+        }
+
+        private Spelling readSpelling() throws IOException {
+            if (readByte() == 0) {
+                return null;
+            }
+
+            final List<String> corrections = readStringList();
+            final String correctedQuery = readString();
+            final String originalQuery = readString();
+
+            return new Spelling(corrections, correctedQuery, originalQuery);
+        }
+
+        private Serializable readValue() throws IOException {
+            final int type = readByte();
+
+            switch (type) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case INTEGER:
+                    return readInt();
+                case LONG:
+                    return readLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case BOOLEAN:
+                    return readByte() != 0;
+                case LIST:
+                    final int size = readVarInt();
+                    final ArrayList<Serializable> list = new ArrayList<>(size);
+
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+
+                    return list;
+                case MAP:
+                    final int entries = readVarInt();
+                    final LinkedHashMap<String, Serializable> map = new LinkedHashMap<>();
+
+                    for (int i = 0; i < entries; i++) {
+                        final String key = readName();
+                        map.put(key, readValue());
+                    }
+
+                    return map;
+                case SERIALIZED:
+                    final int length = readVarInt() - 1;
+
+                    try (final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(buffer, position, length))) {
+                        position += length;
+                        return (Serializable) objectInputStream.readObject();
+                    } catch (final ClassNotFoundException e) {
+                        throw new IOException("Unknown class for field value", e);
+                    }
+                default:
+                    throw new IOException("Unknown value type " + type);
+            }
+        }
+
+        private List<String> readStringList() throws IOException {
+            final int size = readVarInt() - 1;
+
+            if (size < 0) {
+                return null;
+            }
+
+            final List<String> strings = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                strings.add(readString());
+            }
+
+            return strings;
+        }
+
+        private String readName() throws IOException {
+            final int reference = readVarInt();
+
+            if (reference == 0) {
+                return null;
+            } else if (reference == 1) {
+                final String name = readString();
+                names.add(name);
+                return name;
+            } else {
+                final int index = reference - 2;
+
+                if (index >= names.size()) {
+                    throw new IOException("Invalid name reference " + index);
+                }
+
+                return names.get(index);
+            }
+        }
+
+        private String readString() throws IOException {
+            final int length = readVarInt() - 1;
+
+            if (length < 0) {
+                return null;
+            }
+
+            if (position + length > buffer.length) {
+                throw new IOException("String extends past the end of the input");
+            }
+
+            final String string = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+
+        private Integer readNullableInt() {
+            return readByte() != 0 ? readInt() : null;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = readByte();
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed variable length integer");
+        }
+
+        private int readInt() {
+            int value = 0;
+
+            for (int i = 0; i < 4; i++) {
+                value = value << 8 | readByte();
+            }
+
+            return value;
+        }
+
+        private long readLong() {
+            long value = 0;
+
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | readByte();
+            }
+
+            return value;
+        }
+
+        private int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Pages through the results of a query, fetching later pages in the background while the caller is processing earlier
+ * ones.
+ * <p/>
+ * Pages start at the start parameter of the given {@link QueryRequestBuilder} (or 1 if it is not set) and contain
+ * pageSize results each. Paging stops once the total number of results reported by HP Haven OnDemand or the
+ * absoluteMaxResults parameter has been reached, or a page contains fewer results than requested. The totalResults
+ * parameter is always requested for the first page so that the end of the results is known.
+ * <p/>
+ * For example, to page through the results of a text query:
+ * <pre>
+ * {@code
+ * QueryResultsPager<Document> pager = new QueryResultsPager<>(
+ *     pageParams -> queryTextIndexService.queryTextIndexWithText("cats", pageParams), params, 50, 2, executorService
+ * );
+ *
+ * while (pager.hasNext()) {
+ *     QueryResults<Document> page = pager.next();
+ * }
+ * }
+ * </pre>
+ * The {@link #close()} method should be called if paging is stopped early, to cancel any pages still being fetched.
+ * <p/>
+ * This class is not thread safe
+ * @param <T> The type of the documents
+ */
+@Slf4j
+public class QueryResultsPager<T extends Serializable> implements AutoCloseable {
+
+    private final PageFetcher<T> pageFetcher;
+    private final QueryRequestBuilder params;
+    private final int firstStart;
+    private final int pageSize;
+    private final int prefetchDepth;
+    private final ExecutorService executorService;
+
+    private final Deque<Page<T>> pages = new ArrayDeque<>();
+
+    // the position of the last result which may be requested, or null if this is not yet known
+    private Integer lastResult;
+    private int nextStart;
+    private boolean exhausted;
+
+    /**
+     * Creates a new QueryResultsPager
+     * @param pageFetcher Fetches a single page of results
+     * @param params The parameters for the query. These are copied, so later changes will not affect the pager
+     * @param pageSize The number of results in each page
+     * @param prefetchDepth The number of pages to fetch ahead of the page being processed. If 0, each page is fetched
+     * when it is requested
+     * @param executorService The executor service used to fetch pages in the background
+     * @throws IllegalArgumentException If pageSize is not positive or prefetchDepth is negative
+     */
+    public QueryResultsPager(
+        final PageFetcher<T> pageFetcher,
+        final QueryRequestBuilder params,
+        final int pageSize,
+        final int prefetchDepth,
+        final ExecutorService executorService
+    ) {
+        if (pageSize <= 0 || prefetchDepth < 0) {
+            throw new IllegalArgumentException("pageSize must be positive and prefetchDepth must not be negative");
+        }
+
+        this.pageFetcher = pageFetcher;
+        this.params = params.copy();
+        this.pageSize = pageSize;
+        this.prefetchDepth = prefetchDepth;
+        this.executorService = executorService;
+
+        firstStart = params.getStart() != null ? params.getStart() : 1;
+        nextStart = firstStart;
+        lastResult = params.getAbsoluteMaxResults();
+    }
+
+    /**
+     * @return True if there is another page of results
+     */
+    public boolean hasNext() {
+        if (pages.isEmpty()) {
+            fetchPages(1);
+        }
+
+        return !pages.isEmpty();
+    }
+
+    /**
+     * Returns the next page of results, waiting for it to be fetched if necessary
+     * @return The next page of results
+     * @throws HodErrorException If an error occurred fetching the page
+     * @throws NoSuchElementException If there are no more pages
+     */
+    public QueryResults<T> next() throws HodErrorException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final Page<T> page = pages.removeFirst();
+        final QueryResults<T> results = getPage(page.future);
+
+        // the total is the number of results matching the query, so it is also the position of the last result
+        if (results.getTotalResults() != null) {
+            lastResult = lastResult == null ? results.getTotalResults() : Math.min(lastResult, results.getTotalResults());
+        }
+
+        if (results.getDocuments().size() < page.size) {
+            exhausted = true;
+        }
+
+        discardUnneededPages();
+        fetchPages(prefetchDepth);
+
+        return results;
+    }
+
+    /**
+     * Cancels any pages which are still being fetched. No further pages will be returned
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+
+        for (final Page<T> page : pages) {
+            page.future.cancel(true);
+        }
+
+        pages.clear();
+    }
+
+    private void fetchPages(final int count) {
+        while (pages.size() < count && !exhausted && (lastResult == null || nextStart <= lastResult)) {
+            final int start = nextStart;
+            final int size = lastResult == null ? pageSize : Math.min(pageSize, lastResult - start + 1);
+
+            final QueryRequestBuilder pageParams = pageParams(params, start, size);
+
+            if (start == firstStart) {
+                pageParams.setTotalResults(true);
+            }
+
+            log.debug("Fetching results {} to {}", start, start + size - 1);
+
+            pages.addLast(new Page<>(executorService.submit(() -> pageFetcher.fetch(pageParams)), start, size));
+            nextStart = start + size;
+        }
+    }
+
+    // pages may have been fetched speculatively before the end of the results was known
+    private void discardUnneededPages() {
+        while (!pages.isEmpty() && (exhausted || lastResult != null && pages.getLast().start > lastResult)) {
+            pages.removeLast().future.cancel(true);
+        }
+    }
+
+    static QueryRequestBuilder pageParams(final QueryRequestBuilder params, final int start, final int size) {
+        // absolute_max_results is the position of the last result to return, not the number of results
+        return params.copy()
+            .setStart(start)
+            .setMaxPageResults(size)
+            .setAbsoluteMaxResults(start + size - 1);
+    }
+
+    static <T extends Serializable> QueryResults<T> getPage(final Future<QueryResults<T>> future) throws HodErrorException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for page of results", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof HodErrorException) {
+                throw (HodErrorException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IllegalStateException("Error fetching page of results", cause);
+            }
+        }
+    }
+
+    /**
+     * Fetches a single page of query results
+     * @param <T> The type of the documents
+     */
+    @FunctionalInterface
+    public interface PageFetcher<T extends Serializable> {
+
+        /**
+         * Fetches the results for the given parameters
+         * @param params The parameters for the page, including the start and page size
+         * @return The page of results
+         * @throws HodErrorException If an error occurs fetching the results
+         */
+        QueryResults<T> fetch(QueryRequestBuilder params) throws HodErrorException;
+
+    }
+
+    private static class Page<T extends Serializable> {
+
+        private final Future<QueryResults<T>> future;
+        private final int start;
+        private final int size;
+
+        private Page(final Future<QueryResults<T>> future, final int start, final int size) {
+            this.future = future;
+            this.start = start;
+            this.size = size;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * Default implementation of QueryTextIndexService
@@ -59,32 +61,32 @@ public class QueryTextIndexServiceImpl<T extends Serializable> implements QueryT
 
     @Override
     public QueryResults<T> queryTextIndexWithText(final String text, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(returnType, getTextBackendCaller(text, params));
+        return requester.unsafeMakeRequest(returnType, requestKey("text", text, params), getTextBackendCaller(text, params));
     }
 
     @Override
     public QueryResults<T> queryTextIndexWithText(final TokenProxy<?, TokenType.Simple> tokenProxy, final String text, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(tokenProxy, returnType, getTextBackendCaller(text, params));
+        return requester.unsafeMakeRequest(tokenProxy, returnType, requestKey("text", text, params), getTextBackendCaller(text, params));
     }
 
     @Override
     public QueryResults<T> queryTextIndexWithReference(final String reference, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(returnType, getReferenceBackendCaller(reference, params));
+        return requester.unsafeMakeRequest(returnType, requestKey("reference", reference, params), getReferenceBackendCaller(reference, params));
     }
 
     @Override
     public QueryResults<T> queryTextIndexWithReference(final TokenProxy<?, TokenType.Simple> tokenProxy, final String reference, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(tokenProxy, returnType, getReferenceBackendCaller(reference, params));
+        return requester.unsafeMakeRequest(tokenProxy, returnType, requestKey("reference", reference, params), getReferenceBackendCaller(reference, params));
     }
 
     @Override
     public QueryResults<T> queryTextIndexWithUrl(final String url, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(returnType, getUrlBackendCaller(url, params));
+        return requester.unsafeMakeRequest(returnType, requestKey("url", url, params), getUrlBackendCaller(url, params));
     }
 
     @Override
     public QueryResults<T> queryTextIndexWithUrl(final TokenProxy<?, TokenType.Simple> tokenProxy, final String url, final QueryRequestBuilder params) throws HodErrorException {
-        return requester.unsafeMakeRequest(tokenProxy, returnType, getUrlBackendCaller(url, params));
+        return requester.unsafeMakeRequest(tokenProxy, returnType, requestKey("url", url, params), getUrlBackendCaller(url, params));
     }
 
     @Override
@@ -117,6 +119,12 @@ public class QueryTextIndexServiceImpl<T extends Serializable> implements QueryT
         return requester.unsafeMakeRequest(tokenProxy, returnType, getInputStreamBackendCaller(inputStream, params));
     }
 
+    // identical queries may share a request if request coalescing is enabled; file queries are never coalesced. The
+    // parameters are compared as a set of entries, since the built MultiMap does not compare equal by value
+    private Object requestKey(final String queryType, final String value, final QueryRequestBuilder params) {
+        return Arrays.asList("queryTextIndex", queryType, value, new HashSet<>(params.build().entrySet()));
+    }
+
     private Requester.BackendCaller<EntityType, TokenType.Simple> getTextBackendCaller(final String text, final QueryRequestBuilder params) {
         return authenticationToken -> queryTextIndexBackend.queryTextIndexWithText(authenticationToken, text, params.build());
     }
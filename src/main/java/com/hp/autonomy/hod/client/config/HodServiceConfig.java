@@ -65,7 +65,7 @@ public class HodServiceConfig<E extends EntityType, T extends TokenType> {
         restAdapter = restAdapterBuilder.build();
         tokenRepository = builder.tokenRepository;
 
-        requester = new Requester<>(tokenRepository, new ResponseParser(tokenRepository, objectMapper), builder.tokenProxyService);
+        requester = new Requester<>(tokenRepository, new ResponseParser(tokenRepository, objectMapper), builder.tokenProxyService, builder.coalesceRequests);
         endpoint = builder.endpoint;
 
         asyncTimeout = builder.asyncTimeout;
@@ -99,6 +99,13 @@ public class HodServiceConfig<E extends EntityType, T extends TokenType> {
         @Setter
         private TokenProxyService<E, T> tokenProxyService;
 
+        /**
+         * @param coalesceRequests If true, identical concurrent requests made with the same token proxy share a single
+         * request to HP Haven OnDemand, and every caller receives the same response object. Defaults to false
+         */
+        @Setter
+        private boolean coalesceRequests;
+
         private HodErrorHandler errorHandler = new DefaultHodErrorHandler();
         private Client client;
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.config;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shares a single in-flight request between concurrent callers making the same request. The first caller makes the
+ * request, and any callers which arrive before it completes wait for its result instead of making their own. Once the
+ * request completes it is forgotten, so this does not cache responses.
+ */
+class RequestCoalescer {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key Identifies the request. Requests with equal keys must return equivalent results
+     * @param request Makes the request
+     * @param <U> The type of the result
+     * @return The result of the request, which may be shared with other callers
+     * @throws HodErrorException If the request fails
+     */
+    @SuppressWarnings("unchecked")
+    <U> U coalesce(final Object key, final Request<U> request) throws HodErrorException {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            return (U) await(existing);
+        }
+
+        try {
+            final U result = request.make();
+            future.complete(result);
+            return result;
+        } catch (final HodErrorException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Object await(final CompletableFuture<Object> future) throws HodErrorException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced request", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof HodErrorException) {
+                throw (HodErrorException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw (Error) cause;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Request<U> {
+
+        U make() throws HodErrorException;
+    }
+}
@@ -20,20 +20,36 @@ import retrofit.client.Response;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Makes a request to HP Haven OnDemand
+ * <p/>
+ * If request coalescing is enabled, concurrent calls to the makeRequest methods which take a request key share a single
+ * request when they use the same token proxy, return type and key. The response is parsed once and the same object is
+ * returned to every caller, so it must not be modified.
  */
 public class Requester<E extends EntityType, T extends TokenType> {
 
     private final TokenRepository tokenRepository;
     private final ResponseParser responseParser;
     private final TokenProxyService<? extends E, ? extends T> tokenProxyService;
+    private final RequestCoalescer requestCoalescer;
 
     Requester(final TokenRepository tokenRepository, final ResponseParser responseParser, final TokenProxyService<? extends E, ? extends T> tokenProxyService) {
+        this(tokenRepository, responseParser, tokenProxyService, false);
+    }
+
+    Requester(
+        final TokenRepository tokenRepository,
+        final ResponseParser responseParser,
+        final TokenProxyService<? extends E, ? extends T> tokenProxyService,
+        final boolean coalesceRequests
+    ) {
         this.tokenRepository = tokenRepository;
         this.responseParser = responseParser;
         this.tokenProxyService = tokenProxyService;
+        requestCoalescer = coalesceRequests ? new RequestCoalescer() : null;
     }
 
     /**
@@ -169,6 +185,95 @@ public class Requester<E extends EntityType, T extends TokenType> {
         return responseParser.unsafeParseResponse(tokenProxy, type, backendCaller.makeRequest(getAuthenticationToken(tokenProxy)));
     }
 
+    /**
+     * Makes a request to HP Haven OnDemand using a TokenProxy provided by a {@link TokenProxyService}, converting the
+     * response body to the type specified by the Class object. If request coalescing is enabled, the response may be
+     * shared with concurrent callers using the same token proxy and request key.
+     * @param returnType The desired type of the value returned by HP Haven OnDemand
+     * @param requestKey Identifies the API and parameters of the request. Requests with equal keys must be identical
+     * @param backendCaller Makes the request to HP Haven OnDemand
+     * @param <U> The desired type of the value returned by HP Haven OnDemand
+     * @return An object representing the output from HP Haven OnDemand
+     * @throws HodErrorException
+     * @throws NullPointerException If a TokenProxyService has not been configured
+     */
+    public <U> U makeRequest(final Class<U> returnType, final Object requestKey, final BackendCaller<? super E, ? super T> backendCaller) throws HodErrorException {
+        checkTokenProxyService();
+        return makeRequest(tokenProxyService.getTokenProxy(), returnType, requestKey, backendCaller);
+    }
+
+    /**
+     * Makes a request to HP Haven OnDemand using a TokenProxy provided by a {@link TokenProxyService}, converting the
+     * response body to the type specified by the JavaType. If request coalescing is enabled, the response may be
+     * shared with concurrent callers using the same token proxy and request key. This method does not guarantee that
+     * the type parameter U represents the given JavaType.
+     * @param type The desired type of the value returned by HP Haven OnDemand
+     * @param requestKey Identifies the API and parameters of the request. Requests with equal keys must be identical
+     * @param backendCaller Makes the request to HP Haven OnDemand
+     * @param <U> The desired type of the value returned by HP Haven OnDemand
+     * @return An object representing the output from HP Haven OnDemand
+     * @throws HodErrorException
+     * @throws NullPointerException If a TokenProxyService has not been configured
+     */
+    public <U> U unsafeMakeRequest(final JavaType type, final Object requestKey, final BackendCaller<? super E, ? super T> backendCaller) throws HodErrorException {
+        checkTokenProxyService();
+        return unsafeMakeRequest(tokenProxyService.getTokenProxy(), type, requestKey, backendCaller);
+    }
+
+    /**
+     * Makes a request to HP Haven OnDemand, converting the response body to the type specified by the Class object.
+     * If request coalescing is enabled, the response may be shared with concurrent callers using the same token proxy
+     * and request key.
+     * @param tokenProxy The token proxy to use to make the request
+     * @param returnType The desired type of the value returned by HP Haven OnDemand
+     * @param requestKey Identifies the API and parameters of the request. Requests with equal keys must be identical
+     * @param backendCaller Makes the request to HP Haven OnDemand
+     * @param <U> The desired type of the value returned by HP Haven OnDemand
+     * @param <BE> The entity type of the token proxy
+     * @param <BT> The token type of the token proxy
+     * @return An object representing the output from HP Haven OnDemand
+     * @throws HodErrorException
+     */
+    public <U, BE extends EntityType, BT extends TokenType> U makeRequest(
+        final TokenProxy<BE, BT> tokenProxy,
+        final Class<U> returnType,
+        final Object requestKey,
+        final BackendCaller<? super BE, ? super BT> backendCaller
+    ) throws HodErrorException {
+        if (requestCoalescer == null) {
+            return makeRequest(tokenProxy, returnType, backendCaller);
+        }
+
+        return requestCoalescer.coalesce(Arrays.asList(tokenProxy, returnType, requestKey), () -> makeRequest(tokenProxy, returnType, backendCaller));
+    }
+
+    /**
+     * Makes a request to HP Haven OnDemand, converting the response body to the type specified by the JavaType. If
+     * request coalescing is enabled, the response may be shared with concurrent callers using the same token proxy and
+     * request key. This method does not guarantee that the type parameter U represents the given JavaType.
+     * @param tokenProxy The token proxy to use to make the request
+     * @param type The desired type of the value returned by HP Haven OnDemand
+     * @param requestKey Identifies the API and parameters of the request. Requests with equal keys must be identical
+     * @param backendCaller Makes the request to HP Haven OnDemand
+     * @param <U> The desired type of the value returned by HP Haven OnDemand
+     * @param <BE> The entity type of the token proxy
+     * @param <BT> The token type of the token proxy
+     * @return An object representing the output from HP Haven OnDemand
+     * @throws HodErrorException
+     */
+    public <U, BE extends EntityType, BT extends TokenType> U unsafeMakeRequest(
+        final TokenProxy<BE, BT> tokenProxy,
+        final JavaType type,
+        final Object requestKey,
+        final BackendCaller<? super BE, ? super BT> backendCaller
+    ) throws HodErrorException {
+        if (requestCoalescer == null) {
+            return unsafeMakeRequest(tokenProxy, type, backendCaller);
+        }
+
+        return requestCoalescer.coalesce(Arrays.asList(tokenProxy, type, requestKey), () -> unsafeMakeRequest(tokenProxy, type, backendCaller));
+    }
+
     private void checkTokenProxyService() {
         if (tokenProxyService == null) {
             throw new NullPointerException("A TokenProxyService has not been configured so a TokenProxy must be supplied");
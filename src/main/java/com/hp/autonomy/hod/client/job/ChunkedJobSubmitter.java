@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.job;
+
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Submits each chunk of a large input as a separate HP Haven OnDemand job, keeping at most a fixed number of jobs in
+ * flight at once, and calls a single callback once all the jobs have finished.
+ * <p/>
+ * If every job succeeds, the callback's success method is called with the results of the jobs combined using the given
+ * combiner. If a job fails, no further chunks are submitted and the first failure is passed to the callback once the
+ * jobs which are still running have finished. If reading a chunk from the iterator fails, the exception is passed to the
+ * callback's handleException method in the same way. The callback is called exactly once.
+ * <p/>
+ * Chunks are read from the iterator lazily, so the whole input does not need to be held in memory.
+ * @param <C> The type of the chunks
+ * @param <T> The result type of the jobs
+ */
+@Slf4j
+public class ChunkedJobSubmitter<C, T> {
+
+    private final Iterator<? extends C> chunks;
+    private final JobSubmitter<? super C, T> jobSubmitter;
+    private final BinaryOperator<T> combiner;
+    private final int maxConcurrentJobs;
+    private final HodJobCallback<T> callback;
+
+    private final Object lock = new Object();
+
+    // the following fields are guarded by lock
+    private T result;
+    private int jobsInFlight;
+    private Consumer<HodJobCallback<T>> failure;
+    private boolean complete;
+
+    /**
+     * Creates a new ChunkedJobSubmitter
+     * @param chunks The chunks to submit
+     * @param jobSubmitter Submits a job for a single chunk
+     * @param identity The result to report if there are no chunks
+     * @param combiner Combines the results of two jobs
+     * @param maxConcurrentJobs The maximum number of jobs which may be running at once
+     * @param callback Callback that will be called with the combined result
+     * @throws IllegalArgumentException If maxConcurrentJobs is not positive
+     */
+    public ChunkedJobSubmitter(
+        final Iterator<? extends C> chunks,
+        final JobSubmitter<? super C, T> jobSubmitter,
+        final T identity,
+        final BinaryOperator<T> combiner,
+        final int maxConcurrentJobs,
+        final HodJobCallback<T> callback
+    ) {
+        if (maxConcurrentJobs <= 0) {
+            throw new IllegalArgumentException("maxConcurrentJobs must be positive");
+        }
+
+        this.chunks = chunks;
+        this.jobSubmitter = jobSubmitter;
+        this.combiner = combiner;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.callback = callback;
+
+        result = identity;
+    }
+
+    /**
+     * Submits the first chunks. Further chunks are submitted as earlier jobs finish.
+     */
+    public void start() {
+        for (int i = 0; i < maxConcurrentJobs; i++) {
+            submitNext();
+        }
+
+        checkComplete();
+    }
+
+    private void submitNext() {
+        final C chunk;
+
+        synchronized (lock) {
+            try {
+                if (failure != null || !chunks.hasNext()) {
+                    return;
+                }
+
+                chunk = chunks.next();
+            } catch (final RuntimeException e) {
+                log.error("Error reading chunk", e);
+
+                failure = jobCallback -> jobCallback.handleException(e);
+                return;
+            }
+
+            jobsInFlight++;
+        }
+
+        final ChunkCallback chunkCallback = new ChunkCallback();
+
+        try {
+            jobSubmitter.submit(chunk, chunkCallback);
+        } catch (final HodErrorException e) {
+            log.error("Error submitting job for chunk", e);
+
+            chunkCallback.error(e.getErrorCode());
+        } catch (final RuntimeException e) {
+            log.error("Error submitting job for chunk", e);
+
+            chunkCallback.handleException(e);
+        }
+    }
+
+    private void chunkFinished(final T chunkResult) {
+        synchronized (lock) {
+            jobsInFlight--;
+            result = combiner.apply(result, chunkResult);
+        }
+
+        submitNext();
+        checkComplete();
+    }
+
+    private void chunkFailed(final Consumer<HodJobCallback<T>> chunkFailure) {
+        synchronized (lock) {
+            jobsInFlight--;
+
+            if (failure == null) {
+                failure = chunkFailure;
+            }
+        }
+
+        checkComplete();
+    }
+
+    private void checkComplete() {
+        final Consumer<HodJobCallback<T>> completion;
+
+        synchronized (lock) {
+            if (complete || jobsInFlight > 0) {
+                return;
+            }
+
+            if (failure == null) {
+                try {
+                    if (chunks.hasNext()) {
+                        return;
+                    }
+                } catch (final RuntimeException e) {
+                    log.error("Error reading chunk", e);
+
+                    failure = jobCallback -> jobCallback.handleException(e);
+                }
+            }
+
+            complete = true;
+
+            if (failure != null) {
+                completion = failure;
+            } else {
+                final T finalResult = result;
+                completion = jobCallback -> jobCallback.success(finalResult);
+            }
+        }
+
+        log.debug("All chunks finished, calling callback");
+
+        completion.accept(callback);
+    }
+
+    /**
+     * Submits a job for a single chunk
+     * @param <C> The type of the chunks
+     * @param <T> The result type of the job
+     */
+    @FunctionalInterface
+    public interface JobSubmitter<C, T> {
+
+        /**
+         * Submits a job for the given chunk
+         * @param chunk The chunk to submit
+         * @param callback Callback which must be called when the job has finished
+         * @throws HodErrorException If an error occurs submitting the job
+         */
+        void submit(C chunk, HodJobCallback<T> callback) throws HodErrorException;
+
+    }
+
+    // Jobs may report more than one error, so only the first outcome of each job is counted
+    private class ChunkCallback implements HodJobCallback<T> {
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        @Override
+        public void success(final T chunkResult) {
+            if (done.compareAndSet(false, true)) {
+                chunkFinished(chunkResult);
+            }
+        }
+
+        @Override
+        public void error(final HodErrorCode error) {
+            if (done.compareAndSet(false, true)) {
+                chunkFailed(jobCallback -> jobCallback.error(error));
+            }
+        }
+
+        @Override
+        public void timeout() {
+            if (done.compareAndSet(false, true)) {
+                chunkFailed(HodJobCallback::timeout);
+            }
+        }
+
+        @Override
+        public void handleException(final RuntimeException exception) {
+            if (done.compareAndSet(false, true)) {
+                chunkFailed(jobCallback -> jobCallback.handleException(exception));
+            }
+        }
+    }
+}
@@ -8,28 +8,95 @@ package com.hp.autonomy.hod.client.token;
 import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
 import com.hp.autonomy.hod.client.api.authentication.EntityType;
 import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
 
+import java.io.Closeable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A {@link TokenRepository} which is backed by a {@link java.util.Map}
  *
  * This class is thread safe
  *
- * This class does not expire old tokens
+ * Tokens are indexed by expiry. Expired tokens are removed whenever a token is inserted, and periodically if the
+ * repository was created with a sweeper. If a maximum size is given, the tokens nearest to expiry are removed when the
+ * repository grows beyond it. Retrieving a token does not take any locks.
  */
-public class InMemoryTokenRepository implements TokenRepository {
+@Slf4j
+public class InMemoryTokenRepository implements TokenRepository, Closeable {
 
-    private final ConcurrentMap<TokenProxy<?,?>, AuthenticationToken<?,?>> map = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TokenProxy<?, ?>, Entry> map = new ConcurrentHashMap<>();
+
+    // ordered by expiry, so expired tokens are at the head
+    private final ConcurrentSkipListSet<Entry> expiryIndex = new ConcurrentSkipListSet<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxSize;
+    private final ScheduledFuture<?> sweeper;
+
+    /**
+     * Creates a new InMemoryTokenRepository with no maximum size and no sweeper
+     */
+    public InMemoryTokenRepository() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new InMemoryTokenRepository with no sweeper
+     * @param maxSize The maximum number of tokens to store
+     * @throws IllegalArgumentException If maxSize is not positive
+     */
+    public InMemoryTokenRepository(final int maxSize) {
+        this.maxSize = checkMaxSize(maxSize);
+        sweeper = null;
+    }
+
+    /**
+     * Creates a new InMemoryTokenRepository which periodically removes expired tokens. The sweeper is stopped by
+     * {@link #close()}.
+     * @param maxSize The maximum number of tokens to store
+     * @param executor The executor used to run the sweeper
+     * @param sweepInterval The time between removals of expired tokens
+     * @throws IllegalArgumentException If maxSize is not positive
+     */
+    public InMemoryTokenRepository(final int maxSize, final ScheduledExecutorService executor, final Duration sweepInterval) {
+        this.maxSize = checkMaxSize(maxSize);
+        final long interval = sweepInterval.getMillis();
+        sweeper = executor.scheduleWithFixedDelay(this::removeExpiredTokens, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
     @Override
     public <E extends EntityType, T extends TokenType> TokenProxy<E, T> insert(final AuthenticationToken<E, T> token) {
         checkTokenExpiry(token);
+        removeExpiredTokens();
 
         final TokenProxy<E, T> key = new TokenProxy<>(token.getEntityType(), token.getTokenType());
+        final Entry entry = new Entry(key, token);
+
+        // the entry is added to the map first so that it can't be evicted before it is in the map
+        map.put(key, entry);
+        expiryIndex.add(entry);
 
-        map.put(key, token);
+        while (map.size() > maxSize) {
+            final Entry evicted = expiryIndex.pollFirst();
+
+            if (evicted == null) {
+                break;
+            }
+
+            if (map.remove(evicted.key, evicted)) {
+                log.debug("Token repository is full; removed the token nearest to expiry");
+            }
+        }
 
         return key;
     }
@@ -38,23 +105,87 @@ public class InMemoryTokenRepository implements TokenRepository {
     public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> update(final TokenProxy<E, T> key, final AuthenticationToken<E, T> newToken) {
         checkTokenExpiry(newToken);
 
+        final Entry newEntry = new Entry(key, newToken);
+        final AtomicReference<Entry> oldEntry = new AtomicReference<>();
+
+        // the index is updated while the map holds the lock for the key, so a concurrent removal of the key waits until
+        // both the map and the index have the new entry
+        map.computeIfPresent(key, (ignored, existing) -> {
+            oldEntry.set(existing);
+            expiryIndex.add(newEntry);
+            expiryIndex.remove(existing);
+            return newEntry;
+        });
+
         // we only put matching pairs into the map
         //noinspection unchecked
-        return (AuthenticationToken<E, T>) map.replace(key, newToken);
+        return oldEntry.get() == null ? null : (AuthenticationToken<E, T>) oldEntry.get().token;
     }
 
     @Override
     public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> get(final TokenProxy<E, T> key) {
+        final Entry entry = map.get(key);
+
         // we only put matching pairs into the map
         //noinspection unchecked
-        return (AuthenticationToken<E, T>) map.get(key);
+        return entry == null ? null : (AuthenticationToken<E, T>) entry.token;
     }
 
     @Override
     public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> remove(final TokenProxy<E, T> key) {
+        final Entry entry = map.remove(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        expiryIndex.remove(entry);
+
         // we only put matching pairs into the map
         //noinspection unchecked
-        return (AuthenticationToken<E, T>) map.remove(key);
+        return (AuthenticationToken<E, T>) entry.token;
+    }
+
+    /**
+     * Removes all the expired tokens from the repository
+     */
+    public void removeExpiredTokens() {
+        final long now = DateTimeUtils.currentTimeMillis();
+
+        for (final Entry entry : expiryIndex) {
+            if (entry.expiry >= now) {
+                break;
+            }
+
+            if (expiryIndex.remove(entry)) {
+                map.remove(entry.key, entry);
+            }
+        }
+    }
+
+    /**
+     * @return The number of tokens in the repository, including any expired tokens which have not been removed yet
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Stops the sweeper, if there is one. The tokens are not removed.
+     */
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+        }
+    }
+
+    private static int checkMaxSize(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+
+        return maxSize;
     }
 
     private void checkTokenExpiry(final AuthenticationToken<?, ?> token) {
@@ -63,4 +194,25 @@ public class InMemoryTokenRepository implements TokenRepository {
         }
     }
 
+    private class Entry implements Comparable<Entry> {
+
+        private final TokenProxy<?, ?> key;
+        private final AuthenticationToken<?, ?> token;
+        private final long expiry;
+
+        // distinguishes tokens with the same expiry
+        private final long order = sequence.getAndIncrement();
+
+        private Entry(final TokenProxy<?, ?> key, final AuthenticationToken<?, ?> token) {
+            this.key = key;
+            this.token = token;
+            expiry = token.getExpiry() == null ? Long.MAX_VALUE : token.getExpiry().getMillis();
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int comparison = Long.compare(expiry, other.expiry);
+            return comparison != 0 ? comparison : Long.compare(order, other.order);
+        }
+    }
 }
@@ -0,0 +1,482 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link TokenRepository} which stores tokens in a memory-mapped file, so that tokens survive restarts of the
+ * application. Token proxies which were serialized before a restart, for example in HTTP sessions, can be used to
+ * retrieve their tokens afterwards.
+ * <p/>
+ * The file is divided into fixed size slots, each holding one token keyed by the UUID of its token proxy. An in-memory
+ * index from UUID to slot is built when the file is opened, so retrieving a token does not read the file or take any
+ * locks. Writes go to the mapped memory and are written to disk by the operating system; call {@link #force()} to
+ * write them immediately. A token is updated by writing it to a new slot before the old slot is freed, so an
+ * interrupted update leaves either the old or the new token.
+ * <p/>
+ * Expired tokens are removed when the file is opened and whenever the file is full. Only the entity and token types
+ * declared in {@link EntityType} and {@link TokenType} can be stored, and the id and secret of a token must fit in a
+ * slot.
+ * <p/>
+ * The file contains the ids and secrets of the tokens in plain text, so it must be kept private to the application. On
+ * file systems which support POSIX permissions a new file is created readable and writable only by its owner; the
+ * permissions of an existing file are not changed. The file is locked while it is open, and only one repository may
+ * have it open at a time.
+ * <p/>
+ * This class is thread safe
+ */
+@Slf4j
+public class MappedFileTokenRepository implements TokenRepository, Closeable {
+
+    private static final int MAGIC = 0x484f4454; // HODT
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int SLOT_SIZE = 512;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE;
+
+    private static final int STATE_OFFSET = 0;
+    private static final int SEQUENCE_OFFSET = 4;
+    private static final int UUID_OFFSET = 12;
+    private static final int EXPIRY_OFFSET = 28;
+    private static final int START_REFRESH_OFFSET = 36;
+    private static final int STRINGS_OFFSET = 44;
+
+    private static final int FREE = 0;
+    private static final int USED = 1;
+
+    private static final long NO_START_REFRESH = Long.MIN_VALUE;
+
+    private static final Map<String, EntityType> ENTITY_TYPES = new HashMap<>();
+    private static final Map<String, TokenType> TOKEN_TYPES = new HashMap<>();
+
+    static {
+        for (final EntityType entityType : new EntityType[]{
+            EntityType.Application.INSTANCE,
+            EntityType.Combined.INSTANCE,
+            EntityType.CombinedSso.INSTANCE,
+            EntityType.Developer.INSTANCE,
+            EntityType.Unbound.INSTANCE,
+            EntityType.User.INSTANCE
+        }) {
+            ENTITY_TYPES.put(entityType.getName(), entityType);
+        }
+
+        for (final TokenType tokenType : new TokenType[]{TokenType.Simple.INSTANCE, TokenType.HmacSha1.INSTANCE}) {
+            TOKEN_TYPES.put(tokenType.getName(), tokenType);
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private final ConcurrentMap<UUID, Slot> index = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final BitSet usedSlots;
+    private long sequence;
+    private boolean closed;
+
+    /**
+     * Opens a token repository, creating the file if it does not exist
+     * @param file The file containing the tokens
+     * @param capacity The maximum number of tokens which can be stored; ignored if the file already exists
+     * @throws IOException If the file cannot be opened, is not a token repository, or is already open in this or another
+     * process
+     * @throws IllegalArgumentException If the capacity is not positive or is too large to map
+     */
+    public MappedFileTokenRepository(final Path file, final int capacity) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        }
+
+        channel = openChannel(file);
+
+        try {
+            lock(file);
+
+            final boolean isNew = channel.size() == 0;
+
+            if (isNew) {
+                this.capacity = capacity;
+            } else {
+                final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != SLOT_SIZE) {
+                    throw new IOException("File is not a token repository: " + file);
+                }
+
+                this.capacity = header.getInt(12);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * SLOT_SIZE);
+            usedSlots = new BitSet(this.capacity);
+
+            if (isNew) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, SLOT_SIZE);
+                buffer.putInt(12, this.capacity);
+            } else {
+                load();
+            }
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static FileChannel openChannel(final Path file) throws IOException {
+        final Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            final FileAttribute<?> ownerOnly = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+            return FileChannel.open(file, options, ownerOnly);
+        } else {
+            return FileChannel.open(file, options);
+        }
+    }
+
+    // two repositories writing to the same file would overwrite each other's slots
+    private void lock(final Path file) throws IOException {
+        final FileLock lock;
+
+        try {
+            lock = channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            throw new IOException("Token repository is already open: " + file, e);
+        }
+
+        if (lock == null) {
+            throw new IOException("Token repository is already open in another process: " + file);
+        }
+    }
+
+    @Override
+    public synchronized <E extends EntityType, T extends TokenType> TokenProxy<E, T> insert(final AuthenticationToken<E, T> token) throws IOException {
+        checkTokenExpiry(token);
+        checkOpen();
+
+        final TokenProxy<E, T> key = new TokenProxy<>(token.getEntityType(), token.getTokenType());
+        index.put(key.getUuid(), write(key.getUuid(), token));
+
+        return key;
+    }
+
+    @Override
+    public synchronized <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> update(final TokenProxy<E, T> key, final AuthenticationToken<E, T> newToken) throws IOException {
+        checkTokenExpiry(newToken);
+        checkOpen();
+
+        final AuthenticationToken<E, T> oldToken = get(key);
+
+        if (oldToken == null) {
+            return null;
+        }
+
+        final Slot oldSlot = index.get(key.getUuid());
+        final Slot newSlot = write(key.getUuid(), newToken);
+
+        // if the repository was full, writing may have removed the old token because it had expired and reused its
+        // slot; the old slot is only ours to free if it was still in the index
+        if (index.put(key.getUuid(), newSlot) == oldSlot) {
+            free(oldSlot.slot);
+        }
+
+        return oldToken;
+    }
+
+    @Override
+    public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> get(final TokenProxy<E, T> key) {
+        final Slot slot = index.get(key.getUuid());
+
+        if (slot == null || slot.token.getEntityType() != key.getEntityType() || slot.token.getTokenType() != key.getTokenType()) {
+            return null;
+        }
+
+        // the types have been checked above
+        //noinspection unchecked
+        return (AuthenticationToken<E, T>) slot.token;
+    }
+
+    @Override
+    public synchronized <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> remove(final TokenProxy<E, T> key) throws IOException {
+        checkOpen();
+
+        final AuthenticationToken<E, T> token = get(key);
+
+        if (token != null) {
+            free(index.remove(key.getUuid()).slot);
+        }
+
+        return token;
+    }
+
+    /**
+     * Removes all the expired tokens, freeing their slots
+     * @return The number of tokens removed
+     */
+    public synchronized int removeExpiredTokens() {
+        final long now = DateTimeUtils.currentTimeMillis();
+        int removed = 0;
+
+        for (final Map.Entry<UUID, Slot> entry : index.entrySet()) {
+            if (entry.getValue().expiry < now && index.remove(entry.getKey(), entry.getValue())) {
+                free(entry.getValue().slot);
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * @return The number of tokens in the repository
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes all changes to the file to disk
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /**
+     * Writes all changes to disk and closes the file. The repository cannot be used after it has been closed.
+     * @throws IOException If an error occurs closing the file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+            index.clear();
+        }
+    }
+
+    private void load() {
+        final long now = DateTimeUtils.currentTimeMillis();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            final int offset = slotOffset(slot);
+
+            if (buffer.getInt(offset + STATE_OFFSET) != USED) {
+                continue;
+            }
+
+            final long slotSequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+            sequence = Math.max(sequence, slotSequence + 1);
+
+            final Slot loaded;
+
+            try {
+                loaded = read(slot);
+            } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+                log.warn("Ignoring unreadable token in slot {}", slot);
+                buffer.putInt(offset + STATE_OFFSET, FREE);
+                continue;
+            }
+
+            if (loaded.expiry < now) {
+                buffer.putInt(offset + STATE_OFFSET, FREE);
+                continue;
+            }
+
+            final UUID uuid = new UUID(buffer.getLong(offset + UUID_OFFSET), buffer.getLong(offset + UUID_OFFSET + 8));
+            final Slot existing = index.get(uuid);
+
+            // an update was interrupted after writing the new token, so the token with the higher sequence is kept
+            if (existing != null) {
+                final boolean keepExisting = existing.sequence > slotSequence;
+                final int discarded = keepExisting ? slot : existing.slot;
+                buffer.putInt(slotOffset(discarded) + STATE_OFFSET, FREE);
+                usedSlots.clear(discarded);
+
+                if (keepExisting) {
+                    continue;
+                }
+            }
+
+            index.put(uuid, loaded);
+            usedSlots.set(slot);
+        }
+
+        log.debug("Loaded {} tokens", index.size());
+    }
+
+    private Slot read(final int slot) {
+        final int offset = slotOffset(slot);
+        final int[] position = {offset + STRINGS_OFFSET};
+
+        final EntityType entityType = ENTITY_TYPES.get(readString(position));
+        final TokenType tokenType = TOKEN_TYPES.get(readString(position));
+        final String id = readString(position);
+        final String secret = readString(position);
+
+        if (entityType == null || tokenType == null) {
+            throw new IllegalArgumentException("Unknown token type");
+        }
+
+        final long expiry = buffer.getLong(offset + EXPIRY_OFFSET);
+        final long startRefresh = buffer.getLong(offset + START_REFRESH_OFFSET);
+
+        final AuthenticationToken<?, ?> token = new AuthenticationToken<>(
+            entityType,
+            tokenType,
+            new DateTime(expiry),
+            id,
+            secret,
+            startRefresh == NO_START_REFRESH ? null : new DateTime(startRefresh)
+        );
+
+        return new Slot(slot, buffer.getLong(offset + SEQUENCE_OFFSET), token);
+    }
+
+    private Slot write(final UUID uuid, final AuthenticationToken<?, ?> token) throws IOException {
+        if (ENTITY_TYPES.get(token.getEntityType().getName()) != token.getEntityType() || TOKEN_TYPES.get(token.getTokenType().getName()) != token.getTokenType()) {
+            throw new IllegalArgumentException("Only the entity and token types declared in EntityType and TokenType can be stored");
+        }
+
+        final byte[][] strings = {
+            token.getEntityType().getName().getBytes(StandardCharsets.UTF_8),
+            token.getTokenType().getName().getBytes(StandardCharsets.UTF_8),
+            token.getId().getBytes(StandardCharsets.UTF_8),
+            token.getSecret().getBytes(StandardCharsets.UTF_8)
+        };
+
+        int length = STRINGS_OFFSET;
+
+        for (final byte[] string : strings) {
+            length += 2 + string.length;
+        }
+
+        if (length > SLOT_SIZE) {
+            throw new IllegalArgumentException("Token is too large to store");
+        }
+
+        final int slot = allocate();
+        final int offset = slotOffset(slot);
+        final long slotSequence = sequence++;
+
+        buffer.putLong(offset + SEQUENCE_OFFSET, slotSequence);
+        buffer.putLong(offset + UUID_OFFSET, uuid.getMostSignificantBits());
+        buffer.putLong(offset + UUID_OFFSET + 8, uuid.getLeastSignificantBits());
+        buffer.putLong(offset + EXPIRY_OFFSET, token.getExpiry().getMillis());
+        buffer.putLong(offset + START_REFRESH_OFFSET, token.getStartRefresh() == null ? NO_START_REFRESH : token.getStartRefresh().getMillis());
+
+        int position = offset + STRINGS_OFFSET;
+
+        for (final byte[] string : strings) {
+            buffer.putShort(position, (short) string.length);
+            position += 2;
+
+            for (final byte b : string) {
+                buffer.put(position++, b);
+            }
+        }
+
+        // the slot is only marked as used once the token has been written
+        buffer.putInt(offset + STATE_OFFSET, USED);
+
+        return new Slot(slot, slotSequence, token);
+    }
+
+    private int allocate() throws IOException {
+        int slot = usedSlots.nextClearBit(0);
+
+        if (slot >= capacity) {
+            log.debug("Token repository is full; removing expired tokens");
+            removeExpiredTokens();
+            slot = usedSlots.nextClearBit(0);
+
+            if (slot >= capacity) {
+                throw new IOException("Token repository is full");
+            }
+        }
+
+        usedSlots.set(slot);
+        return slot;
+    }
+
+    private void free(final int slot) {
+        buffer.putInt(slotOffset(slot) + STATE_OFFSET, FREE);
+        usedSlots.clear(slot);
+    }
+
+    private String readString(final int[] position) {
+        final int length = buffer.getShort(position[0]) & 0xffff;
+        final byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position[0] + 2 + i);
+        }
+
+        position[0] += 2 + length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int slotOffset(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Token repository has been closed");
+        }
+    }
+
+    private void checkTokenExpiry(final AuthenticationToken<?, ?> token) {
+        if (token.hasExpired()) {
+            throw new IllegalArgumentException("Token has already expired");
+        }
+    }
+
+    private static class Slot {
+
+        private final int slot;
+        private final long sequence;
+        private final AuthenticationToken<?, ?> token;
+        private final long expiry;
+
+        private Slot(final int slot, final long sequence, final AuthenticationToken<?, ?> token) {
+            this.slot = slot;
+            this.sequence = sequence;
+            this.token = token;
+            expiry = token.getExpiry().getMillis();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * A {@link TokenRepository} which keeps a bounded local cache of the tokens in another token repository, for token
+ * repositories which are shared between nodes and need a network round trip for each call.
+ * <p/>
+ * Tokens are cached for at most the time to live, and never after they expire. Tokens inserted or updated through this
+ * repository are written to both the local cache and the shared repository; tokens updated or removed by other nodes
+ * are seen once the cached token's time to live has passed. Each cached entry is stamped with a version, so a token
+ * retrieved from the shared repository is not cached if the token was updated or removed while it was being retrieved.
+ * <p/>
+ * Reading a cached token does not take a lock. Once the cache is full, expired tokens are evicted first and then
+ * arbitrary tokens, so the size limit is approximate. Since an evicted entry may have recorded an update or removal,
+ * tokens retrieved before the most recent eviction are not cached.
+ * <p/>
+ * This class is thread safe
+ */
+public class NearCacheTokenRepository implements TokenRepository {
+
+    private final TokenRepository remoteRepository;
+    private final int maxSize;
+    private final long timeToLiveMillis;
+
+    private final AtomicLong versions = new AtomicLong();
+
+    // the latest version of any entry which has been evicted
+    private final AtomicLong evictedVersion = new AtomicLong();
+
+    private final ConcurrentMap<TokenProxy<?, ?>, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new NearCacheTokenRepository
+     * @param remoteRepository The shared token repository
+     * @param maxSize The maximum number of tokens to cache locally
+     * @param timeToLive The maximum time to cache each token
+     */
+    public NearCacheTokenRepository(final TokenRepository remoteRepository, final int maxSize, final Duration timeToLive) {
+        this.remoteRepository = remoteRepository;
+        this.maxSize = maxSize;
+        timeToLiveMillis = timeToLive.getMillis();
+    }
+
+    @Override
+    public <E extends EntityType, T extends TokenType> TokenProxy<E, T> insert(final AuthenticationToken<E, T> token) throws IOException {
+        final TokenProxy<E, T> key = remoteRepository.insert(token);
+        putEntry(key, new Entry(token, versions.incrementAndGet()));
+        return key;
+    }
+
+    @Override
+    public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> update(final TokenProxy<E, T> key, final AuthenticationToken<E, T> newToken) throws IOException {
+        AuthenticationToken<E, T> oldToken = null;
+
+        try {
+            oldToken = remoteRepository.update(key, newToken);
+            return oldToken;
+        } finally {
+            // if the update failed the shared repository may or may not have the new token
+            putEntry(key, new Entry(oldToken == null ? null : newToken, versions.incrementAndGet()));
+        }
+    }
+
+    @Override
+    public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> get(final TokenProxy<E, T> key) throws IOException {
+        final Entry entry = cache.get(key);
+
+        if (entry != null && entry.token != null && entry.validUntil > DateTimeUtils.currentTimeMillis()) {
+            // we only put matching pairs into the cache
+            //noinspection unchecked
+            return (AuthenticationToken<E, T>) entry.token;
+        }
+
+        final long version = versions.get();
+        final AuthenticationToken<E, T> token = remoteRepository.get(key);
+
+        if (token != null) {
+            putEntry(key, new Entry(token, version));
+        }
+
+        return token;
+    }
+
+    @Override
+    public <E extends EntityType, T extends TokenType> AuthenticationToken<E, T> remove(final TokenProxy<E, T> key) throws IOException {
+        try {
+            return remoteRepository.remove(key);
+        } finally {
+            putEntry(key, new Entry(null, versions.incrementAndGet()));
+        }
+    }
+
+    /**
+     * Removes all the tokens from the local cache. The shared repository is not changed.
+     */
+    public void clear() {
+        evictedVersion.accumulateAndGet(versions.get(), Math::max);
+        cache.clear();
+    }
+
+    // replaces the entry for the key unless the cached entry has a later version, which happens if a token retrieved from
+    // the shared repository was updated or removed while it was being retrieved
+    private void putEntry(final TokenProxy<?, ?> key, final Entry entry) {
+        cache.compute(key, (ignored, existing) -> {
+            if (existing == null) {
+                // the entry which recorded a change during the retrieval may have been evicted
+                return entry.version < evictedVersion.get() ? null : entry;
+            }
+
+            return existing.version <= entry.version ? entry : existing;
+        });
+
+        if (cache.size() > maxSize) {
+            final long now = DateTimeUtils.currentTimeMillis();
+            evict(existing -> existing.validUntil <= now);
+            evict(existing -> true);
+        }
+    }
+
+    private void evict(final Predicate<Entry> predicate) {
+        final Iterator<Map.Entry<TokenProxy<?, ?>, Entry>> iterator = cache.entrySet().iterator();
+
+        while (cache.size() > maxSize && iterator.hasNext()) {
+            final Map.Entry<TokenProxy<?, ?>, Entry> candidate = iterator.next();
+            final Entry entry = candidate.getValue();
+
+            if (predicate.test(entry)) {
+                // the version is recorded before the entry is removed, so a put which finds no entry will see it
+                evictedVersion.accumulateAndGet(entry.version, Math::max);
+                cache.remove(candidate.getKey(), entry);
+            }
+        }
+    }
+
+    private class Entry {
+
+        // null if the token has been removed or may have changed
+        private final AuthenticationToken<?, ?> token;
+        private final long version;
+        private final long validUntil;
+
+        private Entry(final AuthenticationToken<?, ?> token, final long version) {
+            this.token = token;
+            this.version = version;
+
+            final long now = DateTimeUtils.currentTimeMillis();
+            validUntil = token == null ? now : Math.min(now + timeToLiveMillis, token.getExpiry().getMillis());
+        }
+    }
+}
@@ -32,7 +32,7 @@ public final class TokenProxy<E extends EntityType, T extends TokenType> impleme
      * Identifier for the token proxy
      * @serial
      */
-    @Getter(AccessLevel.NONE)
+    @Getter(AccessLevel.PACKAGE)
     private final UUID uuid = UUID.randomUUID();
 
     /**
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renews tokens in a {@link TokenRepository} in the background before they expire, so that requests do not fail with
+ * {@link com.hp.autonomy.hod.client.api.authentication.HodAuthenticationFailedException} while the application
+ * re-authenticates.
+ * <p/>
+ * HP Haven OnDemand returns a refreshed token with any request made after the start refresh time of a token, which is
+ * stored in the token repository by the {@link com.hp.autonomy.hod.client.config.Requester}. Each registered token
+ * is renewed at a random time in the first half of the period between its start refresh time and its expiry, limited
+ * by the maximum jitter, so that tokens which were created together are not all renewed at once. Tokens without a start
+ * refresh time are renewed halfway to their expiry.
+ * <p/>
+ * If a renewal fails or does not change the token, it is retried after the retry interval until the token expires. A
+ * token is unregistered when it expires or is removed from the repository.
+ * <p/>
+ * This class is thread safe
+ */
+@Slf4j
+public class TokenRefresher {
+
+    private final TokenRepository tokenRepository;
+    private final ScheduledExecutorService executor;
+    private final long maxJitterMillis;
+    private final long retryIntervalMillis;
+
+    private final ConcurrentMap<TokenProxy<?, ?>, Registration<?, ?>> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new TokenRefresher
+     * @param tokenRepository The token repository containing the tokens
+     * @param executor The executor used to schedule renewals
+     * @param maxJitter The maximum random delay added to the start of the renewal period
+     * @param retryInterval The time to wait before retrying a renewal which failed or did not change the token
+     */
+    public TokenRefresher(
+        final TokenRepository tokenRepository,
+        final ScheduledExecutorService executor,
+        final Duration maxJitter,
+        final Duration retryInterval
+    ) {
+        this.tokenRepository = tokenRepository;
+        this.executor = executor;
+        maxJitterMillis = maxJitter.getMillis();
+        retryIntervalMillis = retryInterval.getMillis();
+    }
+
+    /**
+     * Registers a token for renewal, replacing any existing registration for the token proxy. The token must already be
+     * in the token repository.
+     * @param tokenProxy The token proxy for the token
+     * @param renewer Renews the token
+     * @param <E> The entity type of the token
+     * @param <T> The token type of the token
+     * @throws IOException If an IO error occurred retrieving the token
+     * @throws IllegalArgumentException If the token is not in the repository
+     */
+    public <E extends EntityType, T extends TokenType> void register(final TokenProxy<E, T> tokenProxy, final Renewer<E, T> renewer) throws IOException {
+        final AuthenticationToken<E, T> token = tokenRepository.get(tokenProxy);
+
+        if (token == null) {
+            throw new IllegalArgumentException("Token proxy is not in the token repository");
+        }
+
+        final Registration<E, T> registration = new Registration<>(tokenProxy, renewer);
+        final Registration<?, ?> previous = registrations.put(tokenProxy, registration);
+
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        registration.schedule(token, renewalDelay(token));
+    }
+
+    /**
+     * Stops renewing the token for the token proxy. The token is not removed from the repository.
+     * @param tokenProxy The token proxy for the token
+     */
+    public void unregister(final TokenProxy<?, ?> tokenProxy) {
+        final Registration<?, ?> registration = registrations.remove(tokenProxy);
+
+        if (registration != null) {
+            registration.cancel();
+        }
+    }
+
+    /**
+     * Stops renewing all tokens
+     */
+    public void unregisterAll() {
+        for (final TokenProxy<?, ?> tokenProxy : registrations.keySet()) {
+            unregister(tokenProxy);
+        }
+    }
+
+    /**
+     * @return The number of tokens which are registered for renewal
+     */
+    public int size() {
+        return registrations.size();
+    }
+
+    private long renewalDelay(final AuthenticationToken<?, ?> token) {
+        final long now = DateTimeUtils.currentTimeMillis();
+        final long expiry = token.getExpiry().getMillis();
+
+        final long start = token.getStartRefresh() == null
+            ? now + (expiry - now) / 2
+            : Math.max(now, token.getStartRefresh().getMillis());
+
+        // renewing in the first half of the refresh period leaves time to retry before the token expires
+        final long jitter = Math.min(maxJitterMillis, Math.max(0, expiry - start) / 2);
+
+        return start - now + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+    }
+
+    private class Registration<E extends EntityType, T extends TokenType> implements Runnable {
+
+        private final TokenProxy<E, T> tokenProxy;
+        private final Renewer<E, T> renewer;
+
+        // guarded by this
+        private AuthenticationToken<E, T> token;
+        private ScheduledFuture<?> future;
+        private boolean cancelled;
+
+        private Registration(final TokenProxy<E, T> tokenProxy, final Renewer<E, T> renewer) {
+            this.tokenProxy = tokenProxy;
+            this.renewer = renewer;
+        }
+
+        @Override
+        public void run() {
+            final AuthenticationToken<E, T> previousToken;
+
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+
+                previousToken = token;
+            }
+
+            try {
+                final AuthenticationToken<E, T> renewedToken = renewer.renew(tokenProxy);
+
+                if (renewedToken != null) {
+                    tokenRepository.update(tokenProxy, renewedToken);
+                }
+
+                final AuthenticationToken<E, T> currentToken = tokenRepository.get(tokenProxy);
+
+                if (currentToken == null || currentToken.hasExpired()) {
+                    log.debug("Token is no longer in the repository; it will not be renewed");
+                    registrations.remove(tokenProxy, this);
+                } else if (currentToken.equals(previousToken)) {
+                    log.debug("Renewal did not change the token; retrying later");
+                    retry(currentToken);
+                } else {
+                    schedule(currentToken, renewalDelay(currentToken));
+                }
+            } catch (final HodErrorException | IOException | RuntimeException e) {
+                log.warn("Error renewing token; retrying later", e);
+                retry(previousToken);
+            }
+        }
+
+        private void retry(final AuthenticationToken<E, T> currentToken) {
+            if (currentToken.getExpiry().getMillis() - DateTimeUtils.currentTimeMillis() > retryIntervalMillis) {
+                schedule(currentToken, retryIntervalMillis);
+            } else {
+                log.warn("Token will expire before it can be renewed");
+                registrations.remove(tokenProxy, this);
+            }
+        }
+
+        private synchronized void schedule(final AuthenticationToken<E, T> currentToken, final long delayMillis) {
+            if (cancelled) {
+                return;
+            }
+
+            token = currentToken;
+
+            try {
+                future = executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException e) {
+                log.warn("Could not schedule token renewal", e);
+                registrations.remove(tokenProxy, this);
+            }
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Renews a token. Most renewers make a cheap request with the token proxy, such as retrieving token information,
+     * so that HP Haven OnDemand returns a refreshed token which is stored in the token repository. Renewers may instead
+     * authenticate again and return the new token.
+     * @param <E> The entity type of the token
+     * @param <T> The token type of the token
+     */
+    @FunctionalInterface
+    public interface Renewer<E extends EntityType, T extends TokenType> {
+
+        /**
+         * @param tokenProxy The token proxy for the token to renew
+         * @return A new token to store in the token repository, or null if the renewal has already updated the repository
+         * @throws HodErrorException If the renewal fails
+         */
+        AuthenticationToken<E, T> renew(TokenProxy<E, T> tokenProxy) throws HodErrorException;
+    }
+}
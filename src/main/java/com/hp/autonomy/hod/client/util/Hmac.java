@@ -7,39 +7,86 @@ package com.hp.autonomy.hod.client.util;
 
 import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
 import com.hp.autonomy.hod.client.api.authentication.TokenType;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.collections4.map.LRUMap;
+import retrofit.mime.TypedOutput;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * Generates the tokens for HMAC signed requests to Haven OnDemand.
+ *
+ * This class is thread safe. Each thread reuses its own MD5 digests and buffer, and its own HMAC SHA1 instances for
+ * the most recently used token secrets, so signing does not look up the algorithms or initialise the key on every
+ * request.
+ */
 public class Hmac {
     private static final String HMAC_SHA1 = "HmacSHA1";
-    private static final String UTF8 = "UTF-8";
     public static final String MD5 = "MD5";
 
-    private static final String COLON = ":";
+    private static final char COLON = ':';
     private static final String EMPTY = "";
-    private static final String NEW_LINE = "\n";
+    private static final char NEW_LINE = '\n';
+
+    // the number of token secrets for which each thread keeps an initialised HMAC SHA1 instance
+    private static final int MAX_CACHED_KEYS = 16;
+
+    // standard base64, except that '+' and '/' are replaced with '_' and '-' so that the output is valid in a URI
+    private static final char[] URI_BASE_64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_-".toCharArray();
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] LOWER_HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MD5_LENGTH = 16;
+
+    // the size of the buffer used to encode string values for hashing
+    private static final int BUFFER_SIZE = 8192;
+
+    // the characters which URLEncoder does not encode
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+
+        UNRESERVED['.'] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['*'] = true;
+        UNRESERVED['_'] = true;
+    }
+
+    private static final ThreadLocal<SigningState> SIGNING_STATE = ThreadLocal.withInitial(SigningState::new);
 
     /**
      * Generate the token header for an HMAC signed request to Haven OnDemand.
+     *
+     * Body values which are byte arrays are signed as they are, and values which are {@link TypedOutput}s are streamed
+     * into the signature, so they must support being written more than once. Other values are signed as the UTF-8 bytes
+     * of their string representations.
      * @param request The request to authenticate
      * @param token The HMAC SHA1 authentication token
      * @return The token parameter for the request
+     * @throws UncheckedIOException If a TypedOutput body value could not be read
      */
     public String generateToken(final Request<?, ?> request, final AuthenticationToken<?, TokenType.HmacSha1> token) {
         return generateTokenHelper(request, token);
@@ -51,24 +98,25 @@ public class Hmac {
         final String message = createMessage(request, bodyHash);
         final String signature = base64EncodeForUri(hmacSha1(message, token.getSecret()));
 
-        final List<String> components = Arrays.asList(
-            token.getType(),
-            token.getId(),
-            bodyHash,
-            signature
-        );
-
-        return StringUtils.join(components, COLON);
+        return new StringBuilder()
+            .append(token.getType()).append(COLON)
+            .append(token.getId()).append(COLON)
+            .append(bodyHash).append(COLON)
+            .append(signature)
+            .toString();
     }
 
     // Creates the representation of the request for HMAC signing, given a request and it's body hash
     private <Q, B> String createMessage(final Request<Q, B> request, final String bodyHash) {
-        final List<String> components = new LinkedList<>();
-        components.add(encodeVerb(request.getVerb()));
-        components.add(encodePath(request.getPath()));
-        components.addAll(encodeQueryParameters(request.getQueryParameters()));
-        components.add(urlEncode(bodyHash));
-        return StringUtils.join(components, NEW_LINE);
+        final StringBuilder builder = new StringBuilder();
+        builder.append(encodeVerb(request.getVerb())).append(NEW_LINE);
+        builder.append(encodePath(request.getPath())).append(NEW_LINE);
+
+        for (final String component : encodeQueryParameters(request.getQueryParameters())) {
+            builder.append(component).append(NEW_LINE);
+        }
+
+        return builder.append(urlEncode(bodyHash)).toString();
     }
 
     private <T> List<String> encodeQueryParameters(final Map<String, List<T>> queryParameters) {
@@ -79,25 +127,39 @@ public class Hmac {
         }
     }
 
+    /*
+        The body hash is the URI base64 encoded MD5 of the newline separated list of encoded keys and values, where each
+        value is encoded as the hex encoded MD5 of its bytes. The outer hash is computed incrementally, so the list is
+        never built, and values which are TypedOutputs are streamed into their hash.
+    */
     private <T> String createBodyHash(final Map<String, List<T>> body) {
         if (body == null || body.isEmpty()) {
             // If no body, the body hash must be the empty string
             return EMPTY;
         } else {
-            final List<String> components = encodeAndSpreadParameterMap(body, input -> {
-                final byte[] bytes;
+            final SigningState state = SIGNING_STATE.get();
+            final MessageDigest bodyDigest = state.bodyMd5;
+            bodyDigest.reset();
+
+            boolean first = true;
 
-                if (input instanceof byte[]) {
-                    bytes = (byte[]) input;
-                } else {
-                    bytes = bytesFromString(input.toString());
+            for (final Parameter parameter : sortParameters(body)) {
+                if (!first) {
+                    bodyDigest.update((byte) NEW_LINE);
                 }
 
-                return Hex.encodeHexString(md5Hash(bytes));
-            });
+                first = false;
 
-            final String bodyRepresentation = StringUtils.join(components, NEW_LINE);
-            return base64EncodeForUri(md5Hash(bytesFromString(bodyRepresentation)));
+                // encoded keys are ASCII
+                for (int i = 0; i < parameter.key.length(); i++) {
+                    bodyDigest.update((byte) parameter.key.charAt(i));
+                }
+
+                bodyDigest.update((byte) NEW_LINE);
+                bodyDigest.update(state.hashValue(parameter.value));
+            }
+
+            return base64EncodeForUri(bodyDigest.digest());
         }
     }
 
@@ -112,31 +174,40 @@ public class Hmac {
         => [uri(key2), encode(value21), uri(key1), encode(value11), uri(key1), encode(value12)]
     */
     private <T> List<String> encodeAndSpreadParameterMap(final Map<String, List<T>> parameterMap, final ValueEncoder encoder) {
-        final List<Parameter> parameters = new LinkedList<>();
+        final List<Parameter> parameters = sortParameters(parameterMap);
+        final List<String> components = new ArrayList<>(parameters.size() * 2);
+
+        for (final Parameter parameter : parameters) {
+            components.add(parameter.key);
+            components.add(encoder.encode(parameter.value));
+        }
+
+        return components;
+    }
+
+    // Returns the parameters with URI encoded keys, sorted by key but keeping the order of the values for each key
+    private <T> List<Parameter> sortParameters(final Map<String, List<T>> parameterMap) {
+        final List<Parameter> parameters = new ArrayList<>();
 
         for (final Map.Entry<String, List<T>> entry : parameterMap.entrySet()) {
             final String encodedKey = urlEncode(entry.getKey());
-            final List<?> values = entry.getValue();
 
-            parameters.addAll(values.stream().map(value -> new Parameter(encodedKey, encoder.encode(value))).collect(Collectors.toList()));
+            for (final Object value : entry.getValue()) {
+                parameters.add(new Parameter(encodedKey, value));
+            }
         }
 
         // Sort is guaranteed to be stable, so parameters for a given key will remain in the same order
         Collections.sort(parameters);
 
-        final List<String> components = new LinkedList<>();
-
-        for (final Parameter parameter : parameters) {
-            components.add(parameter.key);
-            components.add(parameter.value);
-        }
-
-        return components;
+        return parameters;
     }
 
     private String encodePath(final String path) {
         // Path must be url encoded and have no leading or trailing slashes
-        return urlEncode(path.replaceAll("^/|/$", EMPTY));
+        final int start = path.startsWith("/") ? 1 : 0;
+        final int end = Math.max(start, path.endsWith("/") ? path.length() - 1 : path.length());
+        return urlEncode(path.substring(start, end));
     }
 
     private String encodeVerb(final Request.Verb verb) {
@@ -144,60 +215,201 @@ public class Hmac {
     }
 
     private byte[] bytesFromString(final String input) {
-        try {
-            return input.getBytes(UTF8);
-        } catch (final UnsupportedEncodingException e) {
-            // This should never happen on a sensible JVM
-            throw new AssertionError("UTF8 is not supported", e);
-        }
+        return input.getBytes(StandardCharsets.UTF_8);
     }
 
     private String base64EncodeForUri(final byte[] bytes) {
-        // Some base64 characters are not valid in a URI
-        return Base64.encodeBase64String(bytes).replaceAll("=", EMPTY).replaceAll("/", "-").replaceAll("[+]", "_");
+        // Some base64 characters are not valid in a URI, so we use a different alphabet and omit the padding
+        final char[] output = new char[(bytes.length * 4 + 2) / 3];
+        int outputIndex = 0;
+        int i = 0;
+
+        for (; i + 2 < bytes.length; i += 3) {
+            final int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | bytes[i + 2] & 0xff;
+            output[outputIndex++] = URI_BASE_64[bits >>> 18];
+            output[outputIndex++] = URI_BASE_64[bits >>> 12 & 0x3f];
+            output[outputIndex++] = URI_BASE_64[bits >>> 6 & 0x3f];
+            output[outputIndex++] = URI_BASE_64[bits & 0x3f];
+        }
+
+        final int remaining = bytes.length - i;
+
+        if (remaining > 0) {
+            final int bits = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+            output[outputIndex++] = URI_BASE_64[bits >>> 18];
+            output[outputIndex++] = URI_BASE_64[bits >>> 12 & 0x3f];
+
+            if (remaining == 2) {
+                output[outputIndex] = URI_BASE_64[bits >>> 6 & 0x3f];
+            }
+        }
+
+        return new String(output);
     }
 
+    // Equivalent to URLEncoder.encode with UTF-8, except that space is encoded as %20, which Haven OnDemand expects
     private String urlEncode(final String input) {
-        try {
-            final String encode = URLEncoder.encode(input, UTF8);
+        final int length = input.length();
+        int firstEncoded = 0;
 
-            // Haven OnDemand expects space to be encoded as %20, not plus
-            return encode.replaceAll("\\+", "%20");
-        } catch (final UnsupportedEncodingException e) {
-            // This should never happen on a sensible JVM
-            throw new AssertionError("UTF8 is not supported", e);
+        while (firstEncoded < length && isUnreserved(input.charAt(firstEncoded))) {
+            firstEncoded++;
         }
-    }
 
-    private byte[] md5Hash(final byte[] input) {
-        try {
-            return MessageDigest.getInstance(MD5).digest(input);
-        } catch (final NoSuchAlgorithmException e) {
-            // This should never happen on a sensible JVM
-            throw new AssertionError("UTF8 or MD5 is not supported");
+        if (firstEncoded == length) {
+            return input;
         }
+
+        // unreserved characters are all ASCII, so have the same indices in the encoded bytes as in the input
+        final byte[] bytes = bytesFromString(input);
+        final StringBuilder builder = new StringBuilder(bytes.length + 16);
+        builder.append(input, 0, firstEncoded);
+
+        for (int i = firstEncoded; i < bytes.length; i++) {
+            final int b = bytes[i] & 0xff;
+
+            if (b < UNRESERVED.length && UNRESERVED[b]) {
+                builder.append((char) b);
+            } else {
+                builder.append('%').append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0xf]);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private boolean isUnreserved(final char c) {
+        return c < UNRESERVED.length && UNRESERVED[c];
     }
 
     private byte[] hmacSha1(final String message, final String secret) {
-        try {
-            final Mac mac = Mac.getInstance(HMAC_SHA1);
-            final Key key = new SecretKeySpec(bytesFromString(secret), HMAC_SHA1);
-            mac.init(key);
-            return mac.doFinal(bytesFromString(message));
-        } catch (final NoSuchAlgorithmException e) {
-            // This should never happen on a sensible JVM
-            throw new AssertionError("HMAC SHA1 is not supported", e);
-        } catch (final InvalidKeyException e) {
-            // In practice, this means that the token secret was invalid
-            throw new IllegalArgumentException("Invalid token secret", e);
+        return SIGNING_STATE.get().getMac(secret).doFinal(bytesFromString(message));
+    }
+
+    // The algorithm instances and buffers used by a single thread
+    private static class SigningState {
+        private final MessageDigest bodyMd5 = md5Digest();
+        private final MessageDigest valueMd5 = md5Digest();
+        private final Map<String, Mac> macs = new LRUMap<>(MAX_CACHED_KEYS);
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] hex = new byte[2 * MD5_LENGTH];
+
+        private final OutputStream valueMd5Stream = new OutputStream() {
+            @Override
+            public void write(final int b) {
+                valueMd5.update((byte) b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                valueMd5.update(b, off, len);
+            }
+        };
+
+        // Returns the lower case hex encoded MD5 of the bytes of the value, as ASCII bytes. The array is reused.
+        private byte[] hashValue(final Object value) {
+            // a previous request may have failed part way through
+            valueMd5.reset();
+
+            if (value instanceof byte[]) {
+                valueMd5.update((byte[]) value);
+            } else if (value instanceof TypedOutput) {
+                try {
+                    ((TypedOutput) value).writeTo(valueMd5Stream);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Could not read request body", e);
+                }
+            } else {
+                updateWithUtf8(value.toString());
+            }
+
+            final byte[] digest = valueMd5.digest();
+
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = LOWER_HEX_DIGITS[(digest[i] & 0xf0) >>> 4];
+                hex[2 * i + 1] = LOWER_HEX_DIGITS[digest[i] & 0xf];
+            }
+
+            return hex;
+        }
+
+        // Equivalent to updating with String.getBytes, without copying the whole string
+        private void updateWithUtf8(final String input) {
+            final int length = input.length();
+            int i = 0;
+
+            while (i < length) {
+                // each character takes at most three bytes, since four byte encodings come from surrogate pairs, but the
+                // last character in the chunk may be the first of a pair
+                final int end = Math.min(length, i + (buffer.length - 1) / 3);
+                int count = 0;
+
+                while (i < end) {
+                    final char c = input.charAt(i++);
+
+                    if (c < 0x80) {
+                        buffer[count++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buffer[count++] = (byte) (0xc0 | c >>> 6);
+                        buffer[count++] = (byte) (0x80 | c & 0x3f);
+                    } else if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(input.charAt(i))) {
+                        final int codePoint = Character.toCodePoint(c, input.charAt(i++));
+                        buffer[count++] = (byte) (0xf0 | codePoint >>> 18);
+                        buffer[count++] = (byte) (0x80 | codePoint >>> 12 & 0x3f);
+                        buffer[count++] = (byte) (0x80 | codePoint >>> 6 & 0x3f);
+                        buffer[count++] = (byte) (0x80 | codePoint & 0x3f);
+                    } else if (Character.isSurrogate(c)) {
+                        // unpaired surrogates are replaced, as they are by String.getBytes
+                        buffer[count++] = '?';
+                    } else {
+                        buffer[count++] = (byte) (0xe0 | c >>> 12);
+                        buffer[count++] = (byte) (0x80 | c >>> 6 & 0x3f);
+                        buffer[count++] = (byte) (0x80 | c & 0x3f);
+                    }
+                }
+
+                valueMd5.update(buffer, 0, count);
+            }
+        }
+
+        private static MessageDigest md5Digest() {
+            try {
+                return MessageDigest.getInstance(MD5);
+            } catch (final NoSuchAlgorithmException e) {
+                // This should never happen on a sensible JVM
+                throw new AssertionError("MD5 is not supported", e);
+            }
+        }
+
+        // Returns an HMAC SHA1 instance initialised with the secret. doFinal resets the instance to this state.
+        private Mac getMac(final String secret) {
+            Mac mac = macs.get(secret);
+
+            if (mac == null) {
+                try {
+                    mac = Mac.getInstance(HMAC_SHA1);
+                    mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA1));
+                } catch (final NoSuchAlgorithmException e) {
+                    // This should never happen on a sensible JVM
+                    throw new AssertionError("HMAC SHA1 is not supported", e);
+                } catch (final InvalidKeyException e) {
+                    // In practice, this means that the token secret was invalid
+                    throw new IllegalArgumentException("Invalid token secret", e);
+                }
+
+                macs.put(secret, mac);
+            }
+
+            return mac;
         }
     }
 
     private static class Parameter implements Comparable<Parameter> {
         private final String key;
-        private final String value;
+        private final Object value;
 
-        private Parameter(final String key, final String value) {
+        private Parameter(final String key, final Object value) {
             this.key = key;
             this.value = value;
         }
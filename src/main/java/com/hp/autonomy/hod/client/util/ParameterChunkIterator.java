@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.util;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator which groups the values of a multi-valued query parameter into chunks, so that each chunk can be sent to
+ * HP Haven OnDemand in its own request without exceeding the limits on the number of values or the length of the
+ * request.
+ * <p/>
+ * Values are read lazily from the underlying iterator, so this can be used with very large or streamed inputs. A value
+ * which exceeds the maximum length on its own will be returned in a chunk of its own.
+ * <p/>
+ * This class is not thread safe
+ */
+public class ParameterChunkIterator implements Iterator<List<String>> {
+
+    private static final String UTF8 = "UTF-8";
+
+    private final Iterator<String> values;
+    private final int parameterLength;
+    private final int maxValues;
+    private final int maxLength;
+
+    private String pending;
+
+    /**
+     * Creates a new ParameterChunkIterator
+     * @param values The parameter values to group into chunks
+     * @param parameterName The name of the query parameter the values will be sent as
+     * @param maxValues The maximum number of values in a chunk
+     * @param maxLength The maximum length of the URL encoded parameters in a chunk
+     * @throws IllegalArgumentException If maxValues or maxLength are not positive
+     */
+    public ParameterChunkIterator(final Iterator<String> values, final String parameterName, final int maxValues, final int maxLength) {
+        if (maxValues <= 0 || maxLength <= 0) {
+            throw new IllegalArgumentException("maxValues and maxLength must be positive");
+        }
+
+        this.values = values;
+        this.maxValues = maxValues;
+        this.maxLength = maxLength;
+
+        // each value is sent as &name=value
+        parameterLength = encodedLength(parameterName) + 2;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pending != null || values.hasNext();
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final List<String> chunk = new ArrayList<>();
+        int length = 0;
+
+        while (chunk.size() < maxValues && (pending != null || values.hasNext())) {
+            final String value = pending != null ? pending : values.next();
+            pending = null;
+
+            final int valueLength = parameterLength + encodedLength(value);
+
+            if (!chunk.isEmpty() && length + valueLength > maxLength) {
+                // save the value for the next chunk
+                pending = value;
+                break;
+            }
+
+            chunk.add(value);
+            length += valueLength;
+        }
+
+        return chunk;
+    }
+
+    private static int encodedLength(final String value) {
+        try {
+            return URLEncoder.encode(value, UTF8).length();
+        } catch (final UnsupportedEncodingException e) {
+            // This should never happen on a sensible JVM
+            throw new AssertionError("UTF8 is not supported", e);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.util;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.Duration;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cache of values loaded from HP Haven OnDemand, which serves stale values while they are refreshed in the background.
+ * <p/>
+ * A value is fresh until the refreshAfter duration has passed since it was loaded. After that it is still returned, but
+ * a background refresh is started on the executor. Once the expireAfter duration has passed the value is no longer
+ * returned, and the caller waits for it to be loaded again. If refreshAfter and expireAfter are equal, values are never
+ * returned stale.
+ * <p/>
+ * Only one load is made at a time for each key; other callers wait for the result of that load. The total weight of the
+ * cached values is kept below maxWeight by evicting the least recently used values.
+ * <p/>
+ * This class is thread safe
+ * @param <K> The type of the keys, which must implement equals and hashCode
+ * @param <V> The type of the values
+ */
+@Slf4j
+public class RefreshingCache<K, V> {
+
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final long maxWeight;
+    private final ToIntFunction<? super V> weigher;
+    private final Executor refreshExecutor;
+    private final LongSupplier nanoTime;
+
+    // guarded by this
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    // a load is only cached if its future is still here when it finishes; invalidating a key removes its future
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new RefreshingCache
+     * @param refreshAfter How long after loading a value is refreshed in the background
+     * @param expireAfter How long after loading a value is no longer returned
+     * @param maxWeight The maximum total weight of the cached values
+     * @param weigher Returns the weight of a value, which should be roughly proportional to the memory it uses
+     * @param refreshExecutor The executor used for background refreshes
+     * @throws IllegalArgumentException If expireAfter is shorter than refreshAfter
+     */
+    public RefreshingCache(
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxWeight,
+        final ToIntFunction<? super V> weigher,
+        final Executor refreshExecutor
+    ) {
+        this(refreshAfter, expireAfter, maxWeight, weigher, refreshExecutor, System::nanoTime);
+    }
+
+    RefreshingCache(
+        final Duration refreshAfter,
+        final Duration expireAfter,
+        final long maxWeight,
+        final ToIntFunction<? super V> weigher,
+        final Executor refreshExecutor,
+        final LongSupplier nanoTime
+    ) {
+        if (expireAfter.isShorterThan(refreshAfter)) {
+            throw new IllegalArgumentException("expireAfter must not be shorter than refreshAfter");
+        }
+
+        refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfter.getMillis());
+        expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(expireAfter.getMillis());
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.refreshExecutor = refreshExecutor;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Returns the cached value for the key, using the loader to load it if it is not cached or has expired. If the value
+     * is stale the loader is used to refresh it in the background.
+     * @param key The key
+     * @param loader Loads the value for the key
+     * @return The value for the key
+     * @throws HodErrorException If the value is not cached and the loader fails
+     */
+    public V get(final K key, final Loader<? extends V> loader) throws HodErrorException {
+        final Entry<V> entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null) {
+            final long age = nanoTime.getAsLong() - entry.loadedAt;
+
+            if (age < refreshAfterNanos) {
+                return entry.value;
+            } else if (age < expireAfterNanos) {
+                refreshInBackground(key, loader);
+                return entry.value;
+            }
+        }
+
+        return load(key, loader);
+    }
+
+    /**
+     * Adds a value to the cache, replacing any existing value for the key
+     * @param key The key
+     * @param value The value
+     */
+    public void put(final K key, final V value) {
+        final Entry<V> entry = new Entry<>(value, weigher.applyAsInt(value), nanoTime.getAsLong());
+
+        synchronized (this) {
+            final Entry<V> previous = entries.remove(key);
+
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+
+            // a value heavier than the whole cache would evict everything else, so it is not cached
+            if (entry.weight > maxWeight) {
+                return;
+            }
+
+            entries.put(key, entry);
+            totalWeight += entry.weight;
+
+            final Iterator<Entry<V>> iterator = entries.values().iterator();
+
+            while (totalWeight > maxWeight) {
+                totalWeight -= iterator.next().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the value for the key, so the next request for it will load it again
+     * @param key The key
+     */
+    public synchronized void invalidate(final K key) {
+        loading.remove(key);
+        final Entry<V> entry = entries.remove(key);
+
+        if (entry != null) {
+            totalWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Removes the values for all the keys which match the predicate
+     * @param predicate Returns true for the keys to remove
+     */
+    public synchronized void invalidateIf(final Predicate<? super K> predicate) {
+        loading.keySet().removeIf(predicate);
+        final Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<K, Entry<V>> entry = iterator.next();
+
+            if (predicate.test(entry.getKey())) {
+                totalWeight -= entry.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached values
+     */
+    public synchronized void invalidateAll() {
+        loading.clear();
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * @return The number of cached values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void refreshInBackground(final K key, final Loader<? extends V> loader) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+
+        // claiming the key before submitting the refresh stops concurrent callers submitting refreshes of their own
+        if (loading.putIfAbsent(key, future) == null) {
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        runLoad(key, loader, future);
+                    } catch (final HodErrorException | RuntimeException e) {
+                        // the stale value will be returned until it expires
+                        log.warn("Error refreshing cached value", e);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                loading.remove(key, future);
+                future.completeExceptionally(e);
+                log.warn("Could not start refresh of cached value", e);
+            }
+        }
+    }
+
+    private V load(final K key, final Loader<? extends V> loader) throws HodErrorException {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+
+        if (existing != null) {
+            return await(existing);
+        }
+
+        return runLoad(key, loader, future);
+    }
+
+    private V runLoad(final K key, final Loader<? extends V> loader, final CompletableFuture<V> future) throws HodErrorException {
+        try {
+            final V value = loader.load();
+
+            synchronized (this) {
+                // a value loaded before the key was invalidated may already be out of date, so it is returned but not cached
+                if (loading.get(key) == future) {
+                    put(key, value);
+                }
+            }
+
+            future.complete(value);
+            return value;
+        } catch (final HodErrorException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private V await(final CompletableFuture<V> future) throws HodErrorException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for value to load", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof HodErrorException) {
+                throw (HodErrorException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw (Error) cause;
+            }
+        }
+    }
+
+    /**
+     * Loads a value from HP Haven OnDemand
+     * @param <V> The type of the value
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+
+        /**
+         * @return The loaded value
+         * @throws HodErrorException If an error occurs loading the value
+         */
+        V load() throws HodErrorException;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final int weight;
+        private final long loadedAt;
+
+        private Entry(final V value, final int weight, final long loadedAt) {
+            this.value = value;
+            this.weight = weight;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -9,11 +9,14 @@ import lombok.Data;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 
+import java.io.Serializable;
 
 @Data
 @JsonDeserialize(builder = HodWarning.Builder.class)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
-public class HodWarning {
+public class HodWarning implements Serializable {
+
+    private static final long serialVersionUID = 2404683506217658213L;
 
     private final HodWarningCode code;
     private String details;
@@ -15,6 +15,12 @@ public enum HodWarningCode {
     PROCESSING_QUERY_MANIPULATION_PROMOTION_ERROR(40003),
     INVALID_QUERY_MANIPULATION_RULE_ACTIVATED(40004),
 
+    /**
+     * Added by the client, and never returned by Haven OnDemand, when indexes which did not respond in time are left out
+     * of the results of a query
+     */
+    INDEXES_DID_NOT_RESPOND(-2),
+
     /**
      * Default code used as a placeholder for codes returned by Haven OnDemand which are not yet enumerated
      */
@@ -34,6 +40,13 @@ public enum HodWarningCode {
         this.code = code;
     }
 
+    /**
+     * @return The numeric code used by Haven OnDemand for this warning
+     */
+    public int getCode() {
+        return code;
+    }
+
     public static HodWarningCode fromCode(final int code) {
         final HodWarningCode warningCode = LOOKUP.get(code);
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.analysis.autocomplete;
+
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingAutocompleteServiceTest {
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    private AutocompleteService autocompleteService;
+    private CachingAutocompleteService cachingService;
+
+    @Before
+    public void setUp() throws HodErrorException {
+        autocompleteService = mock(AutocompleteService.class);
+        cachingService = new CachingAutocompleteService(autocompleteService, 5, 100);
+
+        when(autocompleteService.getSuggestions("ca")).thenReturn(Arrays.asList("cat", "car", "cake"));
+        when(autocompleteService.getSuggestions("do")).thenReturn(Arrays.asList("dog", "door", "dot", "double", "down"));
+        when(autocompleteService.getSuggestions("dog")).thenReturn(Arrays.asList("dog", "dogs"));
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testCachesSuggestions() throws HodErrorException {
+        cachingService.getSuggestions("ca");
+        final List<String> suggestions = cachingService.getSuggestions("ca");
+
+        assertThat(suggestions, contains("cat", "car", "cake"));
+        verify(autocompleteService, times(1)).getSuggestions("ca");
+    }
+
+    @Test
+    public void testFiltersCompleteSuggestionsForLongerText() throws HodErrorException {
+        cachingService.getSuggestions("ca");
+
+        assertThat(cachingService.getSuggestions("cak"), contains("cake"));
+        assertThat(cachingService.getSuggestions("cat"), contains("cat"));
+        verify(autocompleteService, never()).getSuggestions("cak");
+    }
+
+    @Test
+    public void testDoesNotFilterIncompleteSuggestions() throws HodErrorException {
+        cachingService.getSuggestions("do");
+
+        assertThat(cachingService.getSuggestions("dog"), contains("dog", "dogs"));
+        verify(autocompleteService).getSuggestions("dog");
+    }
+
+    @Test
+    public void testDoesNotFilterSuggestionsWhichDoNotStartWithTheText() throws HodErrorException {
+        when(autocompleteService.getSuggestions("Ca")).thenReturn(Arrays.asList("cat", "car"));
+        when(autocompleteService.getSuggestions("Cat")).thenReturn(Arrays.asList("cat", "cats"));
+
+        cachingService.getSuggestions("Ca");
+
+        assertThat(cachingService.getSuggestions("Cat"), contains("cat", "cats"));
+    }
+
+    @Test
+    public void testClearsCacheWhenFull() throws HodErrorException {
+        final CachingAutocompleteService smallService = new CachingAutocompleteService(autocompleteService, 5, 1);
+
+        smallService.getSuggestions("ca");
+        smallService.getSuggestions("do");
+        smallService.getSuggestions("ca");
+
+        verify(autocompleteService, times(2)).getSuggestions("ca");
+    }
+
+    @Test
+    public void testSessionCancelsSupersededLookups() throws Exception {
+        final CachingAutocompleteService.Session session = cachingService.newSession(executorService, Duration.millis(50));
+
+        final CompletableFuture<List<String>> first = session.getSuggestions("d");
+        final CompletableFuture<List<String>> second = session.getSuggestions("do");
+
+        assertThat(second.get(1, TimeUnit.SECONDS), contains("dog", "door", "dot", "double", "down"));
+        assertThat(first.isCancelled(), is(true));
+        verify(autocompleteService, never()).getSuggestions("d");
+    }
+
+    @Test
+    public void testSessionAnswersCachedTextImmediately() throws Exception {
+        cachingService.getSuggestions("ca");
+        final CachingAutocompleteService.Session session = cachingService.newSession(executorService, Duration.standardHours(1));
+
+        final CompletableFuture<List<String>> result = session.getSuggestions("car");
+
+        assertThat(result.isDone(), is(true));
+        assertThat(result.get(), contains("car"));
+    }
+}
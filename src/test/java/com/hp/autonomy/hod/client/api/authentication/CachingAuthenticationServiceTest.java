@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.authentication;
+
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.CombinedTokenInformation;
+import com.hp.autonomy.hod.client.api.authentication.tokeninformation.UserTokenInformation;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.InMemoryTokenRepository;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenRepository;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingAuthenticationServiceTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private AuthenticationService authenticationService;
+    private TokenRepository tokenRepository;
+    private CachingAuthenticationService cachingService;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        authenticationService = mock(AuthenticationService.class);
+        tokenRepository = new InMemoryTokenRepository();
+        cachingService = new CachingAuthenticationService(authenticationService, tokenRepository, Duration.standardMinutes(5), 100);
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testCachesTokenInformation() throws HodErrorException {
+        final AuthenticationToken<EntityType.Combined, TokenType.Simple> token = combinedToken("secret");
+        final CombinedTokenInformation information = mock(CombinedTokenInformation.class);
+        when(authenticationService.getCombinedTokenInformation(token)).thenReturn(information);
+
+        cachingService.getCombinedTokenInformation(token);
+
+        assertThat(cachingService.getCombinedTokenInformation(combinedToken("secret")), is(sameInstance(information)));
+        verify(authenticationService, times(1)).getCombinedTokenInformation(token);
+    }
+
+    @Test
+    public void testDoesNotReturnInformationForTokensWithDifferentSecrets() throws HodErrorException {
+        final AuthenticationToken<EntityType.Combined, TokenType.Simple> token = combinedToken("secret");
+        final AuthenticationToken<EntityType.Combined, TokenType.Simple> otherToken = combinedToken("other-secret");
+        final CombinedTokenInformation otherInformation = mock(CombinedTokenInformation.class);
+
+        when(authenticationService.getCombinedTokenInformation(token)).thenReturn(mock(CombinedTokenInformation.class));
+        when(authenticationService.getCombinedTokenInformation(otherToken)).thenReturn(otherInformation);
+
+        cachingService.getCombinedTokenInformation(token);
+
+        assertThat(cachingService.getCombinedTokenInformation(otherToken), is(sameInstance(otherInformation)));
+    }
+
+    @Test
+    public void testDoesNotReturnCachedInformationForExpiredTokens() throws HodErrorException {
+        final AuthenticationToken<EntityType.Combined, TokenType.Simple> token = combinedToken("secret");
+        when(authenticationService.getCombinedTokenInformation(token)).thenReturn(mock(CombinedTokenInformation.class));
+
+        cachingService.getCombinedTokenInformation(token);
+        DateTimeUtils.setCurrentMillisFixed(NOW + Duration.standardMinutes(2).getMillis());
+        cachingService.getCombinedTokenInformation(token);
+
+        verify(authenticationService, times(2)).getCombinedTokenInformation(token);
+    }
+
+    @Test
+    public void testCachesTokenInformationForTokenProxies() throws HodErrorException, IOException {
+        final TokenProxy<EntityType.User, TokenType.Simple> tokenProxy = tokenRepository.insert(userToken());
+        final TokenProxy<EntityType.User, TokenType.Simple> otherTokenProxy = tokenRepository.insert(userToken());
+        final UserTokenInformation information = mock(UserTokenInformation.class);
+        when(authenticationService.getUserTokenInformation(tokenProxy)).thenReturn(information);
+
+        cachingService.getUserTokenInformation(tokenProxy);
+
+        // the cache is keyed on the token, not the token proxy
+        assertThat(cachingService.getUserTokenInformation(otherTokenProxy), is(sameInstance(information)));
+        verify(authenticationService, times(1)).getUserTokenInformation(tokenProxy);
+    }
+
+    @Test
+    public void testInvalidateRemovesCachedInformation() throws HodErrorException {
+        final AuthenticationToken<EntityType.Combined, TokenType.Simple> token = combinedToken("secret");
+        when(authenticationService.getCombinedTokenInformation(token)).thenReturn(mock(CombinedTokenInformation.class));
+
+        cachingService.getCombinedTokenInformation(token);
+        cachingService.invalidate(token);
+        cachingService.getCombinedTokenInformation(token);
+
+        verify(authenticationService, times(2)).getCombinedTokenInformation(token);
+    }
+
+    private AuthenticationToken<EntityType.Combined, TokenType.Simple> combinedToken(final String secret) {
+        return new AuthenticationToken<>(EntityType.Combined.INSTANCE, TokenType.Simple.INSTANCE, new DateTime(NOW + 60000), "id", secret, null);
+    }
+
+    private AuthenticationToken<EntityType.User, TokenType.Simple> userToken() {
+        return new AuthenticationToken<>(EntityType.User.INSTANCE, TokenType.Simple.INSTANCE, new DateTime(NOW + 60000), "user-id", "secret", null);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.queryprofile;
+
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.api.resource.ResourceUuid;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingQueryProfileServiceTest {
+
+    private static final ResourceName PROFILE = new ResourceName("domain", "profile");
+
+    private final List<Runnable> backgroundTasks = new ArrayList<>();
+    private final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+    private final TokenProxyService<EntityType.Application, TokenType.Simple> tokenProxyService = () -> tokenProxy;
+
+    private QueryProfileService queryProfileService;
+    private CachingQueryProfileService cachingService;
+
+    @Before
+    public void setUp() throws HodErrorException {
+        queryProfileService = mock(QueryProfileService.class);
+        cachingService = new CachingQueryProfileService(queryProfileService, tokenProxyService, Duration.standardMinutes(1), Duration.standardMinutes(5), 100, backgroundTasks::add);
+
+        when(queryProfileService.retrieveQueryProfile(eq(tokenProxy), any(ResourceIdentifier.class)))
+            .thenReturn(profile("first"))
+            .thenReturn(profile("second"));
+    }
+
+    @Test
+    public void testCachesRetrievedProfiles() throws HodErrorException {
+        cachingService.retrieveQueryProfile(PROFILE);
+
+        assertThat(cachingService.retrieveQueryProfile(new ResourceName("domain", "profile")).getDescription(), is("first"));
+        verify(queryProfileService, times(1)).retrieveQueryProfile(eq(tokenProxy), any(ResourceIdentifier.class));
+    }
+
+    @Test
+    public void testUpdateReplacesCachedProfileInBackground() throws HodErrorException {
+        cachingService.retrieveQueryProfile(PROFILE);
+        cachingService.updateQueryProfile(PROFILE, "index", new QueryProfileRequestBuilder().setDescription("second"));
+
+        verify(queryProfileService).updateQueryProfile(eq(tokenProxy), any(ResourceIdentifier.class), anyString(), any(QueryProfileRequestBuilder.class));
+        assertThat(backgroundTasks.size(), is(1));
+
+        backgroundTasks.get(0).run();
+
+        assertThat(cachingService.retrieveQueryProfile(PROFILE).getDescription(), is("second"));
+        verify(queryProfileService, times(2)).retrieveQueryProfile(eq(tokenProxy), any(ResourceIdentifier.class));
+    }
+
+    @Test
+    public void testDeleteRemovesCachedProfile() throws HodErrorException {
+        cachingService.retrieveQueryProfile(PROFILE);
+        cachingService.deleteQueryProfile(PROFILE);
+
+        assertThat(cachingService.retrieveQueryProfile(PROFILE).getDescription(), is("second"));
+    }
+
+    @Test
+    public void testParsedNamesShareCachedProfile() throws HodErrorException {
+        final ResourceName escaped = new ResourceName("domain:x", "profile");
+        cachingService.retrieveQueryProfile(escaped);
+
+        assertThat(cachingService.retrieveQueryProfile(new ResourceName(escaped.toString())).getDescription(), is("first"));
+        verify(queryProfileService, times(1)).retrieveQueryProfile(eq(tokenProxy), any(ResourceIdentifier.class));
+    }
+
+    @Test
+    public void testDoesNotShareProfilesBetweenTokenProxies() throws HodErrorException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> otherTokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+        when(queryProfileService.retrieveQueryProfile(eq(otherTokenProxy), any(ResourceIdentifier.class))).thenReturn(profile("other"));
+
+        cachingService.retrieveQueryProfile(tokenProxy, PROFILE);
+
+        assertThat(cachingService.retrieveQueryProfile(otherTokenProxy, PROFILE).getDescription(), is("other"));
+    }
+
+    @Test
+    public void testUpdateRemovesProfileCachedForOtherTokenProxies() throws HodErrorException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> otherTokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+        when(queryProfileService.retrieveQueryProfile(eq(otherTokenProxy), any(ResourceIdentifier.class)))
+            .thenReturn(profile("other first"))
+            .thenReturn(profile("other second"));
+
+        cachingService.retrieveQueryProfile(otherTokenProxy, PROFILE);
+        cachingService.updateQueryProfile(tokenProxy, PROFILE, "index", new QueryProfileRequestBuilder());
+
+        assertThat(cachingService.retrieveQueryProfile(otherTokenProxy, PROFILE).getDescription(), is("other second"));
+    }
+
+    @Test
+    public void testUuidsAreNotCached() throws HodErrorException {
+        final ResourceUuid uuid = new ResourceUuid(UUID.randomUUID());
+        cachingService.retrieveQueryProfile(tokenProxy, uuid);
+        cachingService.retrieveQueryProfile(tokenProxy, uuid);
+
+        verify(queryProfileService, times(2)).retrieveQueryProfile(tokenProxy, uuid);
+    }
+
+    @Test
+    public void testUpdateByUuidRemovesAllCachedProfiles() throws HodErrorException {
+        final ResourceUuid uuid = new ResourceUuid(UUID.randomUUID());
+        cachingService.retrieveQueryProfile(PROFILE);
+        cachingService.updateQueryProfile(uuid, "index", new QueryProfileRequestBuilder());
+
+        verify(queryProfileService).updateQueryProfile(uuid, "index", new QueryProfileRequestBuilder());
+        assertThat(backgroundTasks.isEmpty(), is(true));
+        assertThat(cachingService.retrieveQueryProfile(PROFILE).getDescription(), is("second"));
+    }
+
+    @Test
+    public void testDeleteByUuidRemovesAllCachedProfiles() throws HodErrorException {
+        cachingService.retrieveQueryProfile(PROFILE);
+        cachingService.deleteQueryProfile(tokenProxy, new ResourceUuid(UUID.randomUUID()));
+
+        assertThat(cachingService.retrieveQueryProfile(PROFILE).getDescription(), is("second"));
+    }
+
+    @Test
+    public void testCreateRemovesCachedProfileWithTheSameName() throws HodErrorException {
+        cachingService.retrieveQueryProfile(PROFILE);
+        cachingService.createQueryProfile(tokenProxy, "profile", "index", new QueryProfileRequestBuilder());
+
+        assertThat(cachingService.retrieveQueryProfile(PROFILE).getDescription(), is("second"));
+    }
+
+    @Test
+    public void testCreateIsPassedThrough() throws HodErrorException {
+        final QueryProfileRequestBuilder params = new QueryProfileRequestBuilder();
+        cachingService.createQueryProfile("profile", "index", params);
+
+        verify(queryProfileService).createQueryProfile("profile", "index", params);
+    }
+
+    private QueryProfile profile(final String description) {
+        return new QueryProfile.Builder()
+            .setName("profile")
+            .setDescription(description)
+            .build();
+    }
+}
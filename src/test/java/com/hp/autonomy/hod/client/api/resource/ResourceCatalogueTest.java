@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.resource;
+
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceCatalogueTest {
+
+    private final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+    private final TokenProxyService<EntityType.Application, TokenType.Simple> tokenProxyService = () -> tokenProxy;
+
+    private ResourcesService resourcesService;
+    private ResourceCatalogue catalogue;
+
+    @Before
+    public void setUp() throws HodErrorException {
+        resourcesService = mock(ResourcesService.class);
+        catalogue = new ResourceCatalogue(resourcesService, tokenProxyService, Duration.standardMinutes(1), Duration.standardMinutes(5), 10, Runnable::run);
+
+        when(resourcesService.list(eq(tokenProxy), any(ListResourcesRequestBuilder.class))).then(invocation -> Arrays.asList(
+            details("private", "first", ResourceType.TEXT_INDEX),
+            details("private", "second", ResourceType.TEXT_INDEX),
+            details("PUBLIC_INDEXES", "wiki_eng", ResourceType.TEXT_INDEX),
+            details("private", "profile", ResourceType.QUERY_PROFILE)
+        ));
+    }
+
+    @Test
+    public void testIndexesResourcesByTypeAndDomain() throws HodErrorException {
+        final ResourceCatalogue.Snapshot snapshot = catalogue.getSnapshot();
+
+        assertThat(snapshot.getResourceNames(ResourceType.TEXT_INDEX, "private"), contains(new ResourceName("private", "first"), new ResourceName("private", "second")));
+        assertThat(snapshot.getResourceNames(ResourceType.TEXT_INDEX), containsInAnyOrder(new ResourceName("private", "first"), new ResourceName("private", "second"), ResourceName.WIKI_ENG));
+        assertThat(snapshot.getResourceNames(ResourceType.QUERY_PROFILE, "PUBLIC_INDEXES"), is(empty()));
+        assertThat(snapshot.getResourceNames(ResourceType.CONNECTOR), is(empty()));
+        assertThat(snapshot.getDomains(ResourceType.TEXT_INDEX), containsInAnyOrder("private", "PUBLIC_INDEXES"));
+        assertThat(snapshot.getDetails(new ResourceName("private", "profile")).getType(), is(ResourceType.QUERY_PROFILE));
+        assertThat(snapshot.contains(new ResourceName("private", "missing")), is(false));
+    }
+
+    @Test
+    public void testCachesSnapshot() throws HodErrorException {
+        final ResourceCatalogue.Snapshot snapshot = catalogue.getSnapshot();
+
+        assertThat(catalogue.getSnapshot(), is(sameInstance(snapshot)));
+        verify(resourcesService, times(1)).list(eq(tokenProxy), any(ListResourcesRequestBuilder.class));
+    }
+
+    @Test
+    public void testNamesAreInternedAcrossSnapshots() throws HodErrorException {
+        final List<ResourceName> first = catalogue.getSnapshot().getResourceNames(ResourceType.TEXT_INDEX, "private");
+        catalogue.clear();
+        final List<ResourceName> second = catalogue.getSnapshot().getResourceNames(ResourceType.TEXT_INDEX, "private");
+
+        assertThat(second.get(0), is(sameInstance(first.get(0))));
+        assertThat(catalogue.intern(new ResourceName("private", "second")), is(sameInstance(first.get(1))));
+        verify(resourcesService, times(2)).list(eq(tokenProxy), any(ListResourcesRequestBuilder.class));
+    }
+
+    @Test
+    public void testRefreshesUseTheTokenProxyFromTheCallingThread() throws HodErrorException {
+        final AtomicReference<TokenProxy<EntityType.Application, TokenType.Simple>> currentTokenProxy = new AtomicReference<>(tokenProxy);
+        final TokenProxyService<EntityType.Application, TokenType.Simple> currentTokenProxyService = currentTokenProxy::get;
+        final List<Runnable> refreshes = new ArrayList<>();
+        catalogue = new ResourceCatalogue(resourcesService, currentTokenProxyService, Duration.ZERO, Duration.standardMinutes(5), 10, refreshes::add);
+
+        catalogue.getSnapshot();
+        catalogue.getSnapshot();
+
+        // the token proxy service on the refresh executor may not be able to find the token proxy for the request
+        currentTokenProxy.set(null);
+        refreshes.get(0).run();
+
+        verify(resourcesService, times(2)).list(eq(tokenProxy), any(ListResourcesRequestBuilder.class));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReturnedListsAreUnmodifiable() throws HodErrorException {
+        catalogue.getSnapshot().getResourceNames(ResourceType.TEXT_INDEX).addAll(Collections.singletonList(ResourceName.WIKI_FRA));
+    }
+
+    private ResourceDetails details(final String domain, final String name, final ResourceType type) {
+        final Resource resource = Resource.builder().domain(domain).name(name).build();
+        return new ResourceDetails(resource, null, type, null, name);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of converting lists of 100 indexes to and from the strings sent to HOD. This is not run as part of
+ * the build; run the main method with the test classpath.
+ */
+public class ResourceNameBenchmark {
+
+    private static final int INDEXES = 100;
+    private static final int WARM_UP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    // prevents the JIT removing the measured work
+    private static int sink;
+
+    public static void main(final String[] args) {
+        final List<ResourceName> names = new ArrayList<>();
+        final List<String> identifiers = new ArrayList<>();
+
+        for (int i = 0; i < INDEXES; i++) {
+            // a tenth of the names need escaping
+            final ResourceName name = new ResourceName("domain-" + (i % 5), i % 10 == 0 ? "index:" + i : "index-" + i);
+            names.add(name);
+            identifiers.add(name.toString());
+        }
+
+        for (int round = 0; round < 2; round++) {
+            final boolean report = round == 1;
+            final int iterations = report ? ITERATIONS : WARM_UP_ITERATIONS;
+
+            measure("toString of existing names", iterations, report, () -> {
+                for (final ResourceName name : names) {
+                    sink += name.toString().length();
+                }
+            });
+
+            measure("toString of new names", iterations, report, () -> {
+                for (final ResourceName name : names) {
+                    sink += new ResourceName(name.getDomain(), name.getName()).toString().length();
+                }
+            });
+
+            measure("parse identifiers", iterations, report, () -> {
+                for (final String identifier : identifiers) {
+                    sink += new ResourceName(identifier).getName().length();
+                }
+            });
+        }
+    }
+
+    private static void measure(final String description, final int iterations, final boolean report, final Runnable runnable) {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            runnable.run();
+        }
+
+        if (report) {
+            final double nanosPerList = (double) (System.nanoTime() - start) / iterations;
+            System.out.printf("%-30s %10.0f ns per %d indexes%n", description, nanosPerList, INDEXES);
+        }
+    }
+}
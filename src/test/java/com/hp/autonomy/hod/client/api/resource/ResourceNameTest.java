@@ -5,6 +5,8 @@
 
 package com.hp.autonomy.hod.client.api.resource;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -173,6 +175,40 @@ public class ResourceNameTest {
         new ResourceName("domain:");
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void constructWithUnescapedBackslashInDomainThrowsIllegalArgumentException() {
+        new ResourceName("dom\\ain:name");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructWithLineBreakInNameThrowsIllegalArgumentException() {
+        new ResourceName("domain:na\nme");
+    }
+
+    @Test
+    public void fromStringKeepsUnescapedBackslashInName() {
+        testFromString("domain:na\\me", "domain", "na\\me");
+    }
+
+    @Test
+    public void toStringIsStableAndDoesNotAffectEquality() {
+        final ResourceName resourceName = new ResourceName("do:main", "name");
+        final String string = resourceName.toString();
+
+        assertThat(resourceName.toString(), is(string));
+        assertThat(resourceName, is(new ResourceName("do:main", "name")));
+        assertThat(resourceName.hashCode(), is(new ResourceName("do:main", "name").hashCode()));
+    }
+
+    @Test
+    public void jsonCannotSetTheEscapedForm() throws IOException {
+        // configured like the client's object mapper, which ignores unknown properties
+        final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        final ResourceName resourceName = objectMapper.readValue("{\"domain\": \"domain\", \"name\": \"name\", \"escaped\": \"other:name\"}", ResourceName.class);
+
+        assertThat(resourceName.toString(), is("domain:name"));
+    }
+
     @Test
     public void testSerialization() throws IOException, ClassNotFoundException {
         final ResourceName resourceName = new ResourceName("domain", "name");
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AdaptiveBatchSizerTest {
+
+    private AdaptiveBatchSizer batchSizer;
+
+    @Before
+    public void setUp() {
+        batchSizer = new AdaptiveBatchSizer(100, 1000, 400, 50, Duration.standardSeconds(10));
+    }
+
+    @Test
+    public void testFastBatchesIncreaseSizeUpToMaximum() {
+        batchSizer.onSuccess(Duration.standardSeconds(1));
+        assertThat(batchSizer.getBatchBytes(), is(450));
+
+        for (int i = 0; i < 20; i++) {
+            batchSizer.onSuccess(Duration.standardSeconds(1));
+        }
+
+        assertThat(batchSizer.getBatchBytes(), is(1000));
+    }
+
+    @Test
+    public void testSlowBatchHalvesSize() {
+        batchSizer.onSuccess(Duration.standardSeconds(11));
+
+        assertThat(batchSizer.getBatchBytes(), is(200));
+    }
+
+    @Test
+    public void testTimeoutHalvesSizeDownToMinimum() {
+        batchSizer.onTimeout();
+        batchSizer.onTimeout();
+        batchSizer.onTimeout();
+
+        assertThat(batchSizer.getBatchBytes(), is(100));
+    }
+
+    @Test
+    public void testSizeErrorHalvesSize() {
+        assertThat(batchSizer.onError(HodErrorCode.MULTIPART_REQUEST_TOO_BIG), is(true));
+        assertThat(batchSizer.getBatchBytes(), is(200));
+    }
+
+    @Test
+    public void testOtherErrorsDoNotChangeSize() {
+        assertThat(batchSizer.onError(HodErrorCode.INDEX_FULL), is(false));
+        assertThat(batchSizer.getBatchBytes(), is(400));
+    }
+
+    @Test
+    public void testBackendFailuresDoNotChangeSize() {
+        assertThat(batchSizer.onError(HodErrorCode.BACKEND_REQUEST_FAILED), is(false));
+        assertThat(batchSizer.getBatchBytes(), is(400));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialSizeMustBeWithinLimits() {
+        new AdaptiveBatchSizer(100, 1000, 2000, 50, Duration.standardSeconds(10));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.config.HodServiceConfig;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.job.HodJobCallback;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.RestAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AddToTextIndexPollingServiceTest {
+
+    private static final ResourceName INDEX = new ResourceName("domain", "index");
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<String> indexedReferences = new ArrayList<>();
+
+    private int maxBatchDocuments = 2;
+    private HodErrorCode errorForLargeBatches = HodErrorCode.INPUT_TOO_LONG;
+    private HodErrorCode errorCode;
+    private AddToTextIndexResponse response;
+    private AddToTextIndexPollingService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        final HodServiceConfig<?, TokenType.Simple> config = mock(HodServiceConfig.class);
+        when(config.getRestAdapter()).thenReturn(mock(RestAdapter.class));
+        when(config.getObjectMapper()).thenReturn(new ObjectMapper());
+
+        // completes each job immediately, failing any batch with more than the maximum number of documents
+        service = new AddToTextIndexPollingService(config, mock(ScheduledExecutorService.class)) {
+            @Override
+            public void addJsonToTextIndex(
+                final Documents<?> documents,
+                final ResourceIdentifier index,
+                final AddToTextIndexRequestBuilder params,
+                final HodJobCallback<AddToTextIndexResponse> callback
+            ) {
+                batchSizes.add(documents.getDocuments().size());
+
+                if (documents.getDocuments().size() > maxBatchDocuments) {
+                    callback.error(errorForLargeBatches);
+                    return;
+                }
+
+                final List<AddToTextIndexReference> references = new ArrayList<>();
+
+                for (final Object document : documents.getDocuments()) {
+                    final String reference = String.valueOf(((RawValue) document).rawValue());
+                    indexedReferences.add(reference);
+                    references.add(new AddToTextIndexReference.Builder().setReference(reference).build());
+                }
+
+                callback.success(new AddToTextIndexResponse.Builder().setIndex(index.toString()).setReferences(references).build());
+            }
+        };
+    }
+
+    @Test
+    public void testBatchWhichIsTooLargeIsRetriedInHalves() {
+        addInBatches(Arrays.asList(1, 2, 3, 4));
+
+        assertThat(batchSizes, contains(4, 2, 2));
+        assertThat(errorCode, is(nullValue()));
+        assertThat(indexedReferences, contains("1", "2", "3", "4"));
+        assertThat(references(response), contains("1", "2", "3", "4"));
+    }
+
+    @Test
+    public void testSingleDocumentWhichIsTooLargeFails() {
+        maxBatchDocuments = 0;
+
+        addInBatches(Arrays.asList(1, 2));
+
+        // the first half cannot be split any further, so the remaining half is never sent
+        assertThat(batchSizes, contains(2, 1));
+        assertThat(errorCode, is(HodErrorCode.INPUT_TOO_LONG));
+        assertThat(response, is(nullValue()));
+    }
+
+    @Test
+    public void testBackendFailuresAreNotRetried() {
+        errorForLargeBatches = HodErrorCode.BACKEND_REQUEST_FAILED;
+
+        addInBatches(Arrays.asList(1, 2, 3, 4));
+
+        assertThat(batchSizes, contains(4));
+        assertThat(errorCode, is(HodErrorCode.BACKEND_REQUEST_FAILED));
+        assertThat(response, is(nullValue()));
+    }
+
+    private void addInBatches(final List<?> documents) {
+        service.addJsonToTextIndexInBatches(documents, INDEX, new AddToTextIndexRequestBuilder(), batchSizer(), callback());
+    }
+
+    // large enough to put all the documents in a single batch
+    private AdaptiveBatchSizer batchSizer() {
+        return new AdaptiveBatchSizer(100, 1000, 1000, 50, Duration.standardSeconds(10));
+    }
+
+    private HodJobCallback<AddToTextIndexResponse> callback() {
+        return new HodJobCallback<AddToTextIndexResponse>() {
+            @Override
+            public void success(final AddToTextIndexResponse result) {
+                response = result;
+            }
+
+            @Override
+            public void error(final HodErrorCode error) {
+                errorCode = error;
+            }
+
+            @Override
+            public void timeout() {
+                throw new AssertionError("Unexpected timeout");
+            }
+
+            @Override
+            public void handleException(final RuntimeException exception) {
+                throw exception;
+            }
+        };
+    }
+
+    private List<String> references(final AddToTextIndexResponse response) {
+        final List<String> references = new ArrayList<>();
+
+        for (final AddToTextIndexReference reference : response.getReferences()) {
+            references.add(reference.getReference());
+        }
+
+        return references;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.job.HodJobCallback;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class BulkDeleteSubmitterTest {
+
+    private static final ResourceName INDEX = new ResourceName("domain", "index");
+
+    private final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+    private final List<List<String>> submittedChunks = new ArrayList<>();
+    private final List<HodJobCallback<DeleteFromTextIndexResponse>> pendingCallbacks = new ArrayList<>();
+    private final List<TokenProxy<?, TokenType.Simple>> usedTokenProxies = new ArrayList<>();
+
+    private HodJobCallback<DeleteFromTextIndexResponse> callback;
+    private DeleteFromTextIndexService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        callback = mock(HodJobCallback.class);
+
+        // records each delete job so that the tests can decide when it finishes
+        service = new DeleteFromTextIndexService() {
+            @Override
+            public void deleteReferencesFromTextIndex(
+                final ResourceIdentifier index,
+                final List<String> references,
+                final HodJobCallback<DeleteFromTextIndexResponse> callback
+            ) {
+                deleteReferencesFromTextIndex(null, index, references, callback);
+            }
+
+            @Override
+            public void deleteReferencesFromTextIndex(
+                final TokenProxy<?, TokenType.Simple> tokenProxy,
+                final ResourceIdentifier index,
+                final List<String> references,
+                final HodJobCallback<DeleteFromTextIndexResponse> callback
+            ) {
+                usedTokenProxies.add(tokenProxy);
+                submittedChunks.add(references);
+                pendingCallbacks.add(callback);
+            }
+
+            @Override
+            public void deleteAllDocumentsFromTextIndex(final ResourceIdentifier index, final HodJobCallback<DeleteFromTextIndexResponse> callback) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void deleteAllDocumentsFromTextIndex(
+                final TokenProxy<?, TokenType.Simple> tokenProxy,
+                final ResourceIdentifier index,
+                final HodJobCallback<DeleteFromTextIndexResponse> callback
+            ) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    public void testSplitsReferencesByCount() {
+        service.bulkDeleteReferencesFromTextIndex(INDEX, references(7), new BulkDeleteRequestBuilder().setMaxReferencesPerRequest(3), callback);
+        finishAll();
+
+        assertThat(submittedChunks, contains(
+            Arrays.asList("ref0", "ref1", "ref2"),
+            Arrays.asList("ref3", "ref4", "ref5"),
+            Collections.singletonList("ref6")
+        ));
+    }
+
+    @Test
+    public void testSplitsReferencesByLength() {
+        // each reference is sent as &index_reference=refN, which is 21 characters
+        final BulkDeleteRequestBuilder params = new BulkDeleteRequestBuilder().setMaxRequestLength(50);
+
+        service.bulkDeleteReferencesFromTextIndex(INDEX, references(5), params, callback);
+        finishAll();
+
+        assertThat(submittedChunks, contains(
+            Arrays.asList("ref0", "ref1"),
+            Arrays.asList("ref2", "ref3"),
+            Collections.singletonList("ref4")
+        ));
+    }
+
+    @Test
+    public void testLimitsConcurrentRequests() {
+        final BulkDeleteRequestBuilder params = new BulkDeleteRequestBuilder()
+            .setMaxReferencesPerRequest(1)
+            .setMaxConcurrentRequests(2);
+
+        service.bulkDeleteReferencesFromTextIndex(tokenProxy, INDEX, references(4), params, callback);
+
+        assertThat(submittedChunks.size(), is(2));
+
+        pendingCallbacks.get(0).success(response(1));
+
+        assertThat(submittedChunks.size(), is(3));
+        assertThat(usedTokenProxies, contains(sameInstance(tokenProxy), sameInstance(tokenProxy), sameInstance(tokenProxy)));
+    }
+
+    @Test
+    public void testCombinesResponses() {
+        service.bulkDeleteReferencesFromTextIndex(INDEX, references(5), new BulkDeleteRequestBuilder().setMaxReferencesPerRequest(2), callback);
+        finishAll();
+
+        final ArgumentCaptor<DeleteFromTextIndexResponse> captor = ArgumentCaptor.forClass(DeleteFromTextIndexResponse.class);
+        verify(callback).success(captor.capture());
+
+        assertThat(captor.getValue().getDocumentsDeleted(), is(5));
+        assertThat(captor.getValue().getIndex(), is(INDEX.toString()));
+    }
+
+    @Test
+    public void testReportsFirstError() {
+        final BulkDeleteRequestBuilder params = new BulkDeleteRequestBuilder()
+            .setMaxReferencesPerRequest(1)
+            .setMaxConcurrentRequests(2);
+
+        service.bulkDeleteReferencesFromTextIndex(INDEX, references(4), params, callback);
+
+        pendingCallbacks.get(0).error(HodErrorCode.BACKEND_REQUEST_FAILED);
+        pendingCallbacks.get(1).success(response(1));
+
+        assertThat(submittedChunks.size(), is(2));
+        verify(callback).error(HodErrorCode.BACKEND_REQUEST_FAILED);
+        verify(callback, never()).success(any(DeleteFromTextIndexResponse.class));
+    }
+
+    @Test
+    public void testClosesStreamWhenFinished() {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final Stream<String> references = IntStream.range(0, 3).mapToObj(i -> "ref" + i).onClose(() -> closed.set(true));
+
+        service.bulkDeleteReferencesFromTextIndex(INDEX, references, new BulkDeleteRequestBuilder().setMaxReferencesPerRequest(1).setMaxConcurrentRequests(1), callback);
+
+        assertThat(closed.get(), is(false));
+
+        finishAll();
+
+        assertThat(closed.get(), is(true));
+        assertThat(submittedChunks.size(), is(3));
+        verify(callback).success(any(DeleteFromTextIndexResponse.class));
+    }
+
+    @Test
+    public void testClosesStreamWhenStartFails() {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final Stream<String> references = Stream.of("ref0").onClose(() -> closed.set(true));
+
+        try {
+            service.bulkDeleteReferencesFromTextIndex(tokenProxy, INDEX, references, new BulkDeleteRequestBuilder().setMaxReferencesPerRequest(0), callback);
+            fail("Expected IllegalArgumentException");
+        } catch (final IllegalArgumentException e) {
+            assertThat(closed.get(), is(true));
+        }
+    }
+
+    // finishes each job in turn, including those submitted as earlier jobs finish
+    private void finishAll() {
+        for (int i = 0; i < pendingCallbacks.size(); i++) {
+            pendingCallbacks.get(i).success(response(submittedChunks.get(i).size()));
+        }
+    }
+
+    private static Iterable<String> references(final int count) {
+        final List<String> references = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            references.add("ref" + i);
+        }
+
+        return references;
+    }
+
+    private static DeleteFromTextIndexResponse response(final int documentsDeleted) {
+        return new DeleteFromTextIndexResponse.Builder()
+            .setIndex(INDEX.toString())
+            .setDocumentsDeleted(documentsDeleted)
+            .build();
+    }
+}
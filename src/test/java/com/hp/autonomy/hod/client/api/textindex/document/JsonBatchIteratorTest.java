@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.document;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+public class JsonBatchIteratorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testBatchesBySerializedSize() {
+        // each string serializes to 5 bytes including the quotes
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(10, 100, 10, 10, Duration.standardSeconds(10));
+        final List<List<String>> batches = batch(Arrays.asList("abc", "def", "ghi", "jkl", "mno"), batchSizer);
+
+        assertThat(batches, contains(Arrays.asList("\"abc\"", "\"def\""), Arrays.asList("\"ghi\"", "\"jkl\""), Arrays.asList("\"mno\"")));
+    }
+
+    @Test
+    public void testOversizedDocumentIsSentAlone() {
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(1, 100, 1, 10, Duration.standardSeconds(10));
+        final List<List<String>> batches = batch(Arrays.asList("abc", "def"), batchSizer);
+
+        assertThat(batches, hasSize(2));
+    }
+
+    @Test
+    public void testBatchSizeChangesAreUsedForLaterBatches() {
+        final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(5, 100, 5, 5, Duration.standardSeconds(10));
+        final JsonBatchIterator iterator = new JsonBatchIterator(Arrays.asList("abc", "def", "ghi").iterator(), objectMapper, batchSizer);
+
+        assertThat(iterator.next(), hasSize(1));
+
+        batchSizer.onSuccess(Duration.standardSeconds(1));
+
+        assertThat(iterator.next(), hasSize(2));
+    }
+
+    private List<List<String>> batch(final List<String> documents, final AdaptiveBatchSizer batchSizer) {
+        final JsonBatchIterator iterator = new JsonBatchIterator(documents.iterator(), objectMapper, batchSizer);
+        final List<List<String>> output = new ArrayList<>();
+
+        while (iterator.hasNext()) {
+            final List<String> batch = new ArrayList<>();
+
+            for (final RawValue value : iterator.next()) {
+                batch.add((String) value.rawValue());
+            }
+
+            output.add(batch);
+        }
+
+        return output;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.content;
+
+import com.hp.autonomy.hod.client.api.textindex.query.search.QueryResults;
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class BatchedContentFetcherTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testFetchesAllReferencesInBatches() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(this::fetch, Function.identity(), executorService, 10, 3, 0);
+        final List<String> references = references(0, 95);
+
+        final BatchedContentFetcher.Results<String> results = fetcher.getContent(references);
+
+        assertThat(new ArrayList<>(results.getContent().keySet()), is(references));
+        assertThat(results.getFailures(), is(empty()));
+        assertThat(requests, hasSize(10));
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(3)));
+
+        for (final List<String> request : requests) {
+            assertThat(request.size(), is(lessThanOrEqualTo(10)));
+        }
+    }
+
+    @Test
+    public void testRequestsDuplicateReferencesOnce() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(this::fetch, Function.identity(), executorService, 10, 3, 0);
+
+        final BatchedContentFetcher.Results<String> results = fetcher.getContent(Arrays.asList("a", "b", "a"));
+
+        assertThat(results.getContent().keySet(), contains("a", "b"));
+        assertThat(requests, contains(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void testLeavesOutMissingReferences() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(
+            references -> new QueryResults<>(Collections.singletonList(references.get(0)), null, null, null, null, Collections.emptyList()),
+            Function.identity(),
+            executorService,
+            10,
+            1,
+            0
+        );
+
+        final BatchedContentFetcher.Results<String> results = fetcher.getContent(Arrays.asList("a", "b"));
+
+        assertThat(results.getContent().keySet(), contains("a"));
+        assertThat(results.getFailures(), is(empty()));
+    }
+
+    @Test
+    public void testReportsFailedBatches() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(references -> {
+            if (references.contains("reference-12")) {
+                throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+            }
+
+            return fetch(references);
+        }, Function.identity(), executorService, 10, 2, 0);
+
+        final BatchedContentFetcher.Results<String> results = fetcher.getContent(references(0, 30));
+
+        assertThat(results.getContent().size(), is(20));
+        assertThat(results.getFailures(), hasSize(1));
+        assertThat(results.getFailures().get(0).getReferences(), is(references(10, 20)));
+        assertThat(results.getFailures().get(0).getCause(), is(instanceOf(HodErrorException.class)));
+    }
+
+    @Test
+    public void testDoesNotRequestCachedReferences() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(this::fetch, Function.identity(), executorService, 10, 1, 100);
+
+        fetcher.getContent(references(0, 5));
+        requests.clear();
+
+        final BatchedContentFetcher.Results<String> results = fetcher.getContent(references(3, 8));
+
+        assertThat(new ArrayList<>(results.getContent().keySet()), is(references(3, 8)));
+        assertThat(requests, contains(references(5, 8)));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedReferences() {
+        final BatchedContentFetcher<String> fetcher = new BatchedContentFetcher<>(this::fetch, Function.identity(), executorService, 10, 1, 2);
+
+        fetcher.getContent(Arrays.asList("a", "b"));
+        fetcher.getContent(Collections.singletonList("a"));
+        fetcher.getContent(Collections.singletonList("c"));
+        requests.clear();
+
+        fetcher.getContent(Arrays.asList("a", "b", "c"));
+
+        assertThat(requests, contains(Collections.singletonList("b")));
+    }
+
+    private QueryResults<String> fetch(final List<String> references) {
+        requests.add(references);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        try {
+            Thread.sleep(5);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        return new QueryResults<>(new ArrayList<>(references), references.size(), null, null, null, Collections.emptyList());
+    }
+
+    private List<String> references(final int from, final int to) {
+        final List<String> references = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            references.add("reference-" + i);
+        }
+
+        return references;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.fields;
+
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.api.textindex.status.TextIndexStatus;
+import com.hp.autonomy.hod.client.api.textindex.status.TextIndexStatusService;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingRetrieveIndexFieldsServiceTest {
+
+    private static final ResourceName FIRST_INDEX = new ResourceName("domain", "first");
+    private static final ResourceName SECOND_INDEX = new ResourceName("domain", "second");
+
+    private final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+    private final TokenProxyService<EntityType.Application, TokenType.Simple> tokenProxyService = () -> tokenProxy;
+    private final AtomicLong time = new AtomicLong();
+    private final List<Runnable> statusChecks = new ArrayList<>();
+    private final Map<ResourceName, TextIndexStatus> statuses = new HashMap<>();
+
+    private RetrieveIndexFieldsService retrieveIndexFieldsService;
+    private TextIndexStatusService textIndexStatusService;
+    private CachingRetrieveIndexFieldsService cachingService;
+
+    @Before
+    public void setUp() throws HodErrorException {
+        retrieveIndexFieldsService = mock(RetrieveIndexFieldsService.class);
+        textIndexStatusService = mock(TextIndexStatusService.class);
+        cachingService = createService(Runnable::run);
+
+        statuses.put(FIRST_INDEX, status(100));
+        statuses.put(SECOND_INDEX, status(200));
+
+        when(textIndexStatusService.getIndexStatus(eq(tokenProxy), any(ResourceIdentifier.class))).then(invocation -> statuses.get(invocation.getArguments()[1]));
+
+        when(retrieveIndexFieldsService.retrieveIndexFieldsByIndex(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class))).then(invocation -> {
+            @SuppressWarnings("unchecked")
+            final Collection<ResourceName> indexes = (Collection<ResourceName>) invocation.getArguments()[1];
+            final Map<String, RetrieveIndexFieldsResponse> output = new HashMap<>();
+
+            for (final ResourceName index : indexes) {
+                output.put(index.getName(), new RetrieveIndexFieldsResponse.Builder().setTotalFields(1).build());
+            }
+
+            return output;
+        });
+
+        when(retrieveIndexFieldsService.retrieveIndexFields(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class)))
+            .then(invocation -> new RetrieveIndexFieldsResponse.Builder().setTotalFields(2).build());
+    }
+
+    @Test
+    public void testCachesFieldsForUnchangedIndexes() throws HodErrorException {
+        final Map<String, RetrieveIndexFieldsResponse> first = cachingService.retrieveIndexFieldsByIndex(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        advanceSeconds(60);
+        final Map<String, RetrieveIndexFieldsResponse> second = cachingService.retrieveIndexFieldsByIndex(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(second.get("first"), is(sameInstance(first.get("first"))));
+        assertThat(second.get("second"), is(sameInstance(first.get("second"))));
+        verify(retrieveIndexFieldsService, times(1)).retrieveIndexFieldsByIndex(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+    }
+
+    @Test
+    public void testRetrievesOnlyChangedIndexes() throws HodErrorException {
+        final Map<String, RetrieveIndexFieldsResponse> first = cachingService.retrieveIndexFieldsByIndex(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        statuses.put(SECOND_INDEX, status(201));
+        advanceSeconds(60);
+        final Map<String, RetrieveIndexFieldsResponse> second = cachingService.retrieveIndexFieldsByIndex(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(second.get("first"), is(sameInstance(first.get("first"))));
+        assertThat(second.get("second") == first.get("second"), is(false));
+        verify(retrieveIndexFieldsService).retrieveIndexFieldsByIndex(tokenProxy, Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        verify(retrieveIndexFieldsService).retrieveIndexFieldsByIndex(tokenProxy, Collections.singletonList(SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+    }
+
+    @Test
+    public void testDoesNotCheckStatusWithinInterval() throws HodErrorException {
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        statuses.put(FIRST_INDEX, status(101));
+        advanceSeconds(10);
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        verify(textIndexStatusService, times(1)).getIndexStatus(eq(tokenProxy), any(ResourceIdentifier.class));
+        verify(retrieveIndexFieldsService, times(1)).retrieveIndexFieldsByIndex(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+    }
+
+    @Test
+    public void testDoesNotShareFieldsBetweenDifferentParameters() throws HodErrorException {
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder().setMaxValues(10));
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder().setMaxValues(20));
+
+        verify(retrieveIndexFieldsService, times(2)).retrieveIndexFieldsByIndex(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+    }
+
+    @Test
+    public void testCombinedFieldsInvalidatedWhenAnyIndexChanges() throws HodErrorException {
+        cachingService.retrieveIndexFields(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        advanceSeconds(60);
+        cachingService.retrieveIndexFields(Arrays.asList(SECOND_INDEX, FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        verify(retrieveIndexFieldsService, times(1)).retrieveIndexFields(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+
+        statuses.put(FIRST_INDEX, status(101));
+        advanceSeconds(60);
+        cachingService.retrieveIndexFields(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        verify(retrieveIndexFieldsService, times(2)).retrieveIndexFields(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+    }
+
+    @Test
+    public void testServesCachedFieldsWhileCheckingStatusInBackground() throws HodErrorException {
+        cachingService = createService(statusChecks::add);
+
+        final Map<String, RetrieveIndexFieldsResponse> first = cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        statuses.put(FIRST_INDEX, status(101));
+        advanceSeconds(60);
+
+        // the change has not been seen yet, so the cached fields are returned without waiting for the check
+        final Map<String, RetrieveIndexFieldsResponse> second = cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(second.get("first"), is(sameInstance(first.get("first"))));
+        assertThat(statusChecks.size(), is(1));
+
+        statusChecks.get(0).run();
+        final Map<String, RetrieveIndexFieldsResponse> third = cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(third.get("first") == first.get("first"), is(false));
+        verify(textIndexStatusService, times(2)).getIndexStatus(eq(tokenProxy), any(ResourceIdentifier.class));
+    }
+
+    @Test
+    public void testChecksNewIndexesInParallel() throws HodErrorException {
+        cachingService = createService(runnable -> {
+            statusChecks.add(runnable);
+            runnable.run();
+        });
+
+        cachingService.retrieveIndexFieldsByIndex(Arrays.asList(FIRST_INDEX, SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(statusChecks.size(), is(2));
+        verify(textIndexStatusService).getIndexStatus(tokenProxy, FIRST_INDEX);
+        verify(textIndexStatusService).getIndexStatus(tokenProxy, SECOND_INDEX);
+    }
+
+    @Test
+    public void testDoesNotShareFieldsBetweenTokenProxies() throws HodErrorException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> otherTokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+        when(textIndexStatusService.getIndexStatus(eq(otherTokenProxy), any(ResourceIdentifier.class))).then(invocation -> statuses.get(invocation.getArguments()[1]));
+        when(retrieveIndexFieldsService.retrieveIndexFieldsByIndex(eq(otherTokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class))).thenReturn(Collections.emptyMap());
+
+        cachingService.retrieveIndexFieldsByIndex(tokenProxy, Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        final Map<String, RetrieveIndexFieldsResponse> output = cachingService.retrieveIndexFieldsByIndex(otherTokenProxy, Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(output.isEmpty(), is(true));
+        verify(textIndexStatusService).getIndexStatus(otherTokenProxy, FIRST_INDEX);
+        verify(retrieveIndexFieldsService).retrieveIndexFieldsByIndex(otherTokenProxy, Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+    }
+
+    @Test
+    public void testClearWhileCheckingStatus() throws HodErrorException {
+        cachingService = createService(runnable -> cachingService.clear());
+
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        advanceSeconds(60);
+        final Map<String, RetrieveIndexFieldsResponse> output = cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        assertThat(output.get("first").getTotalFields(), is(1));
+        verify(retrieveIndexFieldsService, times(2)).retrieveIndexFieldsByIndex(eq(tokenProxy), anyCollectionOf(ResourceName.class), any(RetrieveIndexFieldsRequestBuilder.class));
+    }
+
+    @Test
+    public void testLimitsNumberOfIndexStatuses() throws HodErrorException {
+        cachingService = new CachingRetrieveIndexFieldsService(retrieveIndexFieldsService, textIndexStatusService, tokenProxyService, Duration.standardSeconds(30), 1, Runnable::run, time::get);
+
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        advanceSeconds(1);
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(SECOND_INDEX), new RetrieveIndexFieldsRequestBuilder());
+        advanceSeconds(1);
+        cachingService.retrieveIndexFieldsByIndex(Collections.singletonList(FIRST_INDEX), new RetrieveIndexFieldsRequestBuilder());
+
+        // the status of the first index was discarded to make room for the second, so it is checked again
+        verify(textIndexStatusService, times(2)).getIndexStatus(tokenProxy, FIRST_INDEX);
+    }
+
+    private CachingRetrieveIndexFieldsService createService(final Executor statusCheckExecutor) {
+        return new CachingRetrieveIndexFieldsService(retrieveIndexFieldsService, textIndexStatusService, tokenProxyService, Duration.standardSeconds(30), 100, statusCheckExecutor, time::get);
+    }
+
+    private TextIndexStatus status(final long totalDocuments) {
+        return TextIndexStatus.builder()
+            .totalDocuments(totalDocuments)
+            .componentCount(1)
+            .build();
+    }
+
+    private void advanceSeconds(final long seconds) {
+        time.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
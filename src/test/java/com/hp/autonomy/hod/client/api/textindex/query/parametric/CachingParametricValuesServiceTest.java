@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.parametric;
+
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenProxyService;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingParametricValuesServiceTest {
+
+    private static final ResourceName FIRST_INDEX = new ResourceName("domain", "first");
+    private static final ResourceName SECOND_INDEX = new ResourceName("domain", "second");
+
+    private final List<FieldValues> response = Collections.singletonList(FieldValues.builder()
+        .name("category")
+        .value(FieldValues.ValueAndCount.builder().value("ANIMAL").count(3).build())
+        .build());
+
+    private final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+    private final TokenProxyService<EntityType.Application, TokenType.Simple> tokenProxyService = () -> tokenProxy;
+
+    private GetParametricValuesService getParametricValuesService;
+    private CachingParametricValuesService cachingService;
+
+    @Before
+    public void setUp() throws HodErrorException {
+        getParametricValuesService = mock(GetParametricValuesService.class);
+        cachingService = new CachingParametricValuesService(getParametricValuesService, tokenProxyService, Duration.standardMinutes(1), Duration.standardMinutes(5), 100, Runnable::run);
+
+        when(getParametricValuesService.getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class))).thenReturn(response);
+    }
+
+    @Test
+    public void testCachesValuesForTheSameRequest() throws HodErrorException {
+        cachingService.getParametricValues(Collections.singletonList("category"), Arrays.asList(FIRST_INDEX, SECOND_INDEX), new GetParametricValuesRequestBuilder().setText("cats"));
+        final List<FieldValues> output = cachingService.getParametricValues(Collections.singletonList("category"), Arrays.asList(SECOND_INDEX, FIRST_INDEX), new GetParametricValuesRequestBuilder().setText("cats"));
+
+        assertThat(output, is(response));
+        verify(getParametricValuesService, times(1)).getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class));
+    }
+
+    @Test
+    public void testDoesNotShareValuesBetweenDifferentParameters() throws HodErrorException {
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder().setText("cats"));
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder().setText("dogs"));
+
+        verify(getParametricValuesService, times(2)).getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class));
+    }
+
+    @Test
+    public void testDoesNotShareValuesBetweenTokenProxies() throws HodErrorException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> otherTokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+        when(getParametricValuesService.getParametricValues(eq(otherTokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class))).thenReturn(Collections.emptyList());
+
+        cachingService.getParametricValues(tokenProxy, Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+        final List<FieldValues> output = cachingService.getParametricValues(otherTokenProxy, Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+
+        assertThat(output, is(empty()));
+        verify(getParametricValuesService).getParametricValues(eq(otherTokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class));
+    }
+
+    @Test
+    public void testRefreshesAreNotAffectedByChangesToTheParameters() throws HodErrorException {
+        final List<Runnable> refreshes = new ArrayList<>();
+        cachingService = new CachingParametricValuesService(getParametricValuesService, tokenProxyService, Duration.ZERO, Duration.standardMinutes(5), 100, refreshes::add);
+
+        final GetParametricValuesRequestBuilder params = new GetParametricValuesRequestBuilder().setText("cats");
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), params);
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), params);
+
+        params.setText("dogs");
+        refreshes.get(0).run();
+
+        final ArgumentCaptor<GetParametricValuesRequestBuilder> captor = ArgumentCaptor.forClass(GetParametricValuesRequestBuilder.class);
+        verify(getParametricValuesService, times(2)).getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), captor.capture());
+        assertThat(captor.getValue().getText(), is("cats"));
+    }
+
+    @Test
+    public void testClearRemovesCachedValues() throws HodErrorException {
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+        cachingService.clear();
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+
+        verify(getParametricValuesService, times(2)).getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class));
+    }
+
+    @Test
+    public void testRefreshesUseTheTokenProxyFromTheCallingThread() throws HodErrorException {
+        final AtomicReference<TokenProxy<EntityType.Application, TokenType.Simple>> currentTokenProxy = new AtomicReference<>(tokenProxy);
+        final TokenProxyService<EntityType.Application, TokenType.Simple> currentTokenProxyService = currentTokenProxy::get;
+        final List<Runnable> refreshes = new ArrayList<>();
+        cachingService = new CachingParametricValuesService(getParametricValuesService, currentTokenProxyService, Duration.ZERO, Duration.standardMinutes(5), 100, refreshes::add);
+
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+        cachingService.getParametricValues(Collections.singletonList("category"), Collections.singletonList(FIRST_INDEX), new GetParametricValuesRequestBuilder());
+
+        // the token proxy service on the refresh executor may not be able to find the token proxy for the request
+        currentTokenProxy.set(null);
+        refreshes.get(0).run();
+
+        verify(getParametricValuesService, times(2)).getParametricValues(eq(tokenProxy), anyCollectionOf(String.class), anyCollectionOf(ResourceName.class), any(GetParametricValuesRequestBuilder.class));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.parametric;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParametricValuesResponseTest {
+
+    private static final String FIELDS = "{\"name\": \"category\", \"total_values\": 2, \"values\": [{\"value\": \"ANIMAL\", \"count\": 2}, {\"value\": \"PLACE\", \"count\": 1}]}, " +
+        "{\"name\": \"author\", \"values\": [{\"value\": \"Bob\", \"count\": 3}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testReadsFieldsArray() throws IOException {
+        final ParametricValuesResponse response = objectMapper.readValue("{\"other\": {\"a\": [1]}, \"fields\": [" + FIELDS + "]}", ParametricValuesResponse.class);
+
+        assertThat(response.getFields(), is(expectedFields()));
+    }
+
+    @Test
+    public void testReadsFieldsObjectWithNumberKeys() throws IOException {
+        final String json = "{\"fields\": {\"0\": " + FIELDS.replace("}, {\"name\"", "}, \"1\": {\"name\"") + "}}";
+
+        final ParametricValuesResponse response = objectMapper.readValue(json, ParametricValuesResponse.class);
+
+        assertThat(response.getFields(), is(expectedFields()));
+    }
+
+    @Test
+    public void testPassesEachFieldToConsumer() throws IOException {
+        final List<String> names = new ArrayList<>();
+
+        try (final JsonParser parser = objectMapper.getFactory().createParser("{\"fields\": [" + FIELDS + "]}")) {
+            ParametricValuesResponse.readFields(parser, field -> names.add(field.getName()));
+        }
+
+        assertThat(names, contains("category", "author"));
+    }
+
+    @Test(expected = JsonMappingException.class)
+    public void testRejectsResponseWithoutFields() throws IOException {
+        objectMapper.readValue("{\"values\": []}", ParametricValuesResponse.class);
+    }
+
+    private List<FieldValues> expectedFields() {
+        return Arrays.asList(
+            FieldValues.builder()
+                .name("category")
+                .totalValues(2)
+                .value(FieldValues.ValueAndCount.builder().value("ANIMAL").count(2).build())
+                .value(FieldValues.ValueAndCount.builder().value("PLACE").count(1).build())
+                .build(),
+            FieldValues.builder()
+                .name("author")
+                .value(FieldValues.ValueAndCount.builder().value("Bob").count(3).build())
+                .build()
+        );
+    }
+}
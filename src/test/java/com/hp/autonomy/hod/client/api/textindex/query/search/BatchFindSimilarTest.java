@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BatchFindSimilarTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(8);
+    private final List<String> queriedSeeds = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testReturnsResultsForEachSeed() {
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>(this::query, executorService, 3);
+        final RecordingCallback callback = new RecordingCallback();
+
+        batchFindSimilar.run(seeds(20), new QueryRequestBuilder(), callback);
+
+        assertThat(callback.results.keySet(), containsInAnyOrder(seeds(20).toArray()));
+        assertThat(callback.results.get("seed-7"), is(Collections.singletonList("similar to seed-7")));
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(3)));
+    }
+
+    @Test
+    public void testQueriesDuplicateSeedsOnce() {
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>(this::query, executorService, 3);
+
+        batchFindSimilar.run(Arrays.asList("a", "b", "a", "a"), new QueryRequestBuilder(), new RecordingCallback());
+
+        assertThat(queriedSeeds, containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void testReportsErrorsAndContinues() {
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>((seed, params) -> {
+            if ("seed-3".equals(seed)) {
+                throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+            }
+
+            return query(seed, params);
+        }, executorService, 2);
+        final RecordingCallback callback = new RecordingCallback();
+
+        batchFindSimilar.run(seeds(10), new QueryRequestBuilder(), callback);
+
+        assertThat(callback.results.size(), is(9));
+        assertThat(callback.errors, containsInAnyOrder("seed-3"));
+    }
+
+    @Test
+    public void testConcurrentRunsShareTheLimit() throws Exception {
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>(this::query, executorService, 2);
+
+        final ExecutorService runExecutor = Executors.newFixedThreadPool(3);
+        final List<Future<?>> runs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                runs.add(runExecutor.submit(() -> batchFindSimilar.run(seeds(10), new QueryRequestBuilder(), new RecordingCallback())));
+            }
+
+            for (final Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            runExecutor.shutdownNow();
+        }
+
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(2)));
+        assertThat(queriedSeeds.size(), is(30));
+    }
+
+    @Test
+    public void testReleasesPermitsWhenCallbackThrows() throws Exception {
+        final List<Runnable> heldTasks = new ArrayList<>();
+        final AtomicBoolean holdTasks = new AtomicBoolean(true);
+
+        // while holding, the first two queries are never started and the third runs immediately, so when the callback
+        // throws for the third the first two are cancelled before they start
+        final ExecutorService holdingExecutor = new ThreadPoolExecutor(3, 3, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(final Runnable command) {
+                if (!holdTasks.get()) {
+                    super.execute(command);
+                } else if (heldTasks.size() < 2) {
+                    heldTasks.add(command);
+                } else {
+                    command.run();
+                }
+            }
+        };
+
+        // once set, each query waits until three are in flight, which is only possible if no permits were leaked
+        final AtomicReference<CountDownLatch> allInFlight = new AtomicReference<>();
+
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>((seed, params) -> {
+            final CountDownLatch latch = allInFlight.get();
+
+            if (latch != null) {
+                latch.countDown();
+                awaitQuietly(latch);
+            }
+
+            return query(seed, params);
+        }, holdingExecutor, 3);
+
+        try {
+            try {
+                batchFindSimilar.run(seeds(10), new QueryRequestBuilder(), new RecordingCallback() {
+                    @Override
+                    public void success(final String seed, final QueryResults<? extends String> queryResults) {
+                        throw new IllegalStateException("Callback failed");
+                    }
+                });
+
+                fail("Expected IllegalStateException");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+
+            holdTasks.set(false);
+            maxInFlight.set(0);
+            allInFlight.set(new CountDownLatch(3));
+
+            final RecordingCallback callback = new RecordingCallback();
+            executorService.submit(() -> batchFindSimilar.run(seeds(3), new QueryRequestBuilder(), callback)).get(10, TimeUnit.SECONDS);
+
+            assertThat(callback.results.size(), is(3));
+            assertThat(maxInFlight.get(), is(3));
+        } finally {
+            holdingExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReleasesPermitWhenSubmitIsRejected() throws Exception {
+        final AtomicBoolean rejectNext = new AtomicBoolean(true);
+
+        final ExecutorService rejectingExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(final Runnable command) {
+                if (rejectNext.getAndSet(false)) {
+                    throw new RejectedExecutionException("Rejected");
+                }
+
+                super.execute(command);
+            }
+        };
+
+        final BatchFindSimilar<String> batchFindSimilar = new BatchFindSimilar<>(this::query, rejectingExecutor, 1);
+
+        try {
+            try {
+                batchFindSimilar.run(seeds(3), new QueryRequestBuilder(), new RecordingCallback());
+                fail("Expected RejectedExecutionException");
+            } catch (final RejectedExecutionException e) {
+                // expected
+            }
+
+            final RecordingCallback callback = new RecordingCallback();
+            executorService.submit(() -> batchFindSimilar.run(seeds(3), new QueryRequestBuilder(), callback)).get(5, TimeUnit.SECONDS);
+
+            assertThat(callback.results.size(), is(3));
+        } finally {
+            rejectingExecutor.shutdownNow();
+        }
+    }
+
+    private QueryResults<String> query(final String seed, final QueryRequestBuilder params) {
+        queriedSeeds.add(seed);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+        try {
+            Thread.sleep(5);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        return new QueryResults<>(Collections.singletonList("similar to " + seed), 1, null, null, null, Collections.emptyList());
+    }
+
+    private void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<String> seeds(final int count) {
+        final List<String> seeds = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            seeds.add("seed-" + i);
+        }
+
+        return seeds;
+    }
+
+    private static class RecordingCallback implements BatchFindSimilar.SeedCallback<String> {
+
+        private final Map<String, List<? extends String>> results = new ConcurrentHashMap<>();
+        private final List<String> errors = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void success(final String seed, final QueryResults<? extends String> queryResults) {
+            results.put(seed, queryResults.getDocuments());
+        }
+
+        @Override
+        public void error(final String seed, final HodErrorException exception) {
+            errors.add(seed);
+        }
+    }
+}
@@ -5,6 +5,8 @@
 
 package com.hp.autonomy.hod.client.api.textindex.query.search;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -12,11 +14,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class DocumentTest {
@@ -58,6 +66,54 @@ public class DocumentTest {
         serializeAndDeserialize(document);
     }
 
+    @Test
+    public void testFieldsKeepTheirValues() {
+        final Document document = new Document.Builder()
+            .addField("string", "hello world")
+            .addField("double", 42.0)
+            .build();
+
+        final Map<String, Serializable> expected = new HashMap<>();
+        expected.put("string", "hello world");
+        expected.put("double", 42.0);
+
+        assertThat(document.getFields(), is(expected));
+        assertThat(document.getFields().get("double"), is((Serializable) 42.0));
+        assertThat(document.getFields().containsKey("missing"), is(false));
+    }
+
+    @Test
+    public void testDocumentsWithTheSameFieldsShareFieldNames() {
+        final Document first = new Document.Builder().setReference("1").addField("author", "Alice").addField("year", 2015).build();
+        final Document second = new Document.Builder().setReference("2").addField("author", "Bob").addField("year", 2016).build();
+        final Document other = new Document.Builder().setReference("3").addField("author", "Carol").build();
+
+        assertThat(second.getFields().get("author"), is((Serializable) "Bob"));
+        assertThat(fieldNames(first), is(sameInstance(fieldNames(second))));
+        assertThat(fieldNames(other), is(not(sameInstance(fieldNames(first)))));
+    }
+
+    @Test
+    public void testDeserializedDocumentsShareFieldNames() throws IOException {
+        final String json = "[{\"reference\": \"1\", \"author\": \"Alice\", \"year\": 2015}, {\"reference\": \"2\", \"author\": \"Bob\", \"year\": 2016}]";
+        final List<Document> documents = new ObjectMapper().readValue(json, new TypeReference<List<Document>>() {});
+
+        assertThat(documents.get(1).getFields().get("author"), is((Serializable) "Bob"));
+        assertThat(fieldNames(documents.get(0)), is(sameInstance(fieldNames(documents.get(1)))));
+    }
+
+    @Test
+    public void testEmptyLinksAreShared() {
+        final Document first = new Document.Builder().setLinks(new HashSet<String>()).build();
+        final Document second = new Document.Builder().setLinks(new HashSet<String>()).build();
+
+        assertThat(first.getLinks(), is(sameInstance(second.getLinks())));
+    }
+
+    private FieldNames fieldNames(final Document document) {
+        return ((CompactFieldMap) document.getFields()).getNames();
+    }
+
     private void serializeAndDeserialize(final Document document) throws IOException, ClassNotFoundException {
         final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class FieldNameDictionaryTest {
+
+    private final FieldNameDictionary dictionary = new FieldNameDictionary(2);
+
+    @Test
+    public void testInternReturnsSharedInstance() {
+        final FieldNames first = dictionary.intern(new String[]{"title", "content"});
+
+        assertThat(dictionary.intern(new String[]{"title", "content"}), is(sameInstance(first)));
+        assertThat(dictionary.intern(new String[]{"content", "title"}), is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void testDictionaryIsClearedWhenFull() {
+        final FieldNames first = dictionary.intern(new String[]{"a"});
+        dictionary.intern(new String[]{"b"});
+        final FieldNames third = dictionary.intern(new String[]{"c"});
+
+        final FieldNames firstAgain = dictionary.intern(new String[]{"a"});
+
+        assertThat(firstAgain, is(not(sameInstance(first))));
+        assertThat(firstAgain.get(0), is("a"));
+        assertThat(dictionary.intern(new String[]{"c"}), is(sameInstance(third)));
+    }
+}
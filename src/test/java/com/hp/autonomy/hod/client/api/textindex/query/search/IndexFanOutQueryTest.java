@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.api.resource.ResourceIdentifier;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.warning.HodWarning;
+import com.hp.autonomy.hod.client.warning.HodWarningCode;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class IndexFanOutQueryTest {
+
+    private static final ResourceName INDEX_A = new ResourceName("domain", "a");
+    private static final ResourceName INDEX_B = new ResourceName("domain", "b");
+    private static final ResourceName INDEX_SLOW = new ResourceName("domain", "slow");
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(3);
+    private final List<Integer> requestedLimits = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testMergeInterleavesSortedLists() {
+        final List<Integer> merged = IndexFanOutQuery.merge(
+            Arrays.asList(Arrays.asList(9, 5, 1), Arrays.asList(8, 7, 2), Collections.<Integer>emptyList()),
+            Comparator.<Integer>reverseOrder(),
+            1,
+            4
+        );
+
+        assertThat(merged, contains(8, 7, 5, 2));
+    }
+
+    @Test
+    public void testMergesGroupsByWeight() throws HodErrorException {
+        final IndexFanOutQuery<Document> query = IndexFanOutQuery.documentsByWeight(this::fetch, executorService);
+
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setIndexes(Arrays.asList(INDEX_A, INDEX_B))
+            .setMaxPageResults(4);
+
+        final QueryResults<Document> results = query.query(params, new FanOutRequestBuilder());
+
+        assertThat(references(results), contains("a90", "b80", "a70", "b60"));
+        assertThat(results.getTotalResults(), is(6));
+        assertThat(results.getHodWarnings(), is(empty()));
+    }
+
+    @Test
+    public void testPageIsTakenFromMergedResults() throws HodErrorException {
+        final IndexFanOutQuery<Document> query = IndexFanOutQuery.documentsByWeight(this::fetch, executorService);
+
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setIndexes(Arrays.asList(INDEX_A, INDEX_B))
+            .setStart(3)
+            .setMaxPageResults(2);
+
+        final QueryResults<Document> results = query.query(params, new FanOutRequestBuilder());
+
+        assertThat(references(results), contains("a70", "b60"));
+    }
+
+    @Test
+    public void testUsesDefaultPageSizeWithoutLimits() throws HodErrorException {
+        final IndexFanOutQuery<Document> query = IndexFanOutQuery.documentsByWeight(this::fetch, executorService);
+
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setIndexes(Arrays.asList(INDEX_A, INDEX_B))
+            .setStart(3);
+
+        final QueryResults<Document> results = query.query(params, new FanOutRequestBuilder());
+
+        assertThat(references(results), contains("a70", "b60", "a50", "b40"));
+        assertThat(requestedLimits, contains(12, 12));
+    }
+
+    @Test
+    public void testSlowGroupIsLeftOutOfPartialResults() throws HodErrorException {
+        final IndexFanOutQuery<Document> query = IndexFanOutQuery.documentsByWeight(this::fetch, executorService);
+
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setIndexes(Arrays.asList(INDEX_A, INDEX_SLOW, INDEX_B))
+            .setMaxPageResults(10);
+
+        final FanOutRequestBuilder options = new FanOutRequestBuilder()
+            .setGroupTimeout(Duration.millis(200))
+            .setAllowPartialResults(true);
+
+        final QueryResults<Document> results = query.query(params, options);
+
+        assertThat(references(results), contains("a90", "b80", "a70", "b60", "a50", "b40"));
+        assertThat(results.getHodWarnings().size(), is(1));
+
+        final HodWarning warning = results.getHodWarnings().get(0);
+        assertThat(warning.getCode(), is(HodWarningCode.INDEXES_DID_NOT_RESPOND));
+        assertThat(warning.getDetails(), containsString(INDEX_SLOW.toString()));
+        assertThat(warning.getDetails().contains(INDEX_A.toString()), is(false));
+    }
+
+    @Test
+    public void testSlowGroupFailsQueryWithoutPartialResults() {
+        final IndexFanOutQuery<Document> query = IndexFanOutQuery.documentsByWeight(this::fetch, executorService);
+
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setIndexes(Arrays.asList(INDEX_A, INDEX_SLOW))
+            .setMaxPageResults(10);
+
+        try {
+            query.query(params, new FanOutRequestBuilder().setGroupTimeout(Duration.millis(200)));
+            fail("Expected HodErrorException");
+        } catch (final HodErrorException e) {
+            assertThat(e.getErrorCode(), is(HodErrorCode.REQUEST_TOOK_TOO_LONG));
+        }
+    }
+
+    private QueryResults<Document> fetch(final QueryRequestBuilder params) {
+        requestedLimits.add(params.getAbsoluteMaxResults());
+
+        final Map<ResourceIdentifier, double[]> weights = new HashMap<>();
+        weights.put(INDEX_A, new double[]{90, 70, 50});
+        weights.put(INDEX_B, new double[]{80, 60, 40});
+        weights.put(INDEX_SLOW, new double[]{100});
+
+        final List<Document> documents = new ArrayList<>();
+        int total = 0;
+
+        for (final ResourceIdentifier index : params.getIndexes()) {
+            if (index.equals(INDEX_SLOW)) {
+                try {
+                    Thread.sleep(5000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            for (final double weight : weights.get(index)) {
+                final String name = ((ResourceName) index).getName();
+                documents.add(new Document.Builder().setReference(name + (int) weight).setIndex(name).setWeight(weight).build());
+            }
+
+            total += weights.get(index).length;
+        }
+
+        return new QueryResults<>(documents.subList(0, Math.min(documents.size(), params.getAbsoluteMaxResults())), total, null, null, null, null);
+    }
+
+    private static List<String> references(final QueryResults<Document> results) {
+        final List<String> references = new ArrayList<>();
+
+        for (final Document document : results.getDocuments()) {
+            references.add(document.getReference());
+        }
+
+        return references;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LazyDocumentTest {
+
+    private static final String JSON = "{" +
+        "\"reference\": \"my-reference\"," +
+        "\"weight\": 88.5," +
+        "\"index\": \"cool_stuff\"," +
+        "\"title\": \"My Title\"," +
+        "\"promotion\": \"DYNAMIC_PROMOTION\"," +
+        "\"author\": [\"Alice\", \"Bob\"]," +
+        "\"wordcount\": 42," +
+        "\"metadata\": {\"source\": \"web\", \"tags\": [1, 2]}," +
+        "\"empty\": null" +
+        "}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testReadsStandardProperties() throws IOException {
+        final LazyDocument document = objectMapper.readValue(JSON, LazyDocument.class);
+
+        assertThat(document.getReference(), is("my-reference"));
+        assertThat(document.getWeight(), is(88.5));
+        assertThat(document.getIndex(), is("cool_stuff"));
+        assertThat(document.getTitle(), is("My Title"));
+        assertThat(document.getSummary(), is(""));
+        assertThat(document.getPromotionType(), is(PromotionType.DYNAMIC_PROMOTION));
+    }
+
+    @Test
+    public void testDecodesFieldsOnAccess() throws IOException {
+        final LazyDocument document = objectMapper.readValue(JSON, LazyDocument.class);
+
+        assertThat(document.getFieldNames(), contains("author", "wordcount", "metadata", "empty"));
+        assertThat(document.getField("author"), is(Arrays.asList("Alice", "Bob")));
+        assertThat(document.getField("wordcount"), is(42));
+        assertThat(document.getField("empty"), is(nullValue()));
+        assertThat(document.getField("missing"), is(nullValue()));
+    }
+
+    @Test
+    public void testToDocumentMatchesEagerDocument() throws IOException {
+        final LazyDocument lazyDocument = objectMapper.readValue(JSON, LazyDocument.class);
+        final Document document = objectMapper.readValue(JSON, Document.class);
+
+        assertThat(lazyDocument.toDocument(), is(document));
+    }
+
+    @Test
+    public void testBuilderFields() {
+        final LazyDocument document = new LazyDocument.Builder()
+            .setReference("my-reference")
+            .addField("string", "hello world")
+            .addField("double", 42.5)
+            .build();
+
+        assertThat(document.getField("string"), is("hello world"));
+        assertThat(document.getField("double"), is(42.5));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final LazyDocument document = objectMapper.readValue(JSON, LazyDocument.class);
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try(final ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(document);
+        }
+
+        try(final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()))) {
+            assertThat(objectInputStream.readObject(), is(document));
+        }
+    }
+
+}
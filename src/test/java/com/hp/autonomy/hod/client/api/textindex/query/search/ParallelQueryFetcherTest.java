@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class ParallelQueryFetcherTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testFetchesAllResultsInRankOrder() throws HodErrorException {
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(pageFetcher(95), executorService, 10, 3);
+
+        final List<String> documents = fetcher.fetchAll(new QueryRequestBuilder());
+
+        assertThat(documents, is(expected(1, 95)));
+        assertThat(maxInFlight.get(), is(lessThanOrEqualTo(3)));
+    }
+
+    @Test
+    public void testRespectsStartAndAbsoluteMaxResults() throws HodErrorException {
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(pageFetcher(1000), executorService, 10, 4);
+
+        final List<String> documents = fetcher.fetchAll(new QueryRequestBuilder().setStart(5).setAbsoluteMaxResults(42));
+
+        assertThat(documents, is(expected(5, 42)));
+    }
+
+    @Test
+    public void testStopsAtTotalResultsWhenStartIsAfterTheFirstResult() throws HodErrorException {
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(pageFetcher(1500), executorService, 100, 4);
+
+        final List<String> documents = fetcher.fetchAll(new QueryRequestBuilder().setStart(1001));
+
+        assertThat(documents, is(expected(1001, 1500)));
+        assertThat(requests.get(), is(5));
+    }
+
+    @Test
+    public void testStopsAfterShortPage() throws HodErrorException {
+        // the total number of results is an estimate which is larger than the number of results returned
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(pageFetcher(35, 1000), executorService, 10, 2);
+
+        final List<String> documents = fetcher.fetchAll(new QueryRequestBuilder());
+
+        assertThat(documents, is(expected(1, 35)));
+        assertThat(requests.get(), is(lessThanOrEqualTo(5)));
+    }
+
+    @Test
+    public void testReturnsFirstPageWithTotalResults() throws HodErrorException {
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(pageFetcher(7), executorService, 10, 2);
+        final List<String> documents = new ArrayList<>();
+
+        final QueryResults<String> firstPage = fetcher.fetch(new QueryRequestBuilder(), documents::add);
+
+        assertThat(firstPage.getTotalResults(), is(7));
+        assertThat(documents, is(expected(1, 7)));
+    }
+
+    @Test(expected = HodErrorException.class)
+    public void testErrorFetchingLaterPageIsThrown() throws HodErrorException {
+        final QueryResultsPager.PageFetcher<String> delegate = pageFetcher(100);
+
+        final ParallelQueryFetcher<String> fetcher = new ParallelQueryFetcher<>(params -> {
+            if (params.getStart() == 31) {
+                throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+            }
+
+            return delegate.fetch(params);
+        }, executorService, 10, 2);
+
+        fetcher.fetchAll(new QueryRequestBuilder());
+    }
+
+    private QueryResultsPager.PageFetcher<String> pageFetcher(final int totalResults) {
+        return pageFetcher(totalResults, totalResults);
+    }
+
+    private QueryResultsPager.PageFetcher<String> pageFetcher(final int actualResults, final int reportedTotalResults) {
+        return params -> {
+            requests.incrementAndGet();
+            final int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+
+            try {
+                // later pages finish first to check that the documents are reordered
+                Thread.sleep(Math.max(0, 20 - params.getStart() / 10));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+
+            final int start = params.getStart();
+            final int end = Math.min(Math.min(params.getAbsoluteMaxResults(), start + params.getMaxPageResults() - 1), actualResults);
+            final Integer total = Boolean.TRUE.equals(params.getTotalResults()) ? reportedTotalResults : null;
+
+            return new QueryResults<>(expected(start, end), total, null, null, null, Collections.emptyList());
+        };
+    }
+
+    private static List<String> expected(final int start, final int end) {
+        final List<String> documents = new ArrayList<>();
+
+        for (int i = start; i <= end; i++) {
+            documents.add("doc" + i);
+        }
+
+        return documents;
+    }
+}
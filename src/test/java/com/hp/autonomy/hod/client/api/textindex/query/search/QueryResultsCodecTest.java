@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.warning.HodWarning;
+import com.hp.autonomy.hod.client.warning.HodWarningCode;
+import com.hp.autonomy.types.requests.Spelling;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class QueryResultsCodecTest {
+
+    private static final byte[] PROMOTION_TYPE_BYTES = PromotionType.CARDINAL_PLACEMENT.name().getBytes(StandardCharsets.UTF_8);
+
+    private final QueryResultsCodec codec = new QueryResultsCodec();
+
+    @Test
+    public void testRoundTripsResults() {
+        final QueryResults<Document> results = createResults(3);
+
+        final QueryResults<Document> decoded = codec.decode(codec.encode(results));
+
+        assertThat(decoded, is(results));
+
+        for (int i = 0; i < results.getDocuments().size(); i++) {
+            assertThat(decoded.getDocuments().get(i).getFields(), is(results.getDocuments().get(i).getFields()));
+        }
+    }
+
+    @Test
+    public void testRoundTripsDocument() {
+        final Document document = new Document.Builder()
+            .setReference("reference")
+            .setTitle(null)
+            .setPromotionType(PromotionType.CARDINAL_PLACEMENT)
+            .addField("date", new DateTime(0))
+            .build();
+
+        final Document decoded = codec.decodeDocument(codec.encodeDocument(document));
+
+        assertThat(decoded, is(document));
+        assertThat(decoded.getFields(), is(document.getFields()));
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws IOException {
+        final QueryResults<Document> results = createResults(100);
+
+        final ByteArrayOutputStream javaBytes = new ByteArrayOutputStream();
+
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(javaBytes)) {
+            objectOutputStream.writeObject(results);
+        }
+
+        assertThat(codec.encode(results).length, is(lessThan(javaBytes.size() / 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownVersion() {
+        final byte[] bytes = codec.encode(createResults(1));
+        bytes[0] = (byte) (QueryResultsCodec.FORMAT_VERSION + 1);
+
+        codec.decode(bytes);
+    }
+
+    @Test
+    public void testWarningsWithoutACodeAreDecodedWithTheUnknownCode() {
+        final HodWarning warning = new HodWarning.Builder()
+            .setDetails("No code")
+            .build();
+
+        final QueryResults<Document> results = new QueryResults<>(Collections.<Document>emptyList(), 0, null, null, null, Collections.singletonList(warning));
+
+        final HodWarning decoded = codec.decode(codec.encode(results)).getHodWarnings().get(0);
+
+        assertThat(decoded.getCode(), is(HodWarningCode.UNKNOWN_ERROR_CODE));
+        assertThat(decoded.getDetails(), is("No code"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownPromotionType() {
+        final byte[] bytes = encodeCardinalPlacement();
+        final int index = indexOf(bytes, PROMOTION_TYPE_BYTES);
+        final byte[] unknown = "UNKNOWN_PLACEMENT_".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(unknown, 0, bytes, index, unknown.length);
+
+        codec.decodeDocument(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsMissingPromotionType() {
+        final byte[] bytes = encodeCardinalPlacement();
+        final int index = indexOf(bytes, PROMOTION_TYPE_BYTES);
+
+        // replace the new name marker, the length and the name with a null name
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(bytes, 0, index - 2);
+        output.write(0);
+        output.write(bytes, index + PROMOTION_TYPE_BYTES.length, bytes.length - index - PROMOTION_TYPE_BYTES.length);
+
+        codec.decodeDocument(output.toByteArray());
+    }
+
+    private byte[] encodeCardinalPlacement() {
+        return codec.encodeDocument(new Document.Builder()
+            .setReference("reference")
+            .setPromotionType(PromotionType.CARDINAL_PLACEMENT)
+            .build());
+    }
+
+    private int indexOf(final byte[] bytes, final byte[] target) {
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+
+            return i;
+        }
+
+        throw new AssertionError("Bytes not found");
+    }
+
+    private QueryResults<Document> createResults(final int documentCount) {
+        final List<Document> documents = new ArrayList<>();
+
+        for (int i = 0; i < documentCount; i++) {
+            final Map<String, Serializable> metadata = new LinkedHashMap<>();
+            metadata.put("source", "web");
+            metadata.put("tags", new ArrayList<>(Arrays.asList(1, 2L, true)));
+
+            documents.add(new Document.Builder()
+                .setReference("reference-" + i)
+                .setWeight(90.5 - i)
+                .setIndex("my_index")
+                .setTitle("Title " + i)
+                .setSummary("A summary of document " + i)
+                .setSection(i % 2 == 0 ? null : i)
+                .setLinks(new HashSet<>(Arrays.asList("cat", "dog")))
+                .addField("author", new ArrayList<>(Arrays.asList("Alice", "Bob")))
+                .addField("wordcount", 1000 + i)
+                .addField("score", 0.5)
+                .addField("metadata", (Serializable) metadata)
+                .addField("empty", null)
+                .build());
+        }
+
+        final HodWarning warning = new HodWarning.Builder()
+            .setCode(40003)
+            .setDetails("Document is missing")
+            .build();
+
+        final Spelling spelling = new Spelling(Arrays.asList("cats", "dogs"), "cats dogs", "catz dogz");
+
+        return new QueryResults<>(documents, documentCount, "expanded", spelling, null, Collections.singletonList(warning));
+    }
+}
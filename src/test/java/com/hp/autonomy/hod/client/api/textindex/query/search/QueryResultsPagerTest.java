@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class QueryResultsPagerTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private final List<Integer> requestedStarts = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testPagesUntilTotalResults() throws HodErrorException {
+        final List<List<String>> pages = readAll(new QueryResultsPager<>(fetcher(25), new QueryRequestBuilder(), 10, 2, executorService));
+
+        assertThat(pages, hasSize(3));
+        assertThat(pages.get(0), contains("doc1", "doc2", "doc3", "doc4", "doc5", "doc6", "doc7", "doc8", "doc9", "doc10"));
+        assertThat(pages.get(2), contains("doc21", "doc22", "doc23", "doc24", "doc25"));
+    }
+
+    @Test
+    public void testPagesUntilAbsoluteMaxResults() throws HodErrorException {
+        final QueryRequestBuilder params = new QueryRequestBuilder()
+            .setStart(11)
+            .setAbsoluteMaxResults(25);
+
+        final List<List<String>> pages = readAll(new QueryResultsPager<>(fetcher(100), params, 10, 1, executorService));
+
+        assertThat(pages, hasSize(2));
+        assertThat(pages.get(0).get(0), is("doc11"));
+        assertThat(pages.get(1), contains("doc21", "doc22", "doc23", "doc24", "doc25"));
+        assertThat(requestedStarts, contains(11, 21));
+    }
+
+    @Test
+    public void testStopsAtTotalResultsWhenStartIsAfterTheFirstResult() throws HodErrorException {
+        final QueryRequestBuilder params = new QueryRequestBuilder().setStart(21);
+
+        final List<List<String>> pages = readAll(new QueryResultsPager<>(fetcher(30), params, 10, 2, executorService));
+
+        assertThat(pages, hasSize(1));
+        assertThat(pages.get(0).get(0), is("doc21"));
+        assertThat(requestedStarts, contains(21));
+    }
+
+    @Test
+    public void testEmptyResultsReturnSingleEmptyPage() throws HodErrorException {
+        final List<List<String>> pages = readAll(new QueryResultsPager<>(fetcher(0), new QueryRequestBuilder(), 10, 3, executorService));
+
+        assertThat(pages, hasSize(1));
+        assertThat(pages.get(0), is(empty()));
+    }
+
+    @Test
+    public void testWithoutPrefetching() throws HodErrorException {
+        final QueryResultsPager<String> pager = new QueryResultsPager<>(fetcher(30), new QueryRequestBuilder(), 10, 0, executorService);
+
+        assertThat(pager.hasNext(), is(true));
+
+        pager.next();
+
+        assertThat(requestedStarts, contains(1));
+    }
+
+    @Test(expected = HodErrorException.class)
+    public void testErrorsArePropagated() throws HodErrorException {
+        final QueryResultsPager<String> pager = new QueryResultsPager<>(params -> {
+            throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+        }, new QueryRequestBuilder(), 10, 1, executorService);
+
+        pager.next();
+    }
+
+    private QueryResultsPager.PageFetcher<String> fetcher(final int totalResults) {
+        return params -> {
+            final int start = params.getStart();
+            requestedStarts.add(start);
+
+            final int end = Math.min(Math.min(params.getAbsoluteMaxResults(), start + params.getMaxPageResults() - 1), totalResults);
+            final List<String> documents = new ArrayList<>();
+
+            for (int i = start; i <= end; i++) {
+                documents.add("doc" + i);
+            }
+
+            final Integer total = Boolean.TRUE.equals(params.getTotalResults()) ? totalResults : null;
+            return new QueryResults<>(documents, total, null, null, null, Collections.emptyList());
+        };
+    }
+
+    private List<List<String>> readAll(final QueryResultsPager<String> pager) throws HodErrorException {
+        final List<List<String>> pages = new ArrayList<>();
+
+        while (pager.hasNext()) {
+            pages.add(pager.next().getDocuments());
+        }
+
+        return pages;
+    }
+}
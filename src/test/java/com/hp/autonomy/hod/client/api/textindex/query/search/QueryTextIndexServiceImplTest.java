@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.api.textindex.query.search;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.api.resource.ResourceName;
+import com.hp.autonomy.hod.client.config.HodServiceConfig;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import com.hp.autonomy.hod.client.token.InMemoryTokenRepository;
+import com.hp.autonomy.hod.client.token.TokenProxy;
+import com.hp.autonomy.hod.client.token.TokenRepository;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.RestAdapter;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueryTextIndexServiceImplTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    private QueryTextIndexBackend backend;
+    private TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy;
+    private QueryTextIndexService<Document> service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        final TokenRepository tokenRepository = new InMemoryTokenRepository();
+        tokenProxy = tokenRepository.insert(new AuthenticationToken<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE, DateTime.now().plusHours(1), "id", "secret", null));
+
+        final HodServiceConfig<EntityType.Application, TokenType.Simple> realConfig = new HodServiceConfig.Builder<EntityType.Application, TokenType.Simple>("http://example.com")
+            .setTokenRepository(tokenRepository)
+            .setCoalesceRequests(true)
+            .build();
+
+        backend = mock(QueryTextIndexBackend.class);
+        final RestAdapter restAdapter = mock(RestAdapter.class);
+        when(restAdapter.create(QueryTextIndexBackend.class)).thenReturn(backend);
+
+        final HodServiceConfig<EntityType.Application, TokenType.Simple> config = mock(HodServiceConfig.class);
+        when(config.getRestAdapter()).thenReturn(restAdapter);
+        when(config.getRequester()).thenReturn(realConfig.getRequester());
+        when(config.getObjectMapper()).thenReturn(realConfig.getObjectMapper());
+
+        service = QueryTextIndexServiceImpl.documentsService(config);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentIdenticalQueriesMakeOneBackendCall() throws Exception {
+        final CountDownLatch called = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        when(backend.queryTextIndexWithText(any(AuthenticationToken.class), anyString(), anyMapOf(String.class, Object.class))).thenAnswer(invocation -> {
+            called.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Response("", 200, "", Collections.<Header>emptyList(), new TypedByteArray("application/json", "{\"documents\":[]}".getBytes(StandardCharsets.UTF_8)));
+        });
+
+        // the parameters are set in different orders, so the requests only match if their keys ignore the order
+        final Future<QueryResults<Document>> first = executorService.submit(() -> service.queryTextIndexWithText(tokenProxy, "cats", new QueryRequestBuilder()
+            .setFieldText("MATCH{x}:y")
+            .addIndexes(new ResourceName("domain", "index"))));
+
+        called.await(5, TimeUnit.SECONDS);
+
+        final Future<QueryResults<Document>> second = executorService.submit(() -> service.queryTextIndexWithText(tokenProxy, "cats", new QueryRequestBuilder()
+            .addIndexes(new ResourceName("domain", "index"))
+            .setFieldText("MATCH{x}:y")));
+
+        // give the second caller time to join the in flight request
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS), is(sameInstance(first.get(5, TimeUnit.SECONDS))));
+        verify(backend, times(1)).queryTextIndexWithText(any(AuthenticationToken.class), anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void testDifferentQueriesAreNotCoalesced() throws HodErrorException {
+        when(backend.queryTextIndexWithText(any(AuthenticationToken.class), anyString(), anyMapOf(String.class, Object.class))).thenAnswer(invocation ->
+            new Response("", 200, "", Collections.<Header>emptyList(), new TypedByteArray("application/json", "{\"documents\":[]}".getBytes(StandardCharsets.UTF_8)))
+        );
+
+        service.queryTextIndexWithText(tokenProxy, "cats", new QueryRequestBuilder().setFieldText("MATCH{x}:y"));
+        service.queryTextIndexWithText(tokenProxy, "cats", new QueryRequestBuilder().setFieldText("MATCH{x}:z"));
+
+        verify(backend, times(2)).queryTextIndexWithText(any(AuthenticationToken.class), anyString(), anyMapOf(String.class, Object.class));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.config;
+
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRequest() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object response = new Object();
+
+        final List<Future<Object>> futures = callConcurrently("key", () -> {
+            requests.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return response;
+        }, release);
+
+        for (final Future<Object> future : futures) {
+            assertThat(future.get(), is(sameInstance(response)));
+        }
+
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void testConcurrentCallersShareErrors() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final List<Future<Object>> futures = callConcurrently("key", () -> {
+            requests.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+        }, release);
+
+        for (final Future<Object> future : futures) {
+            try {
+                future.get();
+                fail("Expected an exception");
+            } catch (final ExecutionException e) {
+                assertThat(e.getCause(), is(instanceOf(HodErrorException.class)));
+            }
+        }
+
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void testDifferentKeysAreNotCoalesced() throws HodErrorException {
+        coalescer.coalesce("first", requests::incrementAndGet);
+        coalescer.coalesce("second", requests::incrementAndGet);
+
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void testCompletedRequestsAreNotCached() throws HodErrorException {
+        coalescer.coalesce("key", requests::incrementAndGet);
+        final int result = coalescer.coalesce("key", requests::incrementAndGet);
+
+        assertThat(result, is(2));
+    }
+
+    private List<Future<Object>> callConcurrently(final String key, final InterruptibleRequest request, final CountDownLatch release) throws InterruptedException {
+        final List<Future<Object>> futures = new ArrayList<>();
+        final CountDownLatch started = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            futures.add(executorService.submit(() -> {
+                started.countDown();
+
+                return coalescer.coalesce(key, () -> {
+                    try {
+                        return request.make();
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }));
+        }
+
+        started.await(5, TimeUnit.SECONDS);
+
+        // give the callers time to join the in flight request
+        Thread.sleep(100);
+        release.countDown();
+
+        return futures;
+    }
+
+    @FunctionalInterface
+    private interface InterruptibleRequest {
+
+        Object make() throws HodErrorException, InterruptedException;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.job;
+
+import com.hp.autonomy.hod.client.error.HodErrorCode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ChunkedJobSubmitterTest {
+
+    private List<HodJobCallback<Integer>> pendingCallbacks;
+    private List<Integer> submittedChunks;
+    private HodJobCallback<Integer> callback;
+
+    @Before
+    public void setUp() {
+        pendingCallbacks = new ArrayList<>();
+        submittedChunks = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        final HodJobCallback<Integer> callback = mock(HodJobCallback.class);
+        this.callback = callback;
+    }
+
+    @Test
+    public void testCombinesResultsOfAllChunks() {
+        createSubmitter(Arrays.asList(1, 2, 3, 4, 5), 2).start();
+
+        // only two jobs should be submitted until one finishes
+        assertThat(submittedChunks, contains(1, 2));
+
+        // each job returns its chunk as its result
+        for (int i = 0; i < pendingCallbacks.size(); i++) {
+            pendingCallbacks.get(i).success(submittedChunks.get(i));
+        }
+
+        assertThat(submittedChunks, contains(1, 2, 3, 4, 5));
+        verify(callback).success(15);
+    }
+
+    @Test
+    public void testReportsIdentityForNoChunks() {
+        createSubmitter(Collections.<Integer>emptyList(), 2).start();
+
+        assertThat(submittedChunks, is(empty()));
+        verify(callback).success(0);
+    }
+
+    @Test
+    public void testStopsSubmittingAfterFailure() {
+        createSubmitter(Arrays.asList(1, 2, 3, 4), 2).start();
+
+        pendingCallbacks.get(0).error(HodErrorCode.BACKEND_REQUEST_FAILED);
+        // a second error from the same job must not be counted twice
+        pendingCallbacks.get(0).error(HodErrorCode.BACKEND_REQUEST_FAILED);
+
+        verify(callback, never()).error(any(HodErrorCode.class));
+
+        pendingCallbacks.get(1).success(2);
+
+        assertThat(submittedChunks, contains(1, 2));
+        verify(callback).error(HodErrorCode.BACKEND_REQUEST_FAILED);
+        verify(callback, never()).success(any(Integer.class));
+    }
+
+    @Test
+    public void testReportsErrorReadingChunksAfterLastJob() {
+        final RuntimeException exception = new RuntimeException("Could not read chunks");
+
+        // fails only when checking for more chunks after the last job has finished
+        final Iterator<Integer> chunks = new Iterator<Integer>() {
+            private int hasNextCalls;
+
+            @Override
+            public boolean hasNext() {
+                hasNextCalls++;
+
+                if (hasNextCalls == 3) {
+                    throw exception;
+                }
+
+                return hasNextCalls == 1;
+            }
+
+            @Override
+            public Integer next() {
+                return 1;
+            }
+        };
+
+        new ChunkedJobSubmitter<>(chunks, (chunk, chunkCallback) -> chunkCallback.success(chunk), 0, Integer::sum, 1, callback).start();
+
+        verify(callback).handleException(exception);
+        verify(callback, never()).success(any(Integer.class));
+    }
+
+    private ChunkedJobSubmitter<Integer, Integer> createSubmitter(final List<Integer> chunks, final int maxConcurrentJobs) {
+        return new ChunkedJobSubmitter<>(
+            chunks.iterator(),
+            (chunk, chunkCallback) -> {
+                submittedChunks.add(chunk);
+                pendingCallbacks.add(chunkCallback);
+            },
+            0,
+            Integer::sum,
+            maxConcurrentJobs,
+            callback
+        );
+    }
+}
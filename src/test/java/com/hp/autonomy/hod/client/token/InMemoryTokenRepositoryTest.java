@@ -8,16 +8,27 @@ package com.hp.autonomy.hod.client.token;
 import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
 import com.hp.autonomy.hod.client.api.authentication.EntityType;
 import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InMemoryTokenRepositoryTest {
@@ -29,6 +40,11 @@ public class InMemoryTokenRepositoryTest {
         tokenRepository = new InMemoryTokenRepository();
     }
 
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
     @Test
     public void testGetReturnsNullIfNoKey() {
         assertThat(tokenRepository.get(new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE)), is(nullValue()));
@@ -97,6 +113,92 @@ public class InMemoryTokenRepositoryTest {
         tokenRepository.update(key, token2);
     }
 
+    @Test
+    public void testRemoveExpiredTokens() {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+
+        final TokenProxy<EntityType.Combined, TokenType.Simple> shortLived = tokenRepository.insert(token(2000));
+        final TokenProxy<EntityType.Combined, TokenType.Simple> longLived = tokenRepository.insert(token(5000));
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        tokenRepository.removeExpiredTokens();
+
+        assertThat(tokenRepository.get(shortLived), is(nullValue()));
+        assertThat(tokenRepository.get(longLived).getExpiry().getMillis(), is(5000L));
+        assertThat(tokenRepository.size(), is(1));
+    }
+
+    @Test
+    public void testInsertRemovesExpiredTokens() {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+        tokenRepository.insert(token(2000));
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        tokenRepository.insert(token(5000));
+
+        assertThat(tokenRepository.size(), is(1));
+    }
+
+    @Test
+    public void testUpdatedTokensAreIndexedByNewExpiry() {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+        final TokenProxy<EntityType.Combined, TokenType.Simple> key = tokenRepository.insert(token(2000));
+        tokenRepository.update(key, token(5000));
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        tokenRepository.removeExpiredTokens();
+
+        assertThat(tokenRepository.get(key).getExpiry().getMillis(), is(5000L));
+    }
+
+    @Test
+    public void testMaxSizeEvictsTokensNearestToExpiry() {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+        tokenRepository = new InMemoryTokenRepository(2);
+
+        final TokenProxy<EntityType.Combined, TokenType.Simple> first = tokenRepository.insert(token(5000));
+        final TokenProxy<EntityType.Combined, TokenType.Simple> second = tokenRepository.insert(token(2000));
+        final TokenProxy<EntityType.Combined, TokenType.Simple> third = tokenRepository.insert(token(4000));
+
+        assertThat(tokenRepository.size(), is(2));
+        assertThat(tokenRepository.get(second), is(nullValue()));
+        assertThat(tokenRepository.get(first).getExpiry().getMillis(), is(5000L));
+        assertThat(tokenRepository.get(third).getExpiry().getMillis(), is(4000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxSizeMustBePositive() {
+        new InMemoryTokenRepository(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxSizeMustBePositiveWithSweeper() {
+        new InMemoryTokenRepository(-1, mock(ScheduledExecutorService.class), Duration.standardMinutes(1));
+    }
+
+    @Test
+    public void testSweeperIsScheduledAndStoppedByClose() {
+        final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        final ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        doReturn(future).when(executor).scheduleWithFixedDelay(any(Runnable.class), eq(60000L), eq(60000L), eq(TimeUnit.MILLISECONDS));
+
+        tokenRepository = new InMemoryTokenRepository(100, executor, Duration.standardMinutes(1));
+        tokenRepository.close();
+
+        verify(future).cancel(false);
+    }
+
+    private AuthenticationToken<EntityType.Combined, TokenType.Simple> token(final long expiry) {
+        return new AuthenticationToken<>(
+            EntityType.Combined.INSTANCE,
+            TokenType.Simple.INSTANCE,
+            new DateTime(expiry),
+            "id",
+            "secret",
+            null
+        );
+    }
+
     private AuthenticationToken<EntityType.Combined, TokenType.Simple> mockToken(final boolean expired) {
         @SuppressWarnings("unchecked")
         final AuthenticationToken<EntityType.Combined, TokenType.Simple> token = mock(AuthenticationToken.class);
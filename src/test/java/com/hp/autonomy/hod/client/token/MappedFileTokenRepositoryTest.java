@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class MappedFileTokenRepositoryTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+    private MappedFileTokenRepository tokenRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        DateTimeUtils.setCurrentMillisFixed(1000);
+
+        file = temporaryFolder.getRoot().toPath().resolve("tokens");
+        tokenRepository = new MappedFileTokenRepository(file, 4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        tokenRepository.close();
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testTokensSurviveReopening() throws IOException, ClassNotFoundException {
+        final AuthenticationToken<EntityType.User, TokenType.HmacSha1> token = userToken("id", 5000, 3000);
+        final TokenProxy<EntityType.User, TokenType.HmacSha1> tokenProxy = tokenRepository.insert(token);
+
+        reopen();
+
+        assertThat(tokenRepository.get(tokenProxy), is(token));
+        assertThat(tokenRepository.get(serializeAndDeserialize(tokenProxy)), is(token));
+        assertThat(tokenRepository.size(), is(1));
+    }
+
+    @Test
+    public void testUpdatedTokensSurviveReopening() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(applicationToken("first", 5000));
+        final AuthenticationToken<EntityType.Application, TokenType.Simple> newToken = applicationToken("second", 6000);
+
+        assertThat(tokenRepository.update(tokenProxy, newToken).getId(), is("first"));
+
+        reopen();
+
+        assertThat(tokenRepository.get(tokenProxy), is(newToken));
+        assertThat(tokenRepository.size(), is(1));
+    }
+
+    @Test
+    public void testRemovedTokensDoNotSurviveReopening() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(applicationToken("first", 5000));
+        tokenRepository.remove(tokenProxy);
+
+        reopen();
+
+        assertThat(tokenRepository.get(tokenProxy), is(nullValue()));
+        assertThat(tokenRepository.size(), is(0));
+    }
+
+    @Test
+    public void testUpdateDoesNothingIfKeyNotPresent() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = new TokenProxy<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE);
+
+        assertThat(tokenRepository.update(tokenProxy, applicationToken("first", 5000)), is(nullValue()));
+        assertThat(tokenRepository.get(tokenProxy), is(nullValue()));
+    }
+
+    @Test
+    public void testExpiredTokensAreRemovedOnReopening() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> expiring = tokenRepository.insert(applicationToken("first", 2000));
+        final TokenProxy<EntityType.Application, TokenType.Simple> remaining = tokenRepository.insert(applicationToken("second", 5000));
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        reopen();
+
+        assertThat(tokenRepository.get(expiring), is(nullValue()));
+        assertThat(tokenRepository.get(remaining).getId(), is("second"));
+    }
+
+    @Test
+    public void testExpiredTokensAreRemovedWhenFull() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            tokenRepository.insert(applicationToken("first" + i, 2000));
+        }
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(applicationToken("second", 5000));
+
+        assertThat(tokenRepository.get(tokenProxy).getId(), is("second"));
+        assertThat(tokenRepository.size(), is(1));
+    }
+
+    @Test
+    public void testUpdatingExpiredTokenWhenFull() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(applicationToken("first", 2000));
+
+        for (int i = 0; i < 3; i++) {
+            tokenRepository.insert(applicationToken("other" + i, 5000));
+        }
+
+        DateTimeUtils.setCurrentMillisFixed(3000);
+        final AuthenticationToken<EntityType.Application, TokenType.Simple> newToken = applicationToken("second", 6000);
+        tokenRepository.update(tokenProxy, newToken);
+
+        reopen();
+
+        assertThat(tokenRepository.get(tokenProxy), is(newToken));
+        assertThat(tokenRepository.size(), is(4));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInsertThrowsIOExceptionWhenFull() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            tokenRepository.insert(applicationToken("first" + i, 5000));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertThrowsIllegalArgumentExceptionForLargeTokens() throws IOException {
+        tokenRepository.insert(applicationToken(StringUtils.repeat("x", 500), 5000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInsertThrowsIllegalArgumentExceptionForExpiredTokens() throws IOException {
+        tokenRepository.insert(applicationToken("first", 500));
+    }
+
+    @Test
+    public void testGetReturnsNullForTokenProxyOfDifferentType() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(applicationToken("first", 5000));
+
+        reopen();
+
+        assertThat(tokenRepository.get(tokenProxy).getId(), is("first"));
+        assertThat(tokenRepository.get(new TokenProxy<>(EntityType.User.INSTANCE, TokenType.Simple.INSTANCE)), is(nullValue()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpeningOtherFilesThrowsIOException() throws IOException {
+        final Path otherFile = temporaryFolder.newFile().toPath();
+        Files.write(otherFile, "not a token repository".getBytes(StandardCharsets.UTF_8));
+
+        new MappedFileTokenRepository(otherFile, 4);
+    }
+
+    @Test
+    public void testNewFilesCanOnlyBeReadByTheOwner() throws IOException {
+        assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+
+        assertThat(Files.getPosixFilePermissions(file), is(PosixFilePermissions.fromString("rw-------")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpeningFileWhichIsAlreadyOpenThrowsIOException() throws IOException {
+        new MappedFileTokenRepository(file, 4);
+    }
+
+    private void reopen() throws IOException {
+        tokenRepository.close();
+        tokenRepository = new MappedFileTokenRepository(file, 4);
+    }
+
+    private AuthenticationToken<EntityType.Application, TokenType.Simple> applicationToken(final String id, final long expiry) {
+        return new AuthenticationToken<>(EntityType.Application.INSTANCE, TokenType.Simple.INSTANCE, new DateTime(expiry), id, "secret", null);
+    }
+
+    private AuthenticationToken<EntityType.User, TokenType.HmacSha1> userToken(final String id, final long expiry, final long startRefresh) {
+        return new AuthenticationToken<>(EntityType.User.INSTANCE, TokenType.HmacSha1.INSTANCE, new DateTime(expiry), id, "secret", new DateTime(startRefresh));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends EntityType, T extends TokenType> TokenProxy<E, T> serializeAndDeserialize(final TokenProxy<E, T> tokenProxy) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (final ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(tokenProxy);
+        }
+
+        try (final ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            return (TokenProxy<E, T>) objectInputStream.readObject();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class NearCacheTokenRepositoryTest {
+
+    private static final long NOW = 1_000_000L;
+
+    // stands in for a token repository shared between nodes
+    private TokenRepository remoteRepository;
+    private NearCacheTokenRepository tokenRepository;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        remoteRepository = spy(new InMemoryTokenRepository());
+        tokenRepository = new NearCacheTokenRepository(remoteRepository, 10, Duration.standardSeconds(30));
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testCachesTokensRetrievedFromRemoteRepository() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = remoteRepository.insert(token("first", 60));
+
+        tokenRepository.get(key);
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testInsertedTokensAreCached() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 60));
+
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+        assertThat(remoteRepository.get(key).getId(), is("first"));
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testTokensAreRetrievedAgainAfterTimeToLive() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 600));
+
+        // another node refreshes the token
+        remoteRepository.update(key, token("second", 600));
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+
+        advanceSeconds(31);
+        assertThat(tokenRepository.get(key).getId(), is("second"));
+    }
+
+    @Test
+    public void testTokensAreNotCachedAfterExpiry() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 10));
+
+        advanceSeconds(11);
+        tokenRepository.get(key);
+
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testUpdatedTokensAreWrittenThrough() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 60));
+
+        assertThat(tokenRepository.update(key, token("second", 60)).getId(), is("first"));
+        assertThat(tokenRepository.get(key).getId(), is("second"));
+        assertThat(remoteRepository.get(key).getId(), is("second"));
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testRemovedTokensAreNotReturned() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 60));
+
+        tokenRepository.remove(key);
+
+        assertThat(tokenRepository.get(key), is(nullValue()));
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testTokenUpdatedDuringRetrievalIsNotReplacedByOldToken() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = remoteRepository.insert(token("first", 60));
+
+        // the token is updated on this node while the old token is being retrieved from the remote repository
+        doAnswer(invocation -> {
+            final Object oldToken = invocation.callRealMethod();
+            tokenRepository.update(key, token("second", 60));
+            return oldToken;
+        }).doCallRealMethod().when(remoteRepository).get(key);
+
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+        assertThat(tokenRepository.get(key).getId(), is("second"));
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testFailedUpdateInvalidatesCachedToken() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = tokenRepository.insert(token("first", 60));
+
+        try {
+            tokenRepository.update(key, token("expired", -10));
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+        verify(remoteRepository, times(1)).get(key);
+    }
+
+    @Test
+    public void testExpiredTokensAreEvictedFirst() throws IOException {
+        tokenRepository = new NearCacheTokenRepository(remoteRepository, 2, Duration.standardSeconds(30));
+
+        final TokenProxy<EntityType.Application, TokenType.Simple> fresh = tokenRepository.insert(token("fresh", 600));
+        tokenRepository.insert(token("expiring", 10));
+
+        advanceSeconds(11);
+        tokenRepository.insert(token("new", 600));
+
+        assertThat(tokenRepository.get(fresh).getId(), is("fresh"));
+        verify(remoteRepository, times(0)).get(fresh);
+    }
+
+    @Test
+    public void testTokenRemovedDuringRetrievalIsNotCachedAfterEviction() throws IOException {
+        tokenRepository = new NearCacheTokenRepository(remoteRepository, 1, Duration.standardSeconds(30));
+        final TokenProxy<EntityType.Application, TokenType.Simple> key = remoteRepository.insert(token("first", 60));
+
+        // the token is removed while it is being retrieved, and the removal is evicted from the cache by another token
+        doAnswer(invocation -> {
+            final Object oldToken = invocation.callRealMethod();
+            tokenRepository.remove(key);
+            tokenRepository.insert(token("other", 60));
+            return oldToken;
+        }).doCallRealMethod().when(remoteRepository).get(key);
+
+        assertThat(tokenRepository.get(key).getId(), is("first"));
+        assertThat(tokenRepository.get(key), is(nullValue()));
+    }
+
+    private void advanceSeconds(final long seconds) {
+        DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + seconds * 1000);
+    }
+
+    private AuthenticationToken<EntityType.Application, TokenType.Simple> token(final String id, final long expiresInSeconds) {
+        return new AuthenticationToken<>(
+            EntityType.Application.INSTANCE,
+            TokenType.Simple.INSTANCE,
+            new DateTime(DateTimeUtils.currentTimeMillis() + expiresInSeconds * 1000),
+            id,
+            "secret",
+            null
+        );
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.token;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TokenRefresherTest {
+
+    private static final long NOW = 1_000_000_000L;
+    private static final long MINUTE = 60_000L;
+
+    private final InMemoryTokenRepository tokenRepository = new InMemoryTokenRepository();
+
+    private ScheduledExecutorService executor;
+    private TokenRefresher tokenRefresher;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+
+        executor = mock(ScheduledExecutorService.class);
+        doReturn(mock(ScheduledFuture.class)).when(executor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+        tokenRefresher = new TokenRefresher(tokenRepository, executor, Duration.standardMinutes(5), Duration.standardMinutes(1));
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testSchedulesRenewalAfterStartRefreshWithJitter() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 30 * MINUTE, 60 * MINUTE));
+        tokenRefresher.register(tokenProxy, proxy -> null);
+
+        final long delay = captureDelay(1);
+        assertThat(delay, is(allOf(greaterThanOrEqualTo(30 * MINUTE), lessThan(35 * MINUTE))));
+    }
+
+    @Test
+    public void testLimitsJitterToFirstHalfOfRefreshPeriod() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 10 * MINUTE, 12 * MINUTE));
+        tokenRefresher.register(tokenProxy, proxy -> null);
+
+        assertThat(captureDelay(1), is(allOf(greaterThanOrEqualTo(10 * MINUTE), lessThan(11 * MINUTE))));
+    }
+
+    @Test
+    public void testRenewedTokenIsStoredAndNextRenewalScheduled() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 30 * MINUTE, 60 * MINUTE));
+        final AuthenticationToken<EntityType.Application, TokenType.Simple> renewed = token("second", 90 * MINUTE, 120 * MINUTE);
+
+        tokenRefresher.register(tokenProxy, proxy -> renewed);
+        captureRenewal(1).run();
+
+        assertThat(tokenRepository.get(tokenProxy), is(renewed));
+        assertThat(captureDelay(2), is(allOf(greaterThanOrEqualTo(90 * MINUTE), lessThan(95 * MINUTE))));
+    }
+
+    @Test
+    public void testRetriesFailedRenewal() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 30 * MINUTE, 60 * MINUTE));
+
+        tokenRefresher.register(tokenProxy, proxy -> {
+            throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+        });
+
+        captureRenewal(1).run();
+
+        assertThat(captureDelay(2), is(MINUTE));
+        assertThat(tokenRefresher.size(), is(1));
+    }
+
+    @Test
+    public void testStopsRenewingRemovedTokens() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 30 * MINUTE, 60 * MINUTE));
+        tokenRefresher.register(tokenProxy, proxy -> null);
+
+        tokenRepository.remove(tokenProxy);
+        captureRenewal(1).run();
+
+        assertThat(tokenRefresher.size(), is(0));
+        verify(executor, times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testUnregisteredTokensAreNotRenewed() throws IOException {
+        final TokenProxy<EntityType.Application, TokenType.Simple> tokenProxy = tokenRepository.insert(token("first", 30 * MINUTE, 60 * MINUTE));
+        final AuthenticationToken<EntityType.Application, TokenType.Simple> renewed = token("second", 90 * MINUTE, 120 * MINUTE);
+
+        tokenRefresher.register(tokenProxy, proxy -> renewed);
+        final Runnable renewal = captureRenewal(1);
+        tokenRefresher.unregister(tokenProxy);
+        renewal.run();
+
+        assertThat(tokenRepository.get(tokenProxy).getId(), is("first"));
+        assertThat(tokenRefresher.size(), is(0));
+    }
+
+    private Runnable captureRenewal(final int invocations) {
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(invocations)).schedule(captor.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        return captor.getValue();
+    }
+
+    private long captureDelay(final int invocations) {
+        final ArgumentCaptor<Long> captor = ArgumentCaptor.forClass(Long.class);
+        verify(executor, times(invocations)).schedule(any(Runnable.class), captor.capture(), eq(TimeUnit.MILLISECONDS));
+        return captor.getValue();
+    }
+
+    private AuthenticationToken<EntityType.Application, TokenType.Simple> token(final String id, final long startRefreshIn, final long expiresIn) {
+        return new AuthenticationToken<>(
+            EntityType.Application.INSTANCE,
+            TokenType.Simple.INSTANCE,
+            new DateTime(NOW + expiresIn),
+            id,
+            "secret",
+            new DateTime(NOW + startRefreshIn)
+        );
+    }
+}
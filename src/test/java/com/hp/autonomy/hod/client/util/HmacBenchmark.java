@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.util;
+
+import com.hp.autonomy.hod.client.api.authentication.AuthenticationToken;
+import com.hp.autonomy.hod.client.api.authentication.EntityType;
+import com.hp.autonomy.hod.client.api.authentication.TokenType;
+import org.joda.time.DateTime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the cost of signing typical requests with {@link Hmac}. This is not run as part of the build; run the main
+ * method with the test classpath.
+ */
+public class HmacBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 1000000;
+
+    // prevents the JIT removing the measured work
+    private static int sink;
+
+    public static void main(final String[] args) {
+        final Hmac hmac = new Hmac();
+
+        final AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token = new AuthenticationToken<>(
+            EntityType.Unbound.INSTANCE,
+            TokenType.HmacSha1.INSTANCE,
+            new DateTime(123),
+            "DF7aRd8VEeSiCdSFZKbA7w",
+            "Ba90fFmxdioyouz06xr1fhn6Nxq4nB90jWEQ2UzDQr8",
+            new DateTime(456)
+        );
+
+        final Request<String, String> tokenInformationRequest = new Request<>(Request.Verb.GET, "/2/authenticate", null, null);
+
+        final Map<String, List<String>> queryParameters = new HashMap<>();
+        queryParameters.put("allowed_origins", Arrays.asList("http://localhost:8080", "https://example.com"));
+
+        final Map<String, List<Object>> body = new HashMap<>();
+        body.put("domain", Collections.singletonList("IOD-TEST-DOMAIN"));
+        body.put("application", Collections.singletonList("IOD TEST APPLICATION"));
+        body.put("token_type", Collections.singletonList(TokenType.Simple.INSTANCE.getParameter()));
+
+        final Request<String, Object> combinedRequest = new Request<>(Request.Verb.POST, "/2/authenticate/combined", queryParameters, body);
+
+        for (int round = 0; round < 2; round++) {
+            final boolean report = round == 1;
+            final int iterations = report ? ITERATIONS : WARM_UP_ITERATIONS;
+
+            measure("token information request", iterations, report, () -> sink += hmac.generateToken(tokenInformationRequest, token).length());
+            measure("combined request", iterations, report, () -> sink += hmac.generateToken(combinedRequest, token).length());
+        }
+    }
+
+    private static void measure(final String description, final int iterations, final boolean report, final Runnable runnable) {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            runnable.run();
+        }
+
+        if (report) {
+            final double nanosPerRequest = (double) (System.nanoTime() - start) / iterations;
+            System.out.printf("%-30s %10.0f ns per request%n", description, nanosPerRequest);
+        }
+    }
+}
@@ -11,14 +11,21 @@ import com.hp.autonomy.hod.client.api.authentication.TokenType;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import retrofit.mime.TypedOutput;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class HmacTest {
     private Hmac hmac;
@@ -38,6 +45,64 @@ public class HmacTest {
         testHmacSign("UNB:HMAC_SHA1:DF7aRd8VEeSiCdSFZKbA7w:xgAlHiMaGMVmddPDmaSc6A:R8dbS5_aZf5jVx6rLB3uY-V6B50", "IOD TEST APPLICATION");
     }
 
+    @Test
+    public void generatesTokensForInterleavedSecrets() {
+        final Request<String, String> request = new Request<>(Request.Verb.GET, "/2/authenticate", null, null);
+
+        final String first = hmac.generateToken(request, token("first-secret"));
+        final String second = hmac.generateToken(request, token("second-secret"));
+
+        assertThat(second.equals(first), is(false));
+        assertThat(hmac.generateToken(request, token("first-secret")), is(first));
+        assertThat(new Hmac().generateToken(request, token("second-secret")), is(second));
+    }
+
+    @Test
+    public void streamedBodiesAreSignedLikeByteArrays() {
+        final byte[] bytes = new byte[100000];
+        new Random(0).nextBytes(bytes);
+
+        final String byteArrayToken = hmac.generateToken(bodyRequest(bytes), token("secret"));
+        final String streamedToken = hmac.generateToken(bodyRequest(new ChunkedTypedOutput(bytes, 1000)), token("secret"));
+
+        assertThat(streamedToken, is(byteArrayToken));
+    }
+
+    @Test
+    public void failedStreamsDoNotAffectLaterRequests() {
+        final byte[] bytes = "file contents".getBytes(StandardCharsets.UTF_8);
+        final String expectedToken = hmac.generateToken(bodyRequest(bytes), token("secret"));
+
+        final TypedOutput failingOutput = new ChunkedTypedOutput(bytes, 4) {
+            @Override
+            public void writeTo(final OutputStream out) throws IOException {
+                out.write(bytes, 0, 4);
+                throw new IOException("Stream closed");
+            }
+        };
+
+        try {
+            hmac.generateToken(bodyRequest(failingOutput), token("secret"));
+            fail("Expected UncheckedIOException");
+        } catch (final UncheckedIOException e) {
+            // expected
+        }
+
+        assertThat(hmac.generateToken(bodyRequest(bytes), token("secret")), is(expectedToken));
+    }
+
+    private Request<String, Object> bodyRequest(final Object value) {
+        final Map<String, List<Object>> body = new HashMap<>();
+        body.put("file", Collections.singletonList(value));
+        body.put("index", Collections.singletonList("my-index"));
+
+        return new Request<>(Request.Verb.POST, "/1/api/sync/addtotextindex/v1", null, body);
+    }
+
+    private AuthenticationToken<EntityType.Unbound, TokenType.HmacSha1> token(final String secret) {
+        return new AuthenticationToken<>(EntityType.Unbound.INSTANCE, TokenType.HmacSha1.INSTANCE, new DateTime(123), "id", secret, new DateTime(456));
+    }
+
     private void testHmacSign(final String expectedHmacToken, final String application) {
         final String tokenId = "DF7aRd8VEeSiCdSFZKbA7w";
         final String tokenSecret = "Ba90fFmxdioyouz06xr1fhn6Nxq4nB90jWEQ2UzDQr8";
@@ -64,4 +129,36 @@ public class HmacTest {
 
         assertThat(hmacToken, is(expectedHmacToken));
     }
+
+    private static class ChunkedTypedOutput implements TypedOutput {
+        private final byte[] bytes;
+        private final int chunkSize;
+
+        private ChunkedTypedOutput(final byte[] bytes, final int chunkSize) {
+            this.bytes = bytes;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public String fileName() {
+            return "file";
+        }
+
+        @Override
+        public String mimeType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public long length() {
+            return bytes.length;
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                out.write(bytes, i, Math.min(chunkSize, bytes.length - i));
+            }
+        }
+    }
 }
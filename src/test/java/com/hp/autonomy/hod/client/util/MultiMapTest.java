@@ -8,8 +8,10 @@ package com.hp.autonomy.hod.client.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -128,4 +130,43 @@ public class MultiMapTest {
         assertThat(values, hasSize(3));
         assertThat(values, hasItems("one", "two", "three"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEqualityIsByIdentity() {
+        map.put("one", "one");
+
+        final MultiMap<String, String> other = new MultiMap<>();
+        other.put("one", "one");
+
+        final Map<String, String> hashMap = new HashMap<>();
+        hashMap.put("one", "one");
+
+        assertThat(map, is(map));
+        assertThat(map.equals(other), is(false));
+        assertThat(map.equals(hashMap), is(false));
+    }
+
+    @Test
+    public void testEntrySetsIgnoreOrder() {
+        // request keys compare the parameters as a set of entries; builders put null for unset parameters
+        map.put("one", null);
+        map.put("two", "two");
+
+        final MultiMap<String, String> other = new MultiMap<>();
+        other.put("two", "two");
+        other.put("one", null);
+
+        assertThat(new HashSet<>(map.entrySet()), is(new HashSet<>(other.entrySet())));
+        assertThat(new HashSet<>(map.entrySet()).hashCode(), is(new HashSet<>(other.entrySet()).hashCode()));
+    }
+
+    @Test
+    public void testEntrySetsWithDifferentValuesAreNotEqual() {
+        map.put("one", "one");
+
+        final MultiMap<String, String> other = new MultiMap<>();
+        other.put("one", "two");
+
+        assertThat(new HashSet<>(map.entrySet()), is(not(new HashSet<>(other.entrySet()))));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParameterChunkIteratorTest {
+
+    @Test
+    public void testChunksByNumberOfValues() {
+        final List<List<String>> chunks = chunk(Arrays.asList("a", "b", "c", "d", "e"), 2, 1000);
+
+        assertThat(chunks, contains(Arrays.asList("a", "b"), Arrays.asList("c", "d"), Collections.singletonList("e")));
+    }
+
+    @Test
+    public void testChunksByEncodedLength() {
+        // each value is encoded as &ref=xx, which is 7 characters
+        final List<List<String>> chunks = chunk(Arrays.asList("aa", "bb", "cc"), 10, 14);
+
+        assertThat(chunks, contains(Arrays.asList("aa", "bb"), Collections.singletonList("cc")));
+    }
+
+    @Test
+    public void testLongValuesAreReturnedAlone() {
+        final List<List<String>> chunks = chunk(Arrays.asList("a", "a very long reference", "b"), 10, 10);
+
+        assertThat(chunks, contains(Collections.singletonList("a"), Collections.singletonList("a very long reference"), Collections.singletonList("b")));
+    }
+
+    @Test
+    public void testEmptyInputHasNoChunks() {
+        assertThat(chunk(Collections.<String>emptyList(), 10, 10).isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxValuesMustBePositive() {
+        new ParameterChunkIterator(Collections.<String>emptyIterator(), "ref", 0, 10);
+    }
+
+    private List<List<String>> chunk(final List<String> values, final int maxValues, final int maxLength) {
+        final ParameterChunkIterator iterator = new ParameterChunkIterator(values.iterator(), "ref", maxValues, maxLength);
+        final List<List<String>> chunks = new ArrayList<>();
+
+        while (iterator.hasNext()) {
+            chunks.add(iterator.next());
+        }
+
+        return chunks;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015-2016 Hewlett-Packard Development Company, L.P.
+ * Licensed under the MIT License (the "License"); you may not use this file except in compliance with the License.
+ */
+
+package com.hp.autonomy.hod.client.util;
+
+import com.hp.autonomy.hod.client.error.HodError;
+import com.hp.autonomy.hod.client.error.HodErrorException;
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RefreshingCacheTest {
+
+    private final AtomicLong time = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    private final RefreshingCache<String, String> cache = new RefreshingCache<>(
+        Duration.standardSeconds(10),
+        Duration.standardSeconds(60),
+        10,
+        String::length,
+        refreshes::add,
+        time::get
+    );
+
+    @Test
+    public void testReturnsFreshValuesWithoutLoading() throws HodErrorException {
+        cache.get("key", this::load);
+        advanceSeconds(5);
+
+        assertThat(cache.get("key", this::load), is("v1"));
+        assertThat(loads.get(), is(1));
+        assertThat(refreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testReturnsStaleValuesWhileRefreshing() throws HodErrorException {
+        cache.get("key", this::load);
+        advanceSeconds(20);
+
+        assertThat(cache.get("key", this::load), is("v1"));
+        assertThat(cache.get("key", this::load), is("v1"));
+        assertThat(refreshes.size(), is(1));
+
+        refreshes.get(0).run();
+
+        assertThat(cache.get("key", this::load), is("v2"));
+    }
+
+    @Test
+    public void testLoadsExpiredValues() throws HodErrorException {
+        cache.get("key", this::load);
+        advanceSeconds(61);
+
+        assertThat(cache.get("key", this::load), is("v2"));
+        assertThat(refreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testKeepsStaleValueIfRefreshFails() throws HodErrorException {
+        cache.get("key", this::load);
+        advanceSeconds(20);
+
+        cache.get("key", () -> {
+            throw new HodErrorException(new HodError.Builder().setError(5000).build(), 500);
+        });
+        refreshes.get(0).run();
+
+        assertThat(cache.get("key", this::load), is("v1"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedValuesOverMaxWeight() throws HodErrorException {
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        cache.get("a", this::load);
+        cache.put("c", "1234");
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("a", this::load), is("1234"));
+        assertThat(cache.get("b", this::load), is("v1"));
+    }
+
+    @Test
+    public void testDoesNotCacheValuesHeavierThanMaxWeight() {
+        cache.put("key", "a value which is too long");
+
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testInvalidateRemovesValue() throws HodErrorException {
+        cache.get("key", this::load);
+        cache.invalidate("key");
+
+        assertThat(cache.get("key", this::load), is("v2"));
+    }
+
+    @Test
+    public void testInvalidateOnlyDiscardsRefreshesOfThatKey() throws HodErrorException {
+        cache.get("a", this::load);
+        cache.get("b", this::load);
+        advanceSeconds(20);
+
+        cache.get("a", this::load);
+        cache.get("b", this::load);
+        cache.invalidate("b");
+
+        refreshes.get(0).run();
+        refreshes.get(1).run();
+
+        // the refresh of b started before it was invalidated, so its value is not cached
+        assertThat(cache.get("a", this::load), is("v3"));
+        assertThat(cache.get("b", this::load), is("v5"));
+    }
+
+    @Test
+    public void testInvalidateIfRemovesMatchingValues() throws HodErrorException {
+        cache.get("a1", this::load);
+        cache.get("a2", this::load);
+        cache.get("b", this::load);
+        cache.invalidateIf(key -> key.startsWith("a"));
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.get("a1", this::load), is("v4"));
+        assertThat(cache.get("b", this::load), is("v3"));
+    }
+
+    private String load() {
+        return "v" + loads.incrementAndGet();
+    }
+
+    private void advanceSeconds(final long seconds) {
+        time.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}